@@ -0,0 +1,228 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Shares a fixed number of threads and a wall-clock budget between several
+ * algorithms (GA, SA and PSO) on the same instance, giving more of the CPU to
+ * the ones that are making progress.
+ *
+ * The algorithms are run a slice at a time (see ResumableSolver). After each
+ * slice, the improvement in the algorithm's best value per CPU-ms of the slice
+ * is folded into a recency-weighted rate of improvement, as the rates change as
+ * the algorithms converge. Each free thread then runs a slice of the free
+ * algorithm with the highest UCB score - its rate relative to the highest
+ * current rate, plus a bonus for algorithms that have had few slices - trying
+ * every algorithm once first. The schedule stops when the budget is used up, every
+ * algorithm has finished, or one of them reaches the upper bound or target.
+ */
+public class AlgorithmScheduler {
+    private final static long SLICE = 20_000_000; // The length of a slice in ns
+    private final static double RECENCY = 0.3; // The weight of the last slice in the rate of improvement
+    private final static double EXPLORATION = 0.5; // The weight of the UCB bonus
+
+    private final String[] configurations;
+    private final int numThreads;
+    private final long budget; // In ms
+
+    // The state of each algorithm, guarded by this
+    private ResumableSolver[] solvers;
+    private boolean[] running;
+    private boolean[] finished;
+    private int[] numSlices;
+    private long[] cpuTimes; // In ns
+    private double[] rates; // Recency-weighted improvement per CPU-ms
+    private int totalSlices;
+    private double maxRate; // The highest of the current rates
+    private boolean solved;
+    private long deadline;
+
+    /**
+     * @param configurations e.g. { "ga_best", "sa_best", "pso_best" }
+     * @param numThreads     The number of algorithms to run at a time
+     * @param budget         The wall-clock time in ms to share between them
+     */
+    public AlgorithmScheduler(String[] configurations, int numThreads, long budget) {
+        this.configurations = configurations;
+        this.numThreads = numThreads;
+        this.budget = budget;
+    }
+
+    /**
+     * Runs the schedule, finishes every algorithm (which then reports on its run),
+     * prints how the CPU was shared, and returns the best value found
+     */
+    public int run() {
+        List<ResumableSolver> created = new ArrayList<ResumableSolver>();
+        for (String configuration : configurations) {
+            KnapsackSolver solver = Application.createSolver(configuration);
+            if (solver instanceof ResumableSolver) {
+                created.add((ResumableSolver) solver);
+            } else if (solver != null) {
+                System.out.println(configuration + " cannot be scheduled, as it cannot be run a slice at a time");
+            }
+        }
+        int n = created.size();
+        if (n == 0) {
+            return -1;
+        }
+        solvers = created.toArray(new ResumableSolver[n]);
+        running = new boolean[n];
+        finished = new boolean[n];
+        numSlices = new int[n];
+        cpuTimes = new long[n];
+        rates = new double[n];
+        totalSlices = 0;
+        maxRate = 0;
+        solved = false;
+
+        long seed = System.currentTimeMillis();
+        deadline = seed + budget;
+        int workers = Math.max(1, Math.min(numThreads, n));
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int w = 0; w < workers; w++) {
+            tasks.add(() -> {
+                for (int i = next(); i >= 0; i = next()) {
+                    runSlice(i, seed);
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    System.out.println(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            System.out.println(e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Finish the algorithms that were started, and summarise the schedule
+        long totalCpuTime = 0;
+        for (long cpuTime : cpuTimes) {
+            totalCpuTime += cpuTime;
+        }
+        int bestValue = Integer.MIN_VALUE;
+        String summary = "";
+        for (int i = 0; i < n; i++) {
+            if (numSlices[i] == 0) {
+                continue;
+            }
+            int value = solvers[i].finish();
+            bestValue = Math.max(bestValue, value);
+            summary += String.format("%s: %d | %d slices | %d iterations | %d CPU ms (%.0f%%)%n",
+                    solvers[i].getConfiguration(), value, numSlices[i], solvers[i].getNumberOfIterations(),
+                    cpuTimes[i] / 1_000_000, totalCpuTime == 0 ? 0 : 100.0 * cpuTimes[i] / totalCpuTime);
+        }
+        System.out.print(summary);
+        System.out.println("Schedule: " + bestValue + " on " + workers + " threads");
+        return bestValue;
+    }
+
+    /**
+     * Returns the free algorithm to run next, waiting for one to become free if
+     * they are all running, or -1 once the schedule is over
+     */
+    private synchronized int next() {
+        while (true) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (solved || remaining <= 0) {
+                return -1;
+            }
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            boolean anyRunning = false;
+            for (int i = 0; i < solvers.length; i++) {
+                anyRunning |= running[i];
+                if (running[i] || finished[i]) {
+                    continue;
+                }
+                double score = getScore(i);
+                if (score > bestScore) {
+                    best = i;
+                    bestScore = score;
+                }
+            }
+            if (best >= 0) {
+                running[best] = true;
+                return best;
+            }
+            if (!anyRunning) {
+                return -1; // Every algorithm has finished
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Returns the UCB score of an algorithm - infinite if it has not had a slice
+     * yet
+     */
+    private double getScore(int i) {
+        if (numSlices[i] == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double exploitation = maxRate == 0 ? 0 : rates[i] / maxRate;
+        return exploitation + EXPLORATION * Math.sqrt(Math.log(totalSlices) / numSlices[i]);
+    }
+
+    /**
+     * Runs a slice of an algorithm on this thread, starting it with its own random
+     * number stream on its first slice
+     */
+    private void runSlice(int i, long seed) {
+        ResumableSolver solver = solvers[i];
+        long startTime = getCpuTime();
+        if (numSlices[i] == 0) {
+            ProblemConfiguration.instance.setRandomGenerator(ProblemConfiguration.createRandomGenerator(seed, i));
+            solver.start();
+        }
+        int before = solver.getBestValue();
+        boolean more = solver.step(SLICE);
+        int improvement = solver.getBestValue() - before;
+        report(i, more, getCpuTime() - startTime, improvement);
+    }
+
+    /** Records the result of a slice, and frees the algorithm */
+    private synchronized void report(int i, boolean more, long cpuTime, int improvement) {
+        double rate = improvement / Math.max(cpuTime / 1e6, 1e-3);
+        rates[i] = numSlices[i] == 0 ? rate : (1 - RECENCY) * rates[i] + RECENCY * rate;
+        numSlices[i]++;
+        totalSlices++;
+        cpuTimes[i] += cpuTime;
+        running[i] = false;
+        finished[i] = !more;
+        maxRate = 0;
+        for (int j = 0; j < rates.length; j++) {
+            maxRate = Math.max(maxRate, rates[j]);
+        }
+        // With no iterations or time used, only the upper bound or target can stop it
+        TerminationCriteria criteria = ProblemConfiguration.instance.terminationCriteria;
+        if (criteria != null && criteria.getReasonToStop(solvers[i].getBestValue(), 0, 0) != null) {
+            solved = true;
+        }
+        notifyAll();
+    }
+
+    /** Returns the CPU time of this thread in ns, or the wall-clock time if it is not supported */
+    private static long getCpuTime() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+}
@@ -0,0 +1,349 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Class used for running an ant colony optimization solution to the knapsack
+ * problem, given the specified parameters of number of ants, the weights of the
+ * pheromone (alpha) and of the heuristic (beta), and the evaporation rate.
+ *
+ * Each iteration, every ant builds a knapsack by repeatedly adding a random item
+ * that still fits, chosen with probability proportional to pheromone^alpha *
+ * heuristic^beta, where the heuristic is the item's value per unit of weight
+ * (relative to the capacity in each dimension). The pheromone then evaporates,
+ * and every ant deposits pheromone on its items in proportion to its value,
+ * with an extra deposit on the best knapsack found so far.
+ *
+ * The ants are split between a fixed number of workers that build them in
+ * parallel. Each worker has its own random number stream, its own buffers (so
+ * building a knapsack allocates nothing) and its own array of pheromone
+ * deposits. The deposits of the workers are summed in parallel over the items,
+ * and applied once per iteration. As every worker builds the same ants in the
+ * same order, a run depends only on its seed and number of threads.
+ */
+public class AntColonyOptimization extends KnapsackSolver {
+    // Each iteration builds num_ants knapsacks, so fewer iterations are needed
+    private final static int MAX_ITERATIONS = 1000;
+    private final static double MIN_PHEROMONE = 0.01;
+    private final static double MAX_PHEROMONE = 10;
+
+    private int numAnts;
+    private double alpha;
+    private double beta;
+    private double evaporation;
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    // The state of the current run, in flat arrays over the items
+    private KnapsackInstance items;
+    private int[] capacities;
+    private int[] fixedWeights;
+    private double[] pheromone;
+    private double[] heuristic; // heuristic^beta, which does not change during a run
+    private double[] attractiveness; // pheromone^alpha * heuristic^beta, for the current iteration
+    private int[] bestKnapsack;
+    private int bestValue;
+    private long numKnapsacks; // The number of knapsacks built
+
+    /**
+     * Parametrized constructor for an ACO instance with parameters specified in
+     * the JSON files
+     *
+     * @param configuration e.g. "aco_default_01"
+     * @param numAnts       The number of knapsacks built each iteration, e.g. 50
+     * @param alpha         The weight of the pheromone, e.g. 1
+     * @param beta          The weight of the heuristic, e.g. 2
+     * @param evaporation   The fraction of the pheromone that evaporates each
+     *                      iteration, e.g. 0.1
+     */
+    public AntColonyOptimization(String configuration, int numAnts, double alpha, double beta,
+            double evaporation) {
+        super(configuration);
+        this.maximumIterations = MAX_ITERATIONS;
+        this.numAnts = numAnts;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.evaporation = evaporation;
+    }
+
+    /** Sets the number of workers that build the ants in parallel */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Returns the highest value of the knapsack achieved using ACO with the given
+     * parameters
+     */
+    public int run() {
+        // To be used for statistics for report
+        startConstraintHandling();
+        startRun();
+        int maxIterations = maximumIterations;
+        int[] bweights = new int[maxIterations];
+        int[] bvalues = new int[maxIterations];
+        String[] knapsacks = new String[maxIterations];
+
+        initialize();
+        int workers = Math.max(1, Math.min(numThreads, numAnts));
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        long seed = ProblemConfiguration.instance.getRandomGenerator().nextLong();
+        List<Worker> colony = new ArrayList<Worker>();
+        for (int w = 0; w < workers; w++) {
+            colony.add(new Worker(w, workers, ProblemConfiguration.createRandomGenerator(seed, w)));
+        }
+
+        int numIterations = 0;
+        try {
+            while (numIterations < maxIterations && !shouldStop()) {
+                updateAttractiveness();
+                // Build the ants in parallel, and keep the best knapsack
+                for (Future<Worker> result : executor.invokeAll(colony)) {
+                    Worker worker = result.get();
+                    if (worker.bestAntValue > bestValue) {
+                        bestValue = worker.bestAntValue;
+                        System.arraycopy(worker.bestAnt, 0, bestKnapsack, 0, bestKnapsack.length);
+                    }
+                }
+                numKnapsacks += numAnts;
+                // In a portfolio, share the best knapsack, and take up a better one found
+                // by another algorithm, which gets the extra deposit
+                SharedIncumbent.Solution shared = exchangeIncumbent(bestKnapsack, bestValue);
+                if (shared != null) {
+                    bestValue = shared.getValue();
+                    System.arraycopy(shared.getGene(), 0, bestKnapsack, 0, bestKnapsack.length);
+                }
+                updatePheromone(executor, colony);
+
+                bweights[numIterations] = getWeight(bestKnapsack);
+                bvalues[numIterations] = bestValue;
+                recordValue(bvalues[numIterations]);
+                knapsacks[numIterations] = displayKnapsack(bestKnapsack);
+                numIterations += 1;
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            System.out.println(e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        endRun();
+        long runtime = getRuntime();
+        String params = String.format("ACO | #%d | Ants = %d | Alpha = %.1f | Beta = %.1f | Evaporation = %.2f",
+                numIterations, numAnts, alpha, beta, evaporation);
+        if (numIterations < maxIterations) {
+            // Only report on the iterations that were run
+            if (getStopReason() != null) {
+                params += " | stopped: " + getStopReason();
+            }
+            bweights = Arrays.copyOf(bweights, numIterations);
+            bvalues = Arrays.copyOf(bvalues, numIterations);
+            knapsacks = Arrays.copyOf(knapsacks, numIterations);
+        }
+
+        if (reporting) {
+            String ants = String.format("Ants: %d knapsacks built by %d workers | %.0f k knapsacks/s",
+                    numKnapsacks, workers, runtime == 0 ? 0 : numKnapsacks / (double) runtime);
+            String report = ReportGenerator.generateReport(configuration, params, bweights, bvalues, knapsacks,
+                    runtime, numIterations, ants);
+            ReportGenerator.writeToFile(report, configuration);
+
+            System.out.println(configuration + ": " + bestValue);
+        }
+
+        return bestValue;
+    }
+
+    /**
+     * Sets every pheromone to the maximum, and computes the heuristic of each item:
+     * its value over the sum of its weight relative to each capacity
+     */
+    private void initialize() {
+        items = ProblemConfiguration.instance.getKnapsackItems();
+        capacities = ProblemConfiguration.instance.getCapacities();
+        int n = items.size();
+        pheromone = new double[n];
+        heuristic = new double[n];
+        attractiveness = new double[n];
+        fixedWeights = items.getFixedWeights();
+        for (int i = 0; i < n; i++) {
+            pheromone[i] = MAX_PHEROMONE;
+            double relativeWeight = 0;
+            for (int d = 0; d < capacities.length; d++) {
+                relativeWeight += (double) items.getWeight(d, i) / Math.max(1, capacities[d] - fixedWeights[d]);
+            }
+            heuristic[i] = Math.pow(items.getValue(i) / Math.max(relativeWeight, 1e-9), beta);
+        }
+        bestKnapsack = new int[n];
+        bestValue = items.getFixedValue();
+        numKnapsacks = 0;
+    }
+
+    /** Computes pheromone^alpha * heuristic^beta for every item */
+    private void updateAttractiveness() {
+        for (int i = 0; i < pheromone.length; i++) {
+            attractiveness[i] = (alpha == 1 ? pheromone[i] : Math.pow(pheromone[i], alpha)) * heuristic[i];
+        }
+    }
+
+    /**
+     * Evaporates the pheromone and adds the deposits of every worker plus the
+     * deposit on the best knapsack, keeping the pheromone within its bounds. The
+     * items are split between the workers, which each sum the deposits for their
+     * share of the items.
+     */
+    private void updatePheromone(ExecutorService executor, List<Worker> colony) throws InterruptedException {
+        int n = pheromone.length;
+        int chunkSize = (n + colony.size() - 1) / colony.size();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int w = 0; w < colony.size(); w++) {
+            int start = w * chunkSize;
+            int end = Math.min(n, start + chunkSize);
+            tasks.add(() -> {
+                for (int i = start; i < end; i++) {
+                    double deposit = bestKnapsack[i];
+                    for (Worker worker : colony) {
+                        deposit += worker.deposits[i];
+                        worker.deposits[i] = 0;
+                    }
+                    double updated = (1 - evaporation) * pheromone[i] + deposit;
+                    pheromone[i] = Math.max(MIN_PHEROMONE, Math.min(MAX_PHEROMONE, updated));
+                }
+                return null;
+            });
+        }
+        executor.invokeAll(tasks);
+    }
+
+    /**
+     * Builds a share of the ants each iteration with its own random number stream
+     * and buffers, and sums their pheromone deposits
+     */
+    private class Worker implements Callable<Worker> {
+        private final int index;
+        private final int numWorkers;
+        private final MersenneTwister random;
+
+        // Buffers reused for every ant
+        private final int[] ant;
+        private final int[] candidates;
+        private final int[] totals;
+        private final int[] bestAnt;
+        private int bestAntValue;
+        private final double[] deposits;
+
+        Worker(int index, int numWorkers, MersenneTwister random) {
+            int n = items.size();
+            this.index = index;
+            this.numWorkers = numWorkers;
+            this.random = random;
+            ant = new int[n];
+            candidates = new int[n];
+            totals = new int[capacities.length];
+            bestAnt = new int[n];
+            deposits = new double[n];
+        }
+
+        /** Builds the ants index, index + numWorkers, ... of this iteration */
+        @Override
+        public Worker call() {
+            bestAntValue = Integer.MIN_VALUE;
+            for (int a = index; a < numAnts; a += numWorkers) {
+                int value = buildKnapsack();
+                // Better knapsacks deposit more, relative to the best so far
+                double deposit = (double) value / Math.max(1, bestValue) / numAnts;
+                for (int i = 0; i < ant.length; i++) {
+                    if (ant[i] == 1) {
+                        deposits[i] += deposit;
+                    }
+                }
+                if (value > bestAntValue) {
+                    bestAntValue = value;
+                    System.arraycopy(ant, 0, bestAnt, 0, ant.length);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Builds a knapsack in the ant buffer by adding random items that fit until
+         * none do, and returns its value
+         */
+        private int buildKnapsack() {
+            int n = ant.length;
+            Arrays.fill(ant, 0);
+            System.arraycopy(fixedWeights, 0, totals, 0, totals.length);
+            int value = items.getFixedValue();
+            int numCandidates = 0;
+            for (int i = 0; i < n; i++) {
+                candidates[numCandidates++] = i;
+            }
+
+            while (true) {
+                // Drop the candidates that no longer fit, and total the attractiveness of
+                // the rest
+                double total = 0;
+                int kept = 0;
+                for (int c = 0; c < numCandidates; c++) {
+                    int item = candidates[c];
+                    if (items.fits(totals, item, capacities)) {
+                        candidates[kept++] = item;
+                        total += attractiveness[item];
+                    }
+                }
+                numCandidates = kept;
+                if (numCandidates == 0) {
+                    return value;
+                }
+
+                // Roulette wheel selection of the next item
+                double point = random.nextDouble() * total;
+                int chosen = numCandidates - 1;
+                for (int c = 0; c < numCandidates; c++) {
+                    point -= attractiveness[candidates[c]];
+                    if (point < 0) {
+                        chosen = c;
+                        break;
+                    }
+                }
+                int item = candidates[chosen];
+                candidates[chosen] = candidates[--numCandidates];
+                ant[item] = 1;
+                items.addItem(totals, item);
+                value += items.getValue(item);
+            }
+        }
+    }
+
+    /** Gets the weight of the knapsack */
+    private int getWeight(int[] knapsack) {
+        int sum = items.getFixedWeight();
+        for (int i = 0; i < knapsack.length; i++) {
+            sum += knapsack[i] * items.getWeight(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Formats the knapsack as a string e.g. "[0101110...1110]" for display purposes
+     */
+    public String displayKnapsack(int[] knapsack) {
+        String s = "[";
+        int limit = Math.min(26, knapsack.length);
+        for (int i = 0; i < limit; i++) {
+            s += knapsack[i];
+        }
+        s += "...]";
+        return s;
+    }
+
+    /** Used for testing purposes */
+    public static void main(String[] args) {
+        AntColonyOptimization aco = new AntColonyOptimization("aco_default_01", 50, 1, 2, 0.1);
+        aco.run();
+    }
+}
@@ -4,6 +4,13 @@ import java.io.IOException;
 import java.util.Scanner;
 import java.text.DecimalFormat;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Main driver for the application. Either run the solver on a specific
@@ -13,99 +20,406 @@ public class Application {
     private final static String GA_PATH = "configurations/json_configuration_ga_default/";
     private final static String SA_PATH = "configurations/json_configuration_sa_default/";
     private final static String PSO_PATH = "configurations/json_configuration_pso_default/";
+    private final static String TS_PATH = "configurations/json_configuration_ts_default/";
+    private final static String ACO_PATH = "configurations/json_configuration_aco_default/";
+    private final static String EDA_PATH = "configurations/json_configuration_eda_default/";
     private final static int NUM_GA_CONFIGS = 28;
     private final static int NUM_SA_CONFIGS = 25;
     private final static int NUM_PSO_CONFIGS = 25;
+    private final static int NUM_TS_CONFIGS = 12;
+    private final static int NUM_ACO_CONFIGS = 12;
+    private final static int NUM_EDA_CONFIGS = 12;
 
     public static void main(String[] args) {
+        // Options that change the instance being solved
+        boolean preprocess = true;
+        KnapsackInstance items = ProblemConfiguration.instance.fullKnapsackItems;
+        // Options that stop the algorithms early
+        boolean stopAtUpperBound = true;
+        int stallIterations = 0;
+        long timeLimit = 0;
+        int stopValue = 0;
+        // Where the best knapsacks of the runs are kept for later runs, or null
+        String archiveDirectory = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equalsIgnoreCase("-no_preprocessing")) {
+                // Search the full instance rather than the core left after preprocessing
+                preprocess = false;
+            } else if (args[i].equalsIgnoreCase("-instance")) {
+                // e.g. -instance data/multi_dimensional_instance.csv
+                items = new KnapsackInstance(args[++i]);
+            } else if (args[i].equalsIgnoreCase("-capacities")) {
+                // One capacity per constraint, e.g. -capacities 822,500,300
+                String[] capacities = args[++i].split(",");
+                ProblemConfiguration.instance.maximumCapacity = Integer.parseInt(capacities[0]);
+                ProblemConfiguration.instance.additionalCapacities = new int[capacities.length - 1];
+                for (int d = 1; d < capacities.length; d++) {
+                    ProblemConfiguration.instance.additionalCapacities[d - 1] = Integer.parseInt(capacities[d]);
+                }
+            } else if (args[i].equalsIgnoreCase("-constraint_handling")) {
+                // How overweight knapsacks are treated: zero, repair, penalty or decoder
+                ProblemConfiguration.instance.constraintHandling = args[++i].toUpperCase();
+            } else if (args[i].equalsIgnoreCase("-no_early_stop")) {
+                // Keep going even once the best value equals the upper bound on the optimum
+                stopAtUpperBound = false;
+            } else if (args[i].equalsIgnoreCase("-stall")) {
+                // e.g. -stall 500 stops after 500 iterations without improvement
+                stallIterations = Integer.parseInt(args[++i]);
+            } else if (args[i].equalsIgnoreCase("-time_limit")) {
+                // In ms, e.g. -time_limit 2000
+                timeLimit = Long.parseLong(args[++i]);
+            } else if (args[i].equalsIgnoreCase("-stop_at")) {
+                // e.g. -stop_at 1100 stops once a knapsack worth 1100 is found
+                stopValue = Integer.parseInt(args[++i]);
+            } else if (args[i].equalsIgnoreCase("-archive")) {
+                // Start from and add to the best knapsacks of earlier runs, kept in the
+                // given folder ("archive" by default), e.g. -archive archive
+                archiveDirectory = i + 1 < args.length && !args[i + 1].startsWith("-") ? args[++i] : "archive";
+            }
+        }
+        ProblemConfiguration.instance.terminationCriteria = new TerminationCriteria(stopAtUpperBound,
+                stallIterations, timeLimit, stopValue);
+        if (ProblemConfiguration.instance.additionalCapacities.length != items.getNumConstraints() - 1) {
+            System.out.println("The instance has " + items.getNumConstraints()
+                    + " constraints, so -capacities must give that many capacities");
+            return;
+        }
+        ProblemConfiguration.instance.setInstance(items, preprocess);
+        if (archiveDirectory != null) {
+            try {
+                EliteArchive archive = EliteArchive.open(Paths.get(archiveDirectory));
+                ProblemConfiguration.instance.eliteArchive = archive;
+                System.out.println("Elite archive " + archive.getPath() + ": " + archive.size()
+                        + " knapsacks, best " + archive.getBestValue());
+            } catch (IOException e) {
+                System.out.println(e);
+                return;
+            }
+        }
+
         if (args[0].equalsIgnoreCase("-configuration")) {
             // Extract the desired configuration to run
             // Options include: ga_default_01, ..., ga_best, etc.
             String configuration = args[1].substring(0, args[1].indexOf(".json"));
-            runAlgorithm(configuration);
+            int numRepeats = Integer.parseInt(getOption(args, "-repeat", "1"));
+            if (numRepeats > 1) {
+                // Run the configuration over several seeds, and summarise the runs
+                int numThreads = Integer.parseInt(
+                        getOption(args, "-threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+                int target = Integer.parseInt(getOption(args, "-target", "0"));
+                new BatchRunner(configuration, numRepeats, numThreads, target).run();
+            } else if (getOption(args, "-checkpoint", null) != null) {
+                // Write checkpoints during the run, e.g. -checkpoint checkpoints/ga.ckpt
+                runWithCheckpoints(configuration, null, args);
+            } else {
+                runAlgorithm(configuration);
+            }
+
+        } else if (args[0].equalsIgnoreCase("-resume")) {
+            // Continue a run from its last checkpoint, e.g. -resume checkpoints/ga.ckpt
+            Path checkpoint = Paths.get(args[1]);
+            try {
+                runWithCheckpoints(Checkpoint.readConfiguration(checkpoint), checkpoint, args);
+            } catch (IOException e) {
+                System.out.println(e);
+            }
+
+        } else if (args[0].equalsIgnoreCase("-portfolio")) {
+            // Run several configurations at the same time, sharing their best knapsack,
+            // e.g. -portfolio ga_best.json,sa_best.json,pso_best.json
+            String[] configurations = args[1].split(",");
+            for (int i = 0; i < configurations.length; i++) {
+                configurations[i] = configurations[i].replace(".json", "");
+            }
+            new PortfolioSolver(configurations).run();
+
+        } else if (args[0].equalsIgnoreCase("-schedule")) {
+            // Share the threads between several configurations, giving more time to the
+            // ones making progress, e.g. -schedule ga_best.json,sa_best.json,pso_best.json
+            String[] configurations = args[1].split(",");
+            for (int i = 0; i < configurations.length; i++) {
+                configurations[i] = configurations[i].replace(".json", "");
+            }
+            int numThreads = Integer.parseInt(
+                    getOption(args, "-threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+            long budget = Long.parseLong(getOption(args, "-budget", "10000"));
+            new AlgorithmScheduler(configurations, numThreads, budget).run();
+
+        } else if (args[0].equalsIgnoreCase("-sweep")) {
+            // Solve for a range of capacities of the first constraint, exactly (dp) or with
+            // a configuration, e.g. -sweep ga_best.json 600:1000:50 or -sweep dp 0:822
+            String configuration = args[1].replace(".json", "");
+            int numThreads = Integer.parseInt(
+                    getOption(args, "-threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+            try {
+                CapacitySweep sweep = new CapacitySweep(configuration, CapacitySweep.parseCapacities(args[2]),
+                        numThreads);
+                int[] values = sweep.run();
+                Path curve = Paths.get(getOption(args, "-output", "reports/sweep_" + configuration + ".csv"));
+                sweep.writeCurve(curve, values);
+                System.out.println("Capacity curve written to " + curve);
+            } catch (IllegalArgumentException | IOException e) {
+                System.out.println(e);
+            }
+
+        } else if (args[0].equalsIgnoreCase("-serve")) {
+            // Keep the JVM running and solve the requests sent to a local port or Unix domain
+            // socket, e.g. -serve 7070 or -serve /tmp/knapsack.sock
+            String address = args.length > 1 && !args[1].startsWith("-") ? args[1]
+                    : String.valueOf(SolverServer.DEFAULT_PORT);
+            int numThreads = Integer.parseInt(
+                    getOption(args, "-threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+            int queueSize = Integer.parseInt(getOption(args, "-queue", "64"));
+            try {
+                new SolverServer(address, numThreads, queueSize).run();
+            } catch (IOException e) {
+                System.out.println(e);
+            }
 
         } else if (args[0].equals("-search_best_configuration")) {
             // Get the method to find the best configuration for
-            // Options: ga, sa and pso
+            // Options: ga, sa, pso, ts, aco and eda
             String method = args[1];
-            DecimalFormat decimalFormat = new DecimalFormat("00");
-            int maxValue = 0;
-            String bestConfiguration = "";
             if (method.equalsIgnoreCase("ga")) {
-                for (int i = 1; i <= NUM_GA_CONFIGS; i++) {
-                    String configuration = "ga_default_" + decimalFormat.format(i);
-                    int value = runGA(configuration);
-                    if (value > maxValue) {
-                        maxValue = value;
-                        bestConfiguration = configuration;
-                    }
-                }
-                System.out.println("Best configuration is " + bestConfiguration);
-                String srcFile = GA_PATH + bestConfiguration + ".json";
-                String destFile = GA_PATH + "ga_best.json";
-                // Delete the best file if it already exists, because we will replace it
-                new File(destFile).delete();
-                try {
-                    Files.copy(new File(srcFile).toPath(), new File(destFile).toPath());
-                } catch (IOException e) {
-                    System.out.println(e);
-                }
+                searchBestConfiguration("ga", GA_PATH, NUM_GA_CONFIGS);
             } else if (method.equalsIgnoreCase("sa")) {
-                for (int i = 1; i <= NUM_SA_CONFIGS; i++) {
-                    String configuration = "sa_default_" + decimalFormat.format(i);
-                    int value = runSA(configuration);
-                    if (value > maxValue) {
-                        maxValue = value;
-                        bestConfiguration = configuration;
-                    }
-                }
-                System.out.println("Best configuration is " + bestConfiguration);
-                String srcFile = SA_PATH + bestConfiguration + ".json";
-                String destFile = SA_PATH + "sa_best.json";
-                // Delete the best file if it already exists, because we will replace it
-                new File(destFile).delete();
-                try {
-                    Files.copy(new File(srcFile).toPath(), new File(destFile).toPath());
-                } catch (IOException e) {
-                    System.out.println(e);
-                }
+                searchBestConfiguration("sa", SA_PATH, NUM_SA_CONFIGS);
             } else if (method.equalsIgnoreCase("pso")) {
-                for (int i = 1; i <= NUM_PSO_CONFIGS; i++) {
-                    String configuration = "pso_default_" + decimalFormat.format(i);
-                    int value = runPSO(configuration);
-                    if (value > maxValue) {
-                        maxValue = value;
-                        bestConfiguration = configuration;
-                    }
+                searchBestConfiguration("pso", PSO_PATH, NUM_PSO_CONFIGS);
+            } else if (method.equalsIgnoreCase("ts")) {
+                searchBestConfiguration("ts", TS_PATH, NUM_TS_CONFIGS);
+            } else if (method.equalsIgnoreCase("aco")) {
+                searchBestConfiguration("aco", ACO_PATH, NUM_ACO_CONFIGS);
+            } else if (method.equalsIgnoreCase("eda")) {
+                searchBestConfiguration("eda", EDA_PATH, NUM_EDA_CONFIGS);
+            }
+        } else if (args[0].equalsIgnoreCase("-solve_exact")) {
+            // Solve the instance exactly with dynamic programming (dp, the default),
+            // branch and bound (bb) or the Pareto frontier of states (pareto)
+            String method = args.length > 1 && !args[1].startsWith("-") ? args[1] : "dp";
+            int numThreads = Integer.parseInt(
+                    getOption(args, "-threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+            solveExact(method, numThreads);
+        } else if (args[0].equalsIgnoreCase("-race")) {
+            // Race the default configurations of an algorithm (ga, sa, pso, ts, aco or eda), or
+            // configurations sampled from a file of parameter ranges
+            String method = args[1];
+            try {
+                RacingTuner tuner;
+                if (args.length > 2 && !args[2].startsWith("-")) {
+                    tuner = RacingTuner.fromParameterRanges(method, args[2]);
+                } else {
+                    tuner = RacingTuner.fromDefaultConfigurations(method);
                 }
-                System.out.println("Best configuration is " + bestConfiguration);
-                String srcFile = PSO_PATH + bestConfiguration + ".json";
-                String destFile = PSO_PATH + "pso_best.json";
-                // Delete the best file if it already exists, because we will replace it
-                new File(destFile).delete();
+                tuner.race();
+            } catch (FileNotFoundException e) {
+                System.out.println(e);
+            }
+        }
+    }
+
+    /**
+     * Runs every default configuration of an algorithm concurrently, and copies
+     * the best one to [algorithm]_best.json once they have all finished
+     *
+     * Each configuration runs as its own task with its own random number stream,
+     * and writes its own report. Ties are broken in favour of the configuration
+     * with the lowest number, as if they had been run one after another.
+     */
+    private static void searchBestConfiguration(String algorithm, String path, int numConfigurations) {
+        DecimalFormat decimalFormat = new DecimalFormat("00");
+        long seed = System.currentTimeMillis();
+        int numThreads = Math.min(numConfigurations, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        CompletionService<int[]> completionService = new ExecutorCompletionService<int[]>(executor);
+
+        for (int i = 1; i <= numConfigurations; i++) {
+            final int index = i;
+            final String configuration = algorithm + "_default_" + decimalFormat.format(i);
+            completionService.submit(() -> {
+                ProblemConfiguration.instance
+                        .setRandomGenerator(ProblemConfiguration.createRandomGenerator(seed, index));
+                return new int[] { index, runAlgorithm(configuration) };
+            });
+        }
+
+        // Collect the results in the order the configurations finish
+        int maxValue = 0;
+        int bestIndex = 0;
+        try {
+            for (int i = 0; i < numConfigurations; i++) {
                 try {
-                    Files.copy(new File(srcFile).toPath(), new File(destFile).toPath());
-                } catch (IOException e) {
-                    System.out.println(e);
+                    int[] result = completionService.take().get();
+                    if (result[1] > maxValue || (result[1] == maxValue && result[0] < bestIndex)) {
+                        maxValue = result[1];
+                        bestIndex = result[0];
+                    }
+                } catch (ExecutionException e) {
+                    System.out.println(e.getCause());
                 }
+            }
+        } catch (InterruptedException e) {
+            System.out.println(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        if (bestIndex == 0) {
+            return;
+        }
 
+        String bestConfiguration = algorithm + "_default_" + decimalFormat.format(bestIndex);
+        System.out.println("Best configuration is " + bestConfiguration);
+        String srcFile = path + bestConfiguration + ".json";
+        String destFile = path + algorithm + "_best.json";
+        // Delete the best file if it already exists, because we will replace it
+        new File(destFile).delete();
+        try {
+            Files.copy(new File(srcFile).toPath(), new File(destFile).toPath());
+        } catch (IOException e) {
+            System.out.println(e);
+        }
+    }
+
+    /** Solves the full instance exactly and prints the optimal knapsack */
+    private static void solveExact(String method, int numThreads) {
+        KnapsackInstance items = ProblemConfiguration.instance.fullKnapsackItems;
+        int capacity = ProblemConfiguration.instance.getMaximumCapacity();
+        long startTime = System.currentTimeMillis();
+        int[] gene;
+        if (method.equalsIgnoreCase("bb")) {
+            BranchAndBound solver = new BranchAndBound(items, capacity);
+            gene = solver.solve(numThreads);
+            System.out.println("Nodes explored: " + solver.getNodesExplored()
+                    + (solver.isOptimal() ? "" : " (node limit reached, not proven optimal)"));
+        } else if (method.equalsIgnoreCase("pareto")) {
+            ParetoSolver solver = new ParetoSolver(items, capacity);
+            gene = solver.solve();
+            int maxFrontier = 0;
+            long states = 0;
+            for (int size : solver.getFrontierSizes()) {
+                maxFrontier = Math.max(maxFrontier, size);
+                states += size;
             }
+            System.out.println("States: " + states + " (largest frontier " + maxFrontier + ") vs "
+                    + items.size() * ((long) capacity + 1) + " DP cells");
+        } else {
+            gene = DynamicProgramming.solve(items, capacity);
         }
+        long runtime = System.currentTimeMillis() - startTime;
+
+        int weight = 0;
+        int value = 0;
+        String knapsack = "";
+        for (int i = 0; i < gene.length; i++) {
+            weight += gene[i] * items.getWeight(i);
+            value += gene[i] * items.getValue(i);
+            knapsack += gene[i];
+        }
+        System.out.println("Optimal value: " + value + " (weight " + weight + ") in " + runtime + " ms");
+        System.out.println("Knapsack: [" + knapsack + "]");
     }
 
     private static int runAlgorithm(String configuration) {
+        KnapsackSolver solver = createSolver(configuration);
+        if (solver == null) {
+            return -1;
+        }
+        return solver.run();
+    }
+
+    /**
+     * Runs a configuration of the GA, SA or PSO, writing checkpoints to the path
+     * given by -checkpoint (or the checkpoint resumed from) every -checkpoint_every
+     * iterations and/or every -checkpoint_interval seconds (60 by default)
+     *
+     * @param resumeFrom The checkpoint to continue the run from, or null to start it
+     */
+    private static int runWithCheckpoints(String configuration, Path resumeFrom, String[] args) {
+        KnapsackSolver solver = createSolver(configuration);
+        if (solver == null) {
+            return -1;
+        }
+        if (!(solver instanceof ResumableSolver)) {
+            System.out.println(configuration + " cannot be checkpointed, only the GA, SA and PSO can");
+            return -1;
+        }
+        ResumableSolver resumable = (ResumableSolver) solver;
+        String defaultPath = resumeFrom != null ? resumeFrom.toString() : "checkpoints/" + configuration + ".ckpt";
+        int iterations = Integer.parseInt(getOption(args, "-checkpoint_every", "0"));
+        long interval = Long.parseLong(getOption(args, "-checkpoint_interval", iterations > 0 ? "0" : "60"));
+        resumable.setCheckpointing(Paths.get(getOption(args, "-checkpoint", defaultPath)), iterations, interval * 1000);
+        if (resumeFrom != null) {
+            try {
+                resumable.restore(resumeFrom);
+            } catch (IOException e) {
+                System.out.println(e);
+                return -1;
+            }
+            System.out.println("Resuming " + configuration + " after " + resumable.getNumberOfIterations()
+                    + " iterations");
+        }
+        return resumable.run();
+    }
+
+    /**
+     * Creates the solver for a configuration stored in a JSON file e.g.
+     * "ga_default_01", or returns null if it cannot be read
+     */
+    static KnapsackSolver createSolver(String configuration) {
         String algo = configuration.substring(0, configuration.indexOf("_"));
         if (algo.equalsIgnoreCase("ga")) {
-            return runGA(configuration);
+            return createGA(configuration);
         } else if (algo.equalsIgnoreCase("sa")) {
-            return runSA(configuration);
+            return createSA(configuration);
         } else if (algo.equalsIgnoreCase("pso")) {
-            return runPSO(configuration);
+            return createPSO(configuration);
+        } else if (algo.equalsIgnoreCase("ts")) {
+            return createTS(configuration);
+        } else if (algo.equalsIgnoreCase("aco")) {
+            return createACO(configuration);
+        } else if (algo.equalsIgnoreCase("eda")) {
+            return createEDA(configuration);
+        }
+        return null;
+    }
+
+    /** Returns the folder with the JSON configurations for an algorithm */
+    static String getConfigurationPath(String algorithm) {
+        if (algorithm.equalsIgnoreCase("ga")) {
+            return GA_PATH;
+        } else if (algorithm.equalsIgnoreCase("sa")) {
+            return SA_PATH;
+        } else if (algorithm.equalsIgnoreCase("pso")) {
+            return PSO_PATH;
+        } else if (algorithm.equalsIgnoreCase("ts")) {
+            return TS_PATH;
+        } else if (algorithm.equalsIgnoreCase("aco")) {
+            return ACO_PATH;
+        } else if (algorithm.equalsIgnoreCase("eda")) {
+            return EDA_PATH;
         }
-        return -1;
+        return null;
     }
 
-    private static int runGA(String configuration) {
+    /** Returns the number of default configurations of an algorithm */
+    static int getNumberOfDefaultConfigurations(String algorithm) {
+        if (algorithm.equalsIgnoreCase("ga")) {
+            return NUM_GA_CONFIGS;
+        } else if (algorithm.equalsIgnoreCase("sa")) {
+            return NUM_SA_CONFIGS;
+        } else if (algorithm.equalsIgnoreCase("pso")) {
+            return NUM_PSO_CONFIGS;
+        } else if (algorithm.equalsIgnoreCase("ts")) {
+            return NUM_TS_CONFIGS;
+        } else if (algorithm.equalsIgnoreCase("aco")) {
+            return NUM_ACO_CONFIGS;
+        } else if (algorithm.equalsIgnoreCase("eda")) {
+            return NUM_EDA_CONFIGS;
+        }
+        return 0;
+    }
+
+    private static GeneticAlgorithm createGA(String configuration) {
         try {
             String fileName = GA_PATH + configuration + ".json";
             Scanner scFile = new Scanner(new File(fileName));
@@ -117,19 +431,22 @@ public class Application {
             double crossoverRatio = Double.parseDouble(getJSONValueFromLine(scFile.next()));
             String crossoverMethod = getJSONValueFromLine(scFile.next());
             String mutationMethod = getJSONValueFromLine(scFile.next());
+            // Optionally, the fraction of offspring improved by local search
+            double memeticRatio = scFile.hasNext() ? Double.parseDouble(getJSONValueFromLine(scFile.next())) : 0;
 
             scFile.close();
 
-            GeneticAlgorithm ga = new GeneticAlgorithm(configuration, selectionMethod, crossoverMethod, crossoverRatio,
-                    mutationMethod, mutationRatio);
-            return ga.run();
+            GeneticAlgorithm ga = new GeneticAlgorithm(configuration, selectionMethod, crossoverMethod,
+                    crossoverRatio, mutationMethod, mutationRatio);
+            ga.setMemeticRatio(memeticRatio);
+            return ga;
         } catch (FileNotFoundException e) {
             System.out.println(e);
-            return -1;
+            return null;
         }
     }
 
-    private static int runSA(String configuration) {
+    private static SimulatedAnnealing createSA(String configuration) {
         try {
             String fileName = SA_PATH + configuration + ".json";
             Scanner scFile = new Scanner(new File(fileName));
@@ -141,15 +458,14 @@ public class Application {
 
             scFile.close();
 
-            SimulatedAnnealing sa = new SimulatedAnnealing(configuration, initialTemperature, coolingRate);
-            return sa.run();
+            return new SimulatedAnnealing(configuration, initialTemperature, coolingRate);
         } catch (FileNotFoundException e) {
             System.out.println(e);
-            return -1;
+            return null;
         }
     }
 
-    private static int runPSO(String configuration) {
+    private static ParticleSwarmOptimization createPSO(String configuration) {
         try {
             String fileName = PSO_PATH + configuration + ".json";
             Scanner scFile = new Scanner(new File(fileName));
@@ -163,13 +479,87 @@ public class Application {
             double c1 = Double.parseDouble(getJSONValueFromLine(scFile.next()));
             double c2 = Double.parseDouble(getJSONValueFromLine(scFile.next()));
 
-            ParticleSwarmOptimization pso = new ParticleSwarmOptimization(configuration, numParticles, minVelocity,
-                    maxVelocity, c1, c2, inertia);
-            return pso.run();
+            scFile.close();
+
+            return new ParticleSwarmOptimization(configuration, numParticles, minVelocity, maxVelocity, c1, c2,
+                    inertia);
         } catch (FileNotFoundException e) {
             System.out.println(e);
-            return -1;
+            return null;
+        }
+    }
+
+    private static TabuSearch createTS(String configuration) {
+        try {
+            String fileName = TS_PATH + configuration + ".json";
+            Scanner scFile = new Scanner(new File(fileName));
+            scFile.useDelimiter(",");
+
+            int tabuTenure = Integer.parseInt(getJSONValueFromLine(scFile.next()));
+            scFile.next(); // Skip the configuration since we already know it
+            boolean swapMoves = Boolean.parseBoolean(getJSONValueFromLine(scFile.next()));
+
+            scFile.close();
+
+            return new TabuSearch(configuration, tabuTenure, swapMoves);
+        } catch (FileNotFoundException e) {
+            System.out.println(e);
+            return null;
+        }
+    }
+
+    private static AntColonyOptimization createACO(String configuration) {
+        try {
+            String fileName = ACO_PATH + configuration + ".json";
+            Scanner scFile = new Scanner(new File(fileName));
+            scFile.useDelimiter(",");
+
+            int numAnts = Integer.parseInt(getJSONValueFromLine(scFile.next()));
+            scFile.next(); // Skip the configuration since we already know it
+            double alpha = Double.parseDouble(getJSONValueFromLine(scFile.next()));
+            double beta = Double.parseDouble(getJSONValueFromLine(scFile.next()));
+            double evaporation = Double.parseDouble(getJSONValueFromLine(scFile.next()));
+
+            scFile.close();
+
+            return new AntColonyOptimization(configuration, numAnts, alpha, beta, evaporation);
+        } catch (FileNotFoundException e) {
+            System.out.println(e);
+            return null;
+        }
+    }
+
+    private static EstimationOfDistribution createEDA(String configuration) {
+        try {
+            String fileName = EDA_PATH + configuration + ".json";
+            Scanner scFile = new Scanner(new File(fileName));
+            scFile.useDelimiter(",");
+
+            String model = getJSONValueFromLine(scFile.next());
+            scFile.next(); // Skip the configuration since we already know it
+            int populationSize = Integer.parseInt(getJSONValueFromLine(scFile.next()));
+            double learningRate = Double.parseDouble(getJSONValueFromLine(scFile.next()));
+
+            scFile.close();
+
+            return new EstimationOfDistribution(configuration, model, populationSize, learningRate);
+        } catch (FileNotFoundException e) {
+            System.out.println(e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the value following the given option in the command line arguments,
+     * e.g. "10" for "-repeat 10", or the default value if it is not there
+     */
+    static String getOption(String[] args, String option, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equalsIgnoreCase(option)) {
+                return args[i + 1];
+            }
         }
+        return defaultValue;
     }
 
     /** Takes in a line in the format "[key]":"[value]", and returns [value] */
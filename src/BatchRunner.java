@@ -0,0 +1,94 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a configuration several times with different seeds in parallel, and
+ * writes one summary report with the statistics over all of the runs, rather
+ * than one report per run.
+ */
+public class BatchRunner {
+    private final String configuration;
+    private final int numRepeats;
+    private final int numThreads;
+    private final int target; // The value to measure time-to-target for, or 0 for the batch's best
+
+    /**
+     * @param configuration e.g. "ga_default_01"
+     * @param numRepeats    The number of runs, each with its own seed
+     * @param numThreads    The number of runs to do at the same time
+     * @param target        The value to measure the time-to-target for, or 0 to
+     *                      use the best value found by any of the runs
+     */
+    public BatchRunner(String configuration, int numRepeats, int numThreads, int target) {
+        this.configuration = configuration;
+        this.numRepeats = numRepeats;
+        this.numThreads = numThreads;
+        this.target = target;
+    }
+
+    /** Runs the batch, writes the summary report and returns the best value */
+    public int run() {
+        long seed = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(numThreads, numRepeats));
+        List<Callable<KnapsackSolver>> tasks = new ArrayList<Callable<KnapsackSolver>>();
+        for (int i = 0; i < numRepeats; i++) {
+            final int stream = i;
+            tasks.add(() -> {
+                ProblemConfiguration.instance.setRandomGenerator(ProblemConfiguration.createRandomGenerator(seed, stream));
+                KnapsackSolver solver = Application.createSolver(configuration);
+                if (solver != null) {
+                    solver.setReporting(false);
+                    solver.run();
+                }
+                return solver;
+            });
+        }
+
+        List<KnapsackSolver> solvers = new ArrayList<KnapsackSolver>();
+        try {
+            for (Future<KnapsackSolver> future : executor.invokeAll(tasks)) {
+                try {
+                    if (future.get() != null) {
+                        solvers.add(future.get());
+                    }
+                } catch (ExecutionException e) {
+                    System.out.println(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            System.out.println(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        if (solvers.isEmpty()) {
+            return -1;
+        }
+
+        int n = solvers.size();
+        double[] values = new double[n];
+        double[] runtimes = new double[n];
+        int best = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            values[i] = solvers.get(i).getBestValue();
+            runtimes[i] = solvers.get(i).getRuntime();
+            best = Math.max(best, solvers.get(i).getBestValue());
+        }
+        int targetValue = target > 0 ? target : best;
+        long[] timesToTarget = new long[n];
+        for (int i = 0; i < n; i++) {
+            timesToTarget[i] = solvers.get(i).getTimeToValue(targetValue);
+        }
+
+        String params = String.format("%d runs on %d threads | target = %d", n, Math.min(numThreads, numRepeats),
+                targetValue);
+        String summary = ReportGenerator.generateSummary(configuration, params, values, runtimes, timesToTarget);
+        ReportGenerator.writeToFile(summary, "summary_", configuration);
+        System.out.println(configuration + ": best " + best + " over " + n + " runs");
+        return best;
+    }
+}
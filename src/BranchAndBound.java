@@ -0,0 +1,338 @@
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exact solver for the 0/1 knapsack problem using depth-first branch and bound
+ * (the Horowitz-Sahni algorithm).
+ *
+ * Items are searched in order of value/weight ratio. At every node the
+ * fractional (Dantzig) upper bound of the remaining items is found with a
+ * binary search over prefix sums of their weights and values, and the subtree
+ * is pruned if it cannot beat the incumbent, which starts as the greedy
+ * solution. Unlike dynamic programming, the time and memory taken do not depend
+ * on the capacity, so it can solve instances with huge capacities.
+ *
+ * In parallel mode the first few levels of the tree are split into subtrees,
+ * which are searched by a fork-join pool (so idle threads steal subtrees from
+ * busy ones) and share a single atomic incumbent value.
+ */
+public class BranchAndBound {
+    // The nodes to search before giving up on proving optimality, by default
+    private final static long DEFAULT_MAX_NODES = 100000000L;
+
+    // Subtrees are split for parallel search down to this many levels past log2(threads)
+    private final static int EXTRA_SPLIT_LEVELS = 4;
+
+    // Optimal values already proven, per instance and capacity, until the instance is
+    // no longer used
+    private final static Map<KnapsackInstance, Map<Integer, Integer>> optimumCache = //
+            Collections.synchronizedMap(new WeakHashMap<KnapsackInstance, Map<Integer, Integer>>());
+
+    private final KnapsackInstance items;
+    private final int capacity; // The capacity left after the fixed items of a core
+    private long maxNodes = DEFAULT_MAX_NODES;
+
+    // The items that can fit, in density order, with prefix sums of their weights and values
+    private int[] sorted;
+    private long[] weights;
+    private long[] values;
+    private long[] prefixWeight;
+    private long[] prefixValue;
+    private int m;
+
+    // The incumbent, shared between the threads in parallel mode
+    private AtomicLong bestValue;
+    private int[] bestChoice; // Over the sorted items, only changed while holding the lock on this
+    private LongAdder nodes;
+    private volatile boolean aborted;
+
+    /**
+     * @param items    The knapsack instance (with a single constraint)
+     * @param capacity The maximum capacity of the knapsack
+     */
+    public BranchAndBound(KnapsackInstance items, int capacity) {
+        if (items.getNumConstraints() > 1) {
+            throw new IllegalArgumentException("Branch and bound only solves single-constraint instances");
+        }
+        this.items = items;
+        this.capacity = capacity - items.getFixedWeight();
+    }
+
+    /** Sets the number of nodes after which the search gives up */
+    public void setMaxNodes(long maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    /** Returns an optimal knapsack for the instance, as a gene over its items */
+    public int[] solve() {
+        return solve(1);
+    }
+
+    /**
+     * Returns an optimal knapsack for the instance, as a gene over its items,
+     * searching with the given number of threads. If the node limit is reached
+     * the best knapsack found so far is returned, and isOptimal() is false.
+     */
+    public int[] solve(int numThreads) {
+        int[] gene = new int[items.size()];
+        aborted = false;
+        nodes = new LongAdder();
+        if (capacity < 0) {
+            bestValue = new AtomicLong(Long.MIN_VALUE);
+            return gene;
+        }
+        initialise();
+        if (numThreads > 1) {
+            int splitLevels = 32 - Integer.numberOfLeadingZeros(numThreads) + EXTRA_SPLIT_LEVELS;
+            ForkJoinPool pool = new ForkJoinPool(numThreads);
+            try {
+                pool.invoke(new Subtree(0, capacity, 0, new int[m], splitLevels));
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            search(0, capacity, 0, new int[m]);
+        }
+        for (int p = 0; p < m; p++) {
+            gene[sorted[p]] = bestChoice[p];
+        }
+        return gene;
+    }
+
+    /**
+     * Returns the value of the best knapsack found by the last call to solve(),
+     * including the items fixed into a core
+     */
+    public int getBestValue() {
+        return capacity < 0 ? 0 : (int) bestValue.get() + items.getFixedValue();
+    }
+
+    /** Returns true if the last call to solve() proved its knapsack optimal */
+    public boolean isOptimal() {
+        return !aborted;
+    }
+
+    /** Returns the number of nodes searched by the last call to solve() */
+    public long getNodesExplored() {
+        return nodes.sum();
+    }
+
+    /**
+     * Returns the optimal value of the instance for the given capacity, proving
+     * it only the first time it is asked for, or 0 if it could not be proven
+     * within the default node limit
+     */
+    public static int getOptimalValue(KnapsackInstance items, int capacity) {
+        Map<Integer, Integer> optima = optimumCache.computeIfAbsent(items,
+                k -> new ConcurrentHashMap<Integer, Integer>());
+        return optima.computeIfAbsent(capacity, c -> {
+            BranchAndBound solver = new BranchAndBound(items, c);
+            solver.solve(Runtime.getRuntime().availableProcessors());
+            return solver.isOptimal() ? solver.getBestValue() : 0;
+        });
+    }
+
+    /**
+     * Sorts the items that can fit by density, builds the prefix sums and seeds
+     * the incumbent with the greedy solution
+     */
+    private void initialise() {
+        int n = items.size();
+        sorted = new int[n];
+        m = 0;
+        for (int item : items.getDensityOrder()) {
+            if (items.getWeight(item) <= capacity) {
+                sorted[m++] = item;
+            }
+        }
+        weights = new long[m];
+        values = new long[m];
+        prefixWeight = new long[m + 1];
+        prefixValue = new long[m + 1];
+        for (int p = 0; p < m; p++) {
+            weights[p] = items.getWeight(sorted[p]);
+            values[p] = items.getValue(sorted[p]);
+            prefixWeight[p + 1] = prefixWeight[p] + weights[p];
+            prefixValue[p + 1] = prefixValue[p] + values[p];
+        }
+
+        // Greedily take every item that still fits, in density order
+        bestChoice = new int[m];
+        long remaining = capacity;
+        long value = 0;
+        for (int p = 0; p < m; p++) {
+            if (weights[p] <= remaining) {
+                bestChoice[p] = 1;
+                remaining -= weights[p];
+                value += values[p];
+            }
+        }
+        bestValue = new AtomicLong(value);
+    }
+
+    /**
+     * Returns the Dantzig upper bound on the value of the items from position
+     * start onwards with the given capacity: the largest run of items that fits,
+     * plus the fraction of the next item that fits
+     */
+    private long upperBound(int start, long remaining) {
+        // Binary search for the largest end such that the items start..end-1 fit
+        long limit = prefixWeight[start] + remaining;
+        int low = start;
+        int high = m;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (prefixWeight[mid] <= limit) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        long bound = prefixValue[low] - prefixValue[start];
+        if (low < m) {
+            bound += (limit - prefixWeight[low]) * values[low] / weights[low];
+        }
+        return bound;
+    }
+
+    /**
+     * Searches every completion of the items from position start onwards, given
+     * the choices already made in choice, the capacity left and the value so far.
+     * Only the positions from start onwards are backtracked over.
+     */
+    private void search(int start, long remaining, long value, int[] choice) {
+        int j = start;
+        long count = 0;
+        while (true) {
+            count++;
+            boolean pruned = j < m && value + upperBound(j, remaining) <= bestValue.get();
+            if (!pruned) {
+                // Forward moves: take items while they fit, and bound again after
+                // each item that has to be left out
+                while (j < m) {
+                    if (weights[j] <= remaining) {
+                        choice[j] = 1;
+                        remaining -= weights[j];
+                        value += values[j];
+                        j++;
+                    } else {
+                        choice[j] = 0;
+                        j++;
+                        count++;
+                        if (j < m && value + upperBound(j, remaining) <= bestValue.get()) {
+                            break;
+                        }
+                    }
+                }
+                if (j == m) {
+                    updateIncumbent(value, choice);
+                }
+            }
+
+            // Backtrack to the last item taken, and leave it out instead
+            int k = j - 1;
+            while (k >= start && choice[k] == 0) {
+                k--;
+            }
+            if (k < start) {
+                break;
+            }
+            if (count > 100000) {
+                nodes.add(count);
+                count = 0;
+                if (aborted || nodes.sum() > maxNodes) {
+                    aborted = true;
+                    return;
+                }
+            }
+            choice[k] = 0;
+            remaining += weights[k];
+            value -= values[k];
+            j = k + 1;
+        }
+        nodes.add(count);
+    }
+
+    /** Replaces the incumbent if the knapsack found is better */
+    private void updateIncumbent(long value, int[] choice) {
+        if (value <= bestValue.get()) {
+            return;
+        }
+        synchronized (this) {
+            if (value > bestValue.get()) {
+                System.arraycopy(choice, 0, bestChoice, 0, m);
+                bestValue.set(value);
+            }
+        }
+    }
+
+    /**
+     * A subtree of the search, split into the subtrees with and without the next
+     * item until the split depth is reached, and then searched sequentially
+     */
+    private class Subtree extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int position;
+        private final long remaining;
+        private final long value;
+        private final int[] choice;
+        private final int levels;
+
+        Subtree(int position, long remaining, long value, int[] choice, int levels) {
+            this.position = position;
+            this.remaining = remaining;
+            this.value = value;
+            this.choice = choice;
+            this.levels = levels;
+        }
+
+        @Override
+        protected void compute() {
+            if (position == m) {
+                updateIncumbent(value, choice);
+                return;
+            }
+            if (value + upperBound(position, remaining) <= bestValue.get() || aborted) {
+                return;
+            }
+            if (levels == 0) {
+                search(position, remaining, value, choice.clone());
+                return;
+            }
+            nodes.increment();
+            int[] without = choice.clone();
+            without[position] = 0;
+            Subtree exclude = new Subtree(position + 1, remaining, value, without, levels - 1);
+            if (weights[position] <= remaining) {
+                int[] with = choice.clone();
+                with[position] = 1;
+                invokeAll(new Subtree(position + 1, remaining - weights[position], value + values[position], with,
+                        levels - 1), exclude);
+            } else {
+                exclude.compute();
+            }
+        }
+    }
+
+    /** Solves the default instance sequentially and in parallel */
+    public static void main(String[] args) {
+        KnapsackInstance items = new KnapsackInstance();
+        int capacity = ProblemConfiguration.instance.getMaximumCapacity();
+        int numThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        BranchAndBound solver = new BranchAndBound(items, capacity);
+        long startTime = System.currentTimeMillis();
+        solver.solve();
+        System.out.println("Sequential: " + solver.getBestValue() + " (" + solver.getNodesExplored() + " nodes) in "
+                + (System.currentTimeMillis() - startTime) + " ms");
+        startTime = System.currentTimeMillis();
+        solver.solve(Math.max(2, numThreads));
+        System.out.println("Parallel: " + solver.getBestValue() + " (" + solver.getNodesExplored() + " nodes) in "
+                + (System.currentTimeMillis() - startTime) + " ms");
+    }
+}
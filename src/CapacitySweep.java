@@ -0,0 +1,187 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Solves the instance for a range of capacities of its first constraint (the
+ * other capacities are kept), giving the best value for each capacity as a curve
+ * for what-if planning.
+ *
+ * Solved exactly ("dp"), the whole curve is read from the one dynamic
+ * programming table for the largest capacity, which holds the best value for
+ * every smaller capacity too. A configuration of the GA, SA or PSO instead runs
+ * the capacities in chains of neighbouring capacities: the first capacity of a
+ * chain is run from scratch, and every later one from the final state of the run
+ * for the capacity before it (see ResumableSolver.reoptimize(int[])). There is
+ * one chain per thread, and the chains run at the same time, each thread with
+ * capacities of its own (see ProblemConfiguration.setThreadCapacities()). The
+ * other algorithms run every capacity from scratch.
+ */
+public class CapacitySweep {
+    private final String configuration; // e.g. "ga_best", or "dp" to solve exactly
+    private final int[] capacities; // In ascending order
+    private final int numThreads;
+    private final int[] otherCapacities; // The capacities of the constraints after the first
+
+    /**
+     * @param configuration e.g. "ga_best", or "dp" to solve exactly
+     * @param capacities    The capacities of the first constraint to solve for
+     * @param numThreads    The number of chains of capacities to run at the same
+     *                      time
+     */
+    public CapacitySweep(String configuration, int[] capacities, int numThreads) {
+        this.configuration = configuration;
+        this.capacities = capacities.clone();
+        Arrays.sort(this.capacities);
+        this.numThreads = Math.max(1, Math.min(numThreads, capacities.length));
+        int[] current = ProblemConfiguration.instance.getCapacities();
+        this.otherCapacities = Arrays.copyOfRange(current, 1, current.length);
+    }
+
+    /**
+     * Parses a range of capacities, e.g. "600:1000:50" for 600, 650, ..., 1000,
+     * "600:1000" for every capacity from 600 to 1000, or "600,750,822"
+     */
+    public static int[] parseCapacities(String range) {
+        if (range.contains(",")) {
+            String[] values = range.split(",");
+            int[] capacities = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                capacities[i] = Integer.parseInt(values[i]);
+            }
+            return capacities;
+        }
+        String[] bounds = range.split(":");
+        int from = Integer.parseInt(bounds[0]);
+        int to = Integer.parseInt(bounds[bounds.length > 1 ? 1 : 0]);
+        int step = bounds.length > 2 ? Integer.parseInt(bounds[2]) : 1;
+        if (from > to || step <= 0) {
+            throw new IllegalArgumentException("Not a range of capacities: " + range);
+        }
+        int[] capacities = new int[(to - from) / step + 1];
+        for (int i = 0; i < capacities.length; i++) {
+            capacities[i] = from + i * step;
+        }
+        return capacities;
+    }
+
+    /** Returns the capacities swept, in ascending order */
+    public int[] getCapacities() {
+        return capacities.clone();
+    }
+
+    /**
+     * Solves the instance for every capacity, and returns the best value found for
+     * each, in the order of getCapacities()
+     */
+    public int[] run() {
+        long startTime = System.currentTimeMillis();
+        int[] values;
+        if (configuration.equalsIgnoreCase("dp")) {
+            values = DynamicProgramming.getOptimalValues(ProblemConfiguration.instance.getFullKnapsackItems(), capacities);
+        } else {
+            // The upper bounds that stop the runs are the optima where they can be
+            // solved for, which one table gives for every capacity
+            KnapsackInstance items = ProblemConfiguration.instance.getFullKnapsackItems();
+            if (items.getNumConstraints() == 1
+                    && ReportGenerator.fitsDynamicProgramming(items, capacities[capacities.length - 1])) {
+                DynamicProgramming.getOptimalValues(items, capacities);
+            }
+            values = runChains();
+        }
+        System.out.println("Swept " + capacities.length + " capacities with " + configuration + " in "
+                + (System.currentTimeMillis() - startTime) + " ms");
+        return values;
+    }
+
+    /** Runs the chains of capacities on their own threads */
+    private int[] runChains() {
+        int[] values = new int[capacities.length];
+        long seed = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int k = 0; k < numThreads; k++) {
+            final int stream = k;
+            final int from = k * capacities.length / numThreads;
+            final int to = (k + 1) * capacities.length / numThreads;
+            tasks.add(() -> {
+                ProblemConfiguration.instance
+                        .setRandomGenerator(ProblemConfiguration.createRandomGenerator(seed, stream));
+                try {
+                    runChain(from, to, values);
+                } finally {
+                    ProblemConfiguration.instance.setThreadCapacities(null);
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    System.out.println(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            System.out.println(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return values;
+    }
+
+    /** Runs the capacities from..to-1, each from the final state of the one before */
+    private void runChain(int from, int to, int[] values) {
+        ProblemConfiguration.instance.setThreadCapacities(withFirstCapacity(capacities[from]));
+        KnapsackSolver solver = createSolver();
+        if (solver == null) {
+            return;
+        }
+        values[from] = solver.run();
+        for (int i = from + 1; i < to; i++) {
+            if (solver instanceof ResumableSolver) {
+                values[i] = ((ResumableSolver) solver).reoptimize(withFirstCapacity(capacities[i]));
+            } else {
+                ProblemConfiguration.instance.setThreadCapacities(withFirstCapacity(capacities[i]));
+                solver = createSolver();
+                values[i] = solver.run();
+            }
+        }
+    }
+
+    private KnapsackSolver createSolver() {
+        KnapsackSolver solver = Application.createSolver(configuration);
+        if (solver != null) {
+            solver.setReporting(false);
+        }
+        return solver;
+    }
+
+    private int[] withFirstCapacity(int capacity) {
+        int[] result = new int[otherCapacities.length + 1];
+        result[0] = capacity;
+        System.arraycopy(otherCapacities, 0, result, 1, otherCapacities.length);
+        return result;
+    }
+
+    /** Writes the curve as "capacity,value" lines, after a header */
+    public void writeCurve(Path path, int[] values) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        lines.add("capacity,value");
+        for (int i = 0; i < capacities.length; i++) {
+            lines.add(capacities[i] + "," + values[i]);
+        }
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Files.write(path, lines);
+    }
+}
@@ -0,0 +1,283 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes and reads the binary checkpoints of a run of the GA, SA or PSO, from
+ * which the run can be resumed exactly where it left off if the JVM is stopped
+ * (see ResumableSolver).
+ *
+ * A checkpoint starts with the configuration it is for and a fingerprint of the
+ * instance being searched, followed by the state of the run. It is written to a
+ * temporary file next to it, forced to disk, and then renamed over the previous
+ * checkpoint in one step, so that a crash while writing leaves the previous
+ * checkpoint intact.
+ *
+ * The best weight, value and knapsack of every iteration so far, for the report,
+ * would make each checkpoint longer than the last, so they are instead appended
+ * to a trace file next to the checkpoint (e.g. ga.ckpt.trace), each checkpoint
+ * only adding the iterations since the one before. A checkpoint records how much
+ * of the trace it covers, so anything appended after it, e.g. by a run that was
+ * stopped before its next checkpoint was renamed into place, is ignored and then
+ * overwritten.
+ */
+public class Checkpoint {
+    private final static int MAGIC = 0x4b435054; // "KCPT"
+    private final static int VERSION = 3;
+
+    /** Writes the state of a run to a checkpoint, or the contents of another file */
+    interface StateWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /** Reads the state of a run from a checkpoint */
+    interface StateReader {
+        void read(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * Writes a checkpoint for the configuration, replacing any previous checkpoint
+     * at the path atomically
+     */
+    static void write(Path path, String configuration, StateWriter writer) throws IOException {
+        writeAtomically(path, out -> {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(configuration);
+            out.writeLong(getInstanceFingerprint());
+            writer.write(out);
+        });
+    }
+
+    /**
+     * Writes a file through a temporary file next to it, which is forced to disk
+     * and then renamed over the file in one step (or as close to one step as the
+     * file system allows)
+     */
+    static void writeAtomically(Path path, StateWriter writer) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        // A temporary file of its own, in case several processes write the file at once
+        Path temporary = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                writer.write(out);
+                out.flush();
+                channel.force(true);
+            }
+            try {
+                Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Reads a checkpoint for the configuration, after checking that it is one and
+     * that it was written for the instance being searched
+     */
+    static void read(Path path, String configuration, StateReader reader) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            String checkpointConfiguration = readHeader(in, path);
+            if (!checkpointConfiguration.equals(configuration)) {
+                throw new IOException(path + " is a checkpoint of " + checkpointConfiguration + ", not " + configuration);
+            }
+            if (in.readLong() != getInstanceFingerprint()) {
+                throw new IOException(path + " is a checkpoint of a different instance"
+                        + " (check -instance, -capacities and -no_preprocessing)");
+            }
+            reader.read(in);
+        }
+    }
+
+    /** Returns the configuration the checkpoint is for, e.g. "ga_default_01" */
+    public static String readConfiguration(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            return readHeader(in, path);
+        }
+    }
+
+    private static String readHeader(DataInputStream in, Path path) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException(path + " is not a checkpoint");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException(path + " is a checkpoint of version " + version + ", not " + VERSION);
+        }
+        return in.readUTF();
+    }
+
+    /**
+     * Returns a fingerprint of the instance being searched (the core left after
+     * preprocessing) and its capacities, so that a run is not resumed on another
+     */
+    private static long getInstanceFingerprint() {
+        KnapsackInstance items = ProblemConfiguration.instance.getKnapsackItems();
+        long fingerprint = items.getContentHash();
+        for (int capacity : ProblemConfiguration.instance.getCapacities()) {
+            fingerprint = 31 * fingerprint + capacity;
+        }
+        return 31 * fingerprint + items.getFixedValue();
+    }
+
+    /** Writes a 0/1 gene, one byte per item */
+    static void writeGene(DataOutputStream out, int[] gene) throws IOException {
+        out.writeInt(gene.length);
+        for (int g : gene) {
+            out.writeByte(g);
+        }
+    }
+
+    static int[] readGene(DataInputStream in) throws IOException {
+        int[] gene = new int[in.readInt()];
+        for (int i = 0; i < gene.length; i++) {
+            gene[i] = in.readByte();
+        }
+        return gene;
+    }
+
+    static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int v : values) {
+            out.writeInt(v);
+        }
+    }
+
+    static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+        out.writeInt(values.length);
+        for (long v : values) {
+            out.writeLong(v);
+        }
+    }
+
+    static long[] readLongs(DataInputStream in) throws IOException {
+        long[] values = new long[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readLong();
+        }
+        return values;
+    }
+
+    static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double v : values) {
+            out.writeDouble(v);
+        }
+    }
+
+    static double[] readDoubles(DataInputStream in) throws IOException {
+        double[] values = new double[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readDouble();
+        }
+        return values;
+    }
+
+    /** Writes a position or velocity of PSO */
+    static void writeVector(DataOutputStream out, Vector vector) throws IOException {
+        double[] values = new double[vector.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = vector.getValue(i);
+        }
+        writeDoubles(out, values);
+    }
+
+    static Vector readVector(DataInputStream in) throws IOException {
+        return new Vector(readDoubles(in));
+    }
+
+    /**
+     * The trace file of the checkpoints at a path, and how much of it the last
+     * checkpoint written or read covers
+     */
+    static class Trace {
+        private final Path path;
+        private final Path checkpointPath;
+        private int length; // The iterations covered
+        private long size; // The bytes of the file that hold them
+
+        Trace(Path checkpointPath) {
+            this.checkpointPath = checkpointPath;
+            this.path = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".trace");
+        }
+
+        /** Returns true if this is the trace of the checkpoints at the path */
+        boolean isFor(Path checkpointPath) {
+            return this.checkpointPath.equals(checkpointPath);
+        }
+
+        /**
+         * Appends the entries of the best weight, value and knapsack recorded for
+         * each iteration since the last checkpoint to the trace file, forced to disk,
+         * and writes how much of the file the checkpoint covers
+         *
+         * @param length The number of iterations recorded so far
+         */
+        void write(DataOutputStream out, int[] weights, int[] values, String[] knapsacks, int length)
+                throws IOException {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // Drop anything written after the last checkpoint
+                channel.truncate(size);
+                channel.position(size);
+                DataOutputStream trace = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                for (int i = this.length; i < length; i++) {
+                    trace.writeInt(weights[i]);
+                    trace.writeInt(values[i]);
+                    trace.writeUTF(knapsacks[i]);
+                }
+                trace.flush();
+                channel.force(true);
+                size = channel.size();
+            }
+            this.length = length;
+            out.writeInt(length);
+            out.writeLong(size);
+        }
+
+        /** Reads the entries the checkpoint covers into the start of the arrays */
+        void read(DataInputStream in, int[] weights, int[] values, String[] knapsacks) throws IOException {
+            length = in.readInt();
+            size = in.readLong();
+            if (length > weights.length) {
+                throw new IOException("The checkpoint has more iterations than the arrays for them");
+            }
+            if (!Files.isRegularFile(path) || Files.size(path) < size) {
+                throw new IOException(path + " is missing or shorter than its checkpoint");
+            }
+            try (DataInputStream trace = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+                for (int i = 0; i < length; i++) {
+                    weights[i] = trace.readInt();
+                    values[i] = trace.readInt();
+                    knapsacks[i] = trace.readUTF();
+                }
+            }
+        }
+    }
+}
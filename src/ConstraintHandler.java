@@ -0,0 +1,357 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Decides how the algorithms treat knapsacks that are over capacity. The same
+ * handler is used by the GA (Chromosome), SA and PSO (Particle):
+ *
+ * - "ZERO" gives an overweight knapsack a fitness of 0 (the default)
+ * - "REPAIR" replaces an overweight knapsack with a feasible one, by dropping its
+ * least dense items and then adding the densest items that still fit (see
+ * LocalSearch) - the repaired knapsack is kept by the algorithm
+ * - "PENALTY" reduces the value in proportion to the excess weight, with the
+ * penalty adapted to keep roughly half of the knapsacks evaluated feasible
+ * - "DECODER" evaluates an overweight knapsack as if its least dense items were
+ * dropped until it fits, without changing the knapsack itself
+ *
+ * Each thread has its own handler (see ProblemConfiguration), which counts the
+ * knapsacks it evaluates, how many of them were feasible, and the time spent
+ * evaluating them (estimated from a sample of the evaluations).
+ */
+public abstract class ConstraintHandler {
+    // One evaluation in SAMPLE is timed, and stands for the time of all of them
+    private final static int SAMPLE = 64;
+
+    private final String name;
+
+    // Statistics since the handler was created
+    private long numEvaluations;
+    private long numFeasible;
+    private long evaluationTime; // In ns, estimated from the evaluations timed
+    private long numRepaired; // Knapsacks replaced by a repaired copy before they were evaluated
+
+    protected ConstraintHandler(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Creates the handler for a method - "ZERO", "REPAIR", "PENALTY" or
+     * "DECODER"
+     */
+    public static ConstraintHandler create(String method) {
+        if (method.equalsIgnoreCase("REPAIR")) {
+            return new Repair();
+        } else if (method.equalsIgnoreCase("PENALTY")) {
+            return new AdaptivePenalty();
+        } else if (method.equalsIgnoreCase("DECODER")) {
+            return new Decoder();
+        }
+        return new ZeroFitness();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the knapsack the algorithm should keep in place of the given one -
+     * a feasible copy if the handler repairs knapsacks, otherwise the knapsack
+     * itself
+     */
+    public int[] apply(int[] gene) {
+        return gene;
+    }
+
+    /**
+     * Returns the feasible knapsack that the given knapsack stands for - the
+     * knapsack itself unless the handler repairs or decodes it, in which case it
+     * may still be overweight
+     */
+    public int[] decode(int[] gene) {
+        return gene;
+    }
+
+    /** Returns the fitness of the knapsack, recording it in the statistics */
+    public final int evaluate(int[] gene) {
+        // Only one evaluation in SAMPLE is timed, as reading the clock costs about as
+        // much as evaluating a small knapsack
+        boolean timed = (numEvaluations & (SAMPLE - 1)) == 0;
+        long startTime = timed ? System.nanoTime() : 0;
+        KnapsackInstance items = ProblemConfiguration.instance.getKnapsackItems();
+        int value = items.getFixedValue();
+        long excess;
+        if (items.getNumConstraints() == 1) {
+            // The value and the weight in the one pass
+            long weight = items.getFixedWeight();
+            for (int i = 0; i < gene.length; i++) {
+                value += gene[i] * items.getValue(i);
+                weight += gene[i] * items.getWeight(i);
+            }
+            excess = Math.max(0, weight - ProblemConfiguration.instance.getMaximumCapacity());
+        } else {
+            for (int i = 0; i < gene.length; i++) {
+                value += gene[i] * items.getValue(i);
+            }
+            excess = getExcessWeight(items, gene);
+        }
+
+        int fitness = excess == 0 ? value : evaluateOverweight(gene, value, excess);
+        recordEvaluation(excess == 0, timed ? (System.nanoTime() - startTime) * SAMPLE : 0);
+        return fitness;
+    }
+
+    /**
+     * Returns the fitness of a knapsack whose value and weight in each dimension
+     * are already known, e.g. kept as running totals, recording it in the
+     * statistics - without going over its items unless it is overweight
+     */
+    public final int evaluate(int[] gene, int value, int[] totals, int[] capacities) {
+        boolean timed = (numEvaluations & (SAMPLE - 1)) == 0;
+        long startTime = timed ? System.nanoTime() : 0;
+        long excess = 0;
+        for (int d = 0; d < totals.length; d++) {
+            excess += Math.max(0, totals[d] - capacities[d]);
+        }
+
+        int fitness = excess == 0 ? value : evaluateOverweight(gene, value, excess);
+        recordEvaluation(excess == 0, timed ? (System.nanoTime() - startTime) * SAMPLE : 0);
+        return fitness;
+    }
+
+    /**
+     * Counts a knapsack that was evaluated elsewhere, e.g. by a decoder that only
+     * builds feasible knapsacks, and the time in ns the evaluation took
+     */
+    public void recordEvaluation(boolean feasible, long time) {
+        numEvaluations++;
+        if (feasible) {
+            numFeasible++;
+        }
+        evaluationTime += time;
+    }
+
+    /**
+     * Returns the fitness of an overweight knapsack
+     *
+     * @param gene   The knapsack
+     * @param value  Its total value
+     * @param excess The total weight over capacity, over every dimension
+     */
+    protected abstract int evaluateOverweight(int[] gene, int value, long excess);
+
+    /** Returns the total weight over capacity of the knapsack, over every dimension */
+    protected static long getExcessWeight(KnapsackInstance items, int[] gene) {
+        if (items.getNumConstraints() == 1) {
+            long weight = items.getFixedWeight();
+            for (int i = 0; i < gene.length; i++) {
+                weight += gene[i] * items.getWeight(i);
+            }
+            return Math.max(0, weight - ProblemConfiguration.instance.getMaximumCapacity());
+        }
+        int[] capacities = ProblemConfiguration.instance.getCapacities();
+        int[] totals = items.getFixedWeights();
+        long excess = 0;
+        for (int d = 0; d < totals.length; d++) {
+            for (int i = 0; i < gene.length; i++) {
+                totals[d] += gene[i] * items.getWeight(d, i);
+            }
+            excess += Math.max(0, totals[d] - capacities[d]);
+        }
+        return excess;
+    }
+
+    /** Counts a knapsack that was repaired, and the time in ns the repair took */
+    protected void recordRepair(long time) {
+        numRepaired++;
+        evaluationTime += time;
+    }
+
+    /** Returns the number of knapsacks evaluated so far */
+    public long getNumberOfEvaluations() {
+        return numEvaluations;
+    }
+
+    /** Returns the number of knapsacks evaluated so far that were feasible */
+    public long getNumberOfFeasible() {
+        return numFeasible;
+    }
+
+    /**
+     * Writes the statistics, and any state the handler has adapted, to a
+     * checkpoint (see ResumableSolver)
+     */
+    void writeState(DataOutputStream out) throws IOException {
+        out.writeLong(numEvaluations);
+        out.writeLong(numFeasible);
+        out.writeLong(evaluationTime);
+        out.writeLong(numRepaired);
+    }
+
+    /** Restores the state written by writeState() */
+    void readState(DataInputStream in) throws IOException {
+        numEvaluations = in.readLong();
+        numFeasible = in.readLong();
+        evaluationTime = in.readLong();
+        numRepaired = in.readLong();
+    }
+
+    /**
+     * Returns the fraction of the knapsacks evaluated that were feasible (before
+     * any repair)
+     */
+    public double getFeasibilityRate() {
+        return numEvaluations == 0 ? 0 : (double) (numFeasible - numRepaired) / numEvaluations;
+    }
+
+    /** Returns the number of knapsacks evaluated per second of evaluation time */
+    public double getEvaluationsPerSecond() {
+        return evaluationTime == 0 ? 0 : numEvaluations / (evaluationTime / 1e9);
+    }
+
+    /**
+     * Returns a line for the report, e.g. "Constraint handling: PENALTY | 1025024
+     * evaluations | 2491 k evaluations/s | 43.2% feasible"
+     */
+    public String getStatistics() {
+        return String.format("Constraint handling: %s | %d evaluations | %.0f k evaluations/s | %.1f%% feasible",
+                name, numEvaluations, getEvaluationsPerSecond() / 1000, getFeasibilityRate() * 100);
+    }
+
+    /** Gives an overweight knapsack a fitness of 0 */
+    private static class ZeroFitness extends ConstraintHandler {
+        ZeroFitness() {
+            super("ZERO");
+        }
+
+        @Override
+        protected int evaluateOverweight(int[] gene, int value, long excess) {
+            return 0;
+        }
+    }
+
+    /** Replaces an overweight knapsack with a greedily repaired copy */
+    private static class Repair extends ConstraintHandler {
+        Repair() {
+            super("REPAIR");
+        }
+
+        @Override
+        public int[] apply(int[] gene) {
+            long startTime = System.nanoTime();
+            int[] repaired = decode(gene);
+            if (repaired != gene) {
+                recordRepair(System.nanoTime() - startTime);
+            }
+            return repaired;
+        }
+
+        @Override
+        public int[] decode(int[] gene) {
+            KnapsackInstance items = ProblemConfiguration.instance.getKnapsackItems();
+            if (gene.length != items.size() || getExcessWeight(items, gene) == 0) {
+                return gene;
+            }
+            return LocalSearch.repair(items, ProblemConfiguration.instance.getCapacities(), gene);
+        }
+
+        @Override
+        protected int evaluateOverweight(int[] gene, int value, long excess) {
+            return 0; // Only reached if the knapsack was not repaired first
+        }
+    }
+
+    /**
+     * Divides the value by 1 + penalty * excess / capacity, so that the fitness
+     * falls smoothly with the excess weight but never reaches 0 (which would leave
+     * SA with no way back from a badly overweight knapsack). After every window of
+     * evaluations, the penalty is doubled if too few of them were feasible and
+     * halved if too many were. It is capped, as a larger penalty flattens the
+     * fitness of badly overweight knapsacks and SA then wanders among them.
+     */
+    private static class AdaptivePenalty extends ConstraintHandler {
+        private final static int WINDOW = 100;
+        private final static double MIN_FEASIBLE = 0.25;
+        private final static double MAX_FEASIBLE = 0.75;
+        private final static double MIN_PENALTY = 1;
+        private final static double MAX_PENALTY = 4;
+
+        private double penalty = MIN_PENALTY;
+        private long windowStart;
+        private long windowFeasible;
+
+        AdaptivePenalty() {
+            super("PENALTY");
+        }
+
+        @Override
+        protected int evaluateOverweight(int[] gene, int value, long excess) {
+            adapt();
+            long capacity = 0;
+            for (int c : ProblemConfiguration.instance.getCapacities()) {
+                capacity += c;
+            }
+            return (int) Math.max(1, value / (1 + penalty * excess / Math.max(1, capacity)));
+        }
+
+        /** Adapts the penalty once a full window of evaluations has been made */
+        private void adapt() {
+            long evaluations = getNumberOfEvaluations() - windowStart;
+            if (evaluations < WINDOW) {
+                return;
+            }
+            long feasible = getNumberOfFeasible() - windowFeasible;
+            double rate = (double) feasible / evaluations;
+            if (rate < MIN_FEASIBLE) {
+                penalty = Math.min(penalty * 2, MAX_PENALTY);
+            } else if (rate > MAX_FEASIBLE) {
+                penalty = Math.max(penalty / 2, MIN_PENALTY);
+            }
+            windowStart += evaluations;
+            windowFeasible += feasible;
+        }
+
+        @Override
+        void writeState(DataOutputStream out) throws IOException {
+            super.writeState(out);
+            out.writeDouble(penalty);
+            out.writeLong(windowStart);
+            out.writeLong(windowFeasible);
+        }
+
+        @Override
+        void readState(DataInputStream in) throws IOException {
+            super.readState(in);
+            penalty = in.readDouble();
+            windowStart = in.readLong();
+            windowFeasible = in.readLong();
+        }
+    }
+
+    /** Evaluates an overweight knapsack as its least dense items dropped until it fits */
+    private static class Decoder extends ConstraintHandler {
+        Decoder() {
+            super("DECODER");
+        }
+
+        @Override
+        public int[] decode(int[] gene) {
+            KnapsackInstance items = ProblemConfiguration.instance.getKnapsackItems();
+            if (gene.length != items.size() || getExcessWeight(items, gene) == 0) {
+                return gene;
+            }
+            return LocalSearch.dropUntilFeasible(items, ProblemConfiguration.instance.getCapacities(), gene);
+        }
+
+        @Override
+        protected int evaluateOverweight(int[] gene, int value, long excess) {
+            int[] decoded = decode(gene);
+            KnapsackInstance items = ProblemConfiguration.instance.getKnapsackItems();
+            int decodedValue = items.getFixedValue();
+            for (int i = 0; i < decoded.length; i++) {
+                decodedValue += decoded[i] * items.getValue(i);
+            }
+            return decodedValue;
+        }
+    }
+}
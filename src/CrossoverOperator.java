@@ -0,0 +1,182 @@
+/**
+ * A crossover for the genetic algorithm, which returns the genes of two
+ * children of two parents - 0/1 genes, or item orders for the order crossovers
+ * (see PermutationChromosome). The built-in crossovers are registered in
+ * OperatorRegistry under their method names.
+ */
+public interface CrossoverOperator {
+    /**
+     * Returns the genes of the two children, leaving the genes of the parents
+     * unchanged
+     */
+    int[][] cross(int[] parent1, int[] parent2);
+
+    /**
+     * Returns true if the crossover works on item orders, in which case the GA
+     * uses PermutationChromosome
+     */
+    default boolean isPermutation() {
+        return false;
+    }
+
+    /**
+     * 1-Point Crossover ("1PX"): the first part of each child comes from one parent
+     * and the second part from the other
+     */
+    public static final class OnePoint implements CrossoverOperator {
+        @Override
+        public int[][] cross(int[] parent1, int[] parent2) {
+            // Pick a random index to be used as a crossover point
+            int pivot = ProblemConfiguration.instance.getRandomGenerator().nextInt(parent1.length);
+            int[] child1 = new int[parent1.length];
+            int[] child2 = new int[parent1.length];
+
+            // Encode the genes for child 1
+            // The first part is from parent 1 and the second part is from parent 2
+            System.arraycopy(parent1, 0, child1, 0, pivot);
+            System.arraycopy(parent2, pivot, child1, pivot, child1.length - pivot);
+
+            // Encode genes for child 2
+            // The first part is from parent 2 and the second part is from parent 1
+            System.arraycopy(parent2, 0, child2, 0, pivot);
+            System.arraycopy(parent1, pivot, child2, pivot, child2.length - pivot);
+
+            return new int[][] { child1, child2 };
+        }
+    }
+
+    /**
+     * 2-Point Crossover ("2PX"): the middle part of each child comes from one
+     * parent, and the first and end parts from the other
+     */
+    public static final class TwoPoint implements CrossoverOperator {
+        @Override
+        public int[][] cross(int[] parent1, int[] parent2) {
+            // Pick two random indices to be used as crossover points
+            int pivot1 = ProblemConfiguration.instance.getRandomGenerator().nextInt(parent1.length);
+            int pivot2 = ProblemConfiguration.instance.getRandomGenerator().nextInt(parent1.length);
+
+            // Makes sure that pivot1 < pivot2
+            if (pivot2 < pivot1) {
+                int temp = pivot1;
+                pivot1 = pivot2;
+                pivot2 = temp;
+            }
+
+            int[] child1 = new int[parent1.length];
+            int[] child2 = new int[parent1.length];
+
+            // Encode genes for child 1
+            // The middle part is from parent 2, and the first and end part from parent 1
+            System.arraycopy(parent1, 0, child1, 0, pivot1);
+            System.arraycopy(parent2, pivot1, child1, pivot1, pivot2 - pivot1);
+            System.arraycopy(parent1, pivot2, child1, pivot2, child1.length - pivot2);
+
+            // Encode genes for child 2
+            // The middle part is from parent 1, and the first and end part from parent 2
+            System.arraycopy(parent2, 0, child2, 0, pivot1);
+            System.arraycopy(parent1, pivot1, child2, pivot1, pivot2 - pivot1);
+            System.arraycopy(parent2, pivot2, child2, pivot2, child2.length - pivot2);
+
+            return new int[][] { child1, child2 };
+        }
+    }
+
+    /**
+     * Order Crossover ("OX"): each child has the segment between two random pivots
+     * from one parent, and the rest of the items in the order they appear in the
+     * other parent, starting after the segment and wrapping around
+     */
+    public static final class OrderCrossover implements CrossoverOperator {
+        @Override
+        public int[][] cross(int[] parent1, int[] parent2) {
+            int[] pivots = pickPivots(parent1.length);
+            return new int[][] { cross(parent1, parent2, pivots[0], pivots[1]),
+                    cross(parent2, parent1, pivots[0], pivots[1]) };
+        }
+
+        @Override
+        public boolean isPermutation() {
+            return true;
+        }
+
+        /** Returns the child with the segment from the first parent */
+        static int[] cross(int[] parent1, int[] parent2, int pivot1, int pivot2) {
+            int n = parent1.length;
+            int[] child = new int[n];
+            boolean[] used = new boolean[n];
+            for (int i = pivot1; i < pivot2; i++) {
+                child[i] = parent1[i];
+                used[parent1[i]] = true;
+            }
+            int position = pivot2 % n;
+            for (int i = 0; i < n; i++) {
+                int item = parent2[(pivot2 + i) % n];
+                if (!used[item]) {
+                    child[position] = item;
+                    position = (position + 1) % n;
+                }
+            }
+            return child;
+        }
+    }
+
+    /**
+     * Partially Mapped Crossover ("PMX"): each child has the segment between two
+     * random pivots from one parent, and the rest from the other. An item of the
+     * other parent that is already in the segment is replaced by following the
+     * mapping between the two segments until an item not in the segment is
+     * reached.
+     */
+    public static final class PartiallyMapped implements CrossoverOperator {
+        @Override
+        public int[][] cross(int[] parent1, int[] parent2) {
+            int[] pivots = pickPivots(parent1.length);
+            return new int[][] { cross(parent1, parent2, pivots[0], pivots[1]),
+                    cross(parent2, parent1, pivots[0], pivots[1]) };
+        }
+
+        @Override
+        public boolean isPermutation() {
+            return true;
+        }
+
+        /** Returns the child with the segment from the first parent */
+        static int[] cross(int[] parent1, int[] parent2, int pivot1, int pivot2) {
+            int n = parent1.length;
+            int[] child = new int[n];
+            int[] positionInParent1 = new int[n];
+            boolean[] inSegment = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                positionInParent1[parent1[i]] = i;
+            }
+            for (int i = pivot1; i < pivot2; i++) {
+                child[i] = parent1[i];
+                inSegment[parent1[i]] = true;
+            }
+            for (int i = 0; i < n; i++) {
+                if (i >= pivot1 && i < pivot2) {
+                    continue;
+                }
+                int item = parent2[i];
+                while (inSegment[item]) {
+                    item = parent2[positionInParent1[item]];
+                }
+                child[i] = item;
+            }
+            return child;
+        }
+    }
+
+    /** Picks two random crossover points, with the first <= the second */
+    static int[] pickPivots(int length) {
+        int pivot1 = ProblemConfiguration.instance.getRandomGenerator().nextInt(length);
+        int pivot2 = ProblemConfiguration.instance.getRandomGenerator().nextInt(length);
+        if (pivot2 < pivot1) {
+            int temp = pivot1;
+            pivot1 = pivot2;
+            pivot2 = temp;
+        }
+        return new int[] { pivot1, pivot2 };
+    }
+}
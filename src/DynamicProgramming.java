@@ -0,0 +1,312 @@
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Exact solver for the 0/1 knapsack problem using dynamic programming in
+ * O(n * W) time, where W is the maximum capacity.
+ *
+ * The best value for every capacity 0..W is kept in a single rolling int[]
+ * array, which is updated from the highest capacity down for each item. The
+ * decision made for each item and capacity is recorded in a packed bitset (one
+ * bit per item per capacity), from which the optimal knapsack is read back. If
+ * the bitset would be too large, the optimal knapsack is instead found by
+ * divide and conquer (as in Hirschberg's algorithm), which only ever needs
+ * O(W) memory.
+ *
+ * For large capacities each item's row is computed in parallel instead. The
+ * row is double-buffered - the new row is written to a second array while the
+ * previous row is only read - so every capacity in the row can be computed
+ * independently. The row is split into blocks of capacities which are computed
+ * by a fork-join pool. Without in-place updates the loop over a block has no
+ * dependency between iterations, which also lets the JIT compiler vectorize
+ * the max operations with SIMD instructions.
+ */
+public class DynamicProgramming {
+    // The largest decision bitset to allocate, in bytes
+    private final static long MAX_DECISION_BYTES = 256L * 1024 * 1024;
+
+    // Capacities from which the rows are computed in parallel, and the smallest
+    // block of capacities given to one task (a multiple of 64, so that no two
+    // tasks write to the same word of the decision bitset)
+    private final static int PARALLEL_THRESHOLD = 1 << 16;
+    private final static int BLOCK_SIZE = 1 << 14;
+
+    // Optimal values already computed, per instance and capacity, until the instance is
+    // no longer used
+    private final static Map<KnapsackInstance, Map<Integer, Integer>> optimumCache = //
+            Collections.synchronizedMap(new WeakHashMap<KnapsackInstance, Map<Integer, Integer>>());
+
+    /**
+     * Returns the optimal value of the instance for the given capacity, computing
+     * it only the first time it is asked for
+     */
+    public static int getOptimalValue(KnapsackInstance items, int capacity) {
+        if (items.getNumConstraints() > 1) {
+            throw new IllegalArgumentException("Dynamic programming only solves single-constraint instances");
+        }
+        Map<Integer, Integer> optima = optimumCache.computeIfAbsent(items,
+                k -> new ConcurrentHashMap<Integer, Integer>());
+        return optima.computeIfAbsent(capacity, c -> {
+            int remaining = c - items.getFixedWeight();
+            if (remaining < 0) {
+                return 0;
+            }
+            return computeBestValues(items, 0, items.size(), remaining)[remaining] + items.getFixedValue();
+        });
+    }
+
+    /**
+     * Returns the optimal value of the instance for each of the given capacities,
+     * all read from the one table computed for the largest of them, and caches
+     * them for getOptimalValue()
+     */
+    public static int[] getOptimalValues(KnapsackInstance items, int[] capacities) {
+        if (items.getNumConstraints() > 1) {
+            throw new IllegalArgumentException("Dynamic programming only solves single-constraint instances");
+        }
+        int largest = 0;
+        for (int capacity : capacities) {
+            largest = Math.max(largest, capacity - items.getFixedWeight());
+        }
+        int[] best = computeBestValues(items, 0, items.size(), largest);
+        Map<Integer, Integer> optima = optimumCache.computeIfAbsent(items,
+                k -> new ConcurrentHashMap<Integer, Integer>());
+        int[] values = new int[capacities.length];
+        for (int i = 0; i < capacities.length; i++) {
+            int remaining = capacities[i] - items.getFixedWeight();
+            values[i] = remaining < 0 ? 0 : best[remaining] + items.getFixedValue();
+            optima.put(capacities[i], values[i]);
+        }
+        return values;
+    }
+
+    /**
+     * Returns an optimal knapsack for the instance, as a gene over its items
+     *
+     * @param items    The knapsack instance (with a single constraint)
+     * @param capacity The maximum capacity of the knapsack
+     */
+    public static int[] solve(KnapsackInstance items, int capacity) {
+        if (items.getNumConstraints() > 1) {
+            throw new IllegalArgumentException("Dynamic programming only solves single-constraint instances");
+        }
+        int[] gene = new int[items.size()];
+        int remaining = capacity - items.getFixedWeight();
+        if (remaining < 0) {
+            return gene;
+        }
+        solveRange(items, 0, items.size(), remaining, gene);
+        return gene;
+    }
+
+    /**
+     * Fills in gene with an optimal choice of the items lo..hi-1 for the given
+     * capacity - directly from a decision bitset if it is small enough, otherwise
+     * by splitting the items in half and finding how to split the capacity
+     * between the two halves
+     */
+    private static void solveRange(KnapsackInstance items, int lo, int hi, int capacity, int[] gene) {
+        if (hi - lo == 1) {
+            // A single item is taken if it fits
+            gene[lo] = items.getWeight(lo) <= capacity && items.getValue(lo) > 0 ? 1 : 0;
+            return;
+        }
+        if ((long) (hi - lo) * ((capacity >>> 6) + 1) * 8 <= MAX_DECISION_BYTES) {
+            solveWithDecisionBitset(items, lo, hi, capacity, gene);
+            return;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        int[] firstHalf = computeBestValues(items, lo, mid, capacity);
+        int[] secondHalf = computeBestValues(items, mid, hi, capacity);
+
+        // Split the capacity where the two halves together are best
+        int bestSplit = 0;
+        long bestValue = -1;
+        for (int c = 0; c <= capacity; c++) {
+            long value = (long) firstHalf[c] + secondHalf[capacity - c];
+            if (value > bestValue) {
+                bestValue = value;
+                bestSplit = c;
+            }
+        }
+        firstHalf = null;
+        secondHalf = null;
+        solveRange(items, lo, mid, bestSplit, gene);
+        solveRange(items, mid, hi, capacity - bestSplit, gene);
+    }
+
+    /**
+     * Returns the best value of the items lo..hi-1 for every capacity 0..capacity,
+     * in parallel if the capacity is large enough to be worth it
+     */
+    static int[] computeBestValues(KnapsackInstance items, int lo, int hi, int capacity) {
+        if (capacity >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            return computeBestValuesParallel(items, lo, hi, capacity, ForkJoinPool.commonPool());
+        }
+        return computeBestValuesSequential(items, lo, hi, capacity);
+    }
+
+    /**
+     * Returns the best value of the items lo..hi-1 for every capacity 0..capacity,
+     * using one rolling array
+     */
+    static int[] computeBestValuesSequential(KnapsackInstance items, int lo, int hi, int capacity) {
+        int[] best = new int[capacity + 1];
+        for (int i = lo; i < hi; i++) {
+            int weight = items.getWeight(i);
+            int value = items.getValue(i);
+            // Go from the highest capacity down, so that best[c - weight] still
+            // excludes item i
+            for (int c = capacity; c >= weight; c--) {
+                int candidate = best[c - weight] + value;
+                if (candidate > best[c]) {
+                    best[c] = candidate;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the best value of the items lo..hi-1 for every capacity 0..capacity,
+     * computing each item's row in parallel blocks on the given pool
+     */
+    static int[] computeBestValuesParallel(KnapsackInstance items, int lo, int hi, int capacity, ForkJoinPool pool) {
+        int[] previous = new int[capacity + 1];
+        int[] next = new int[capacity + 1];
+        for (int i = lo; i < hi; i++) {
+            pool.invoke(new RowUpdate(previous, next, items.getWeight(i), items.getValue(i), 0, capacity + 1, null, 0));
+            // Swap the buffers, so that the row just computed is read for the next item
+            int[] temp = previous;
+            previous = next;
+            next = temp;
+        }
+        return previous;
+    }
+
+    /**
+     * Computes the capacities from..to-1 of the row for one item from the previous
+     * row, splitting the range in half until the blocks are small enough
+     */
+    private static class RowUpdate extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int[] previous;
+        private final int[] next;
+        private final int weight;
+        private final int value;
+        private final int from;
+        private final int to;
+        private final long[] decisions; // null if the decisions are not recorded
+        private final int row; // The offset of the item's row in decisions
+
+        RowUpdate(int[] previous, int[] next, int weight, int value, int from, int to, long[] decisions, int row) {
+            this.previous = previous;
+            this.next = next;
+            this.weight = weight;
+            this.value = value;
+            this.from = from;
+            this.to = to;
+            this.decisions = decisions;
+            this.row = row;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > BLOCK_SIZE) {
+                // Split on a multiple of 64 capacities
+                int mid = ((from + (to - from) / 2) >>> 6) << 6;
+                invokeAll(new RowUpdate(previous, next, weight, value, from, mid, decisions, row),
+                        new RowUpdate(previous, next, weight, value, mid, to, decisions, row));
+                return;
+            }
+            // Capacities below the item's weight cannot take it
+            int split = Math.max(from, Math.min(to, weight));
+            System.arraycopy(previous, from, next, from, split - from);
+            if (decisions == null) {
+                for (int c = split; c < to; c++) {
+                    next[c] = Math.max(previous[c], previous[c - weight] + value);
+                }
+            } else {
+                for (int c = split; c < to; c++) {
+                    int candidate = previous[c - weight] + value;
+                    if (candidate > previous[c]) {
+                        next[c] = candidate;
+                        decisions[row + (c >>> 6)] |= 1L << c;
+                    } else {
+                        next[c] = previous[c];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Solves the items lo..hi-1 with a rolling array, recording a bit for every
+     * item and capacity at which the item was taken, and then reads the optimal
+     * knapsack back from the bits
+     */
+    private static void solveWithDecisionBitset(KnapsackInstance items, int lo, int hi, int capacity, int[] gene) {
+        int words = (capacity >>> 6) + 1; // 64 capacities per long
+        long[] decisions = new long[(hi - lo) * words];
+        if (capacity >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            int[] previous = new int[capacity + 1];
+            int[] next = new int[capacity + 1];
+            for (int i = lo; i < hi; i++) {
+                ForkJoinPool.commonPool().invoke(new RowUpdate(previous, next, items.getWeight(i),
+                        items.getValue(i), 0, capacity + 1, decisions, (i - lo) * words));
+                int[] temp = previous;
+                previous = next;
+                next = temp;
+            }
+        } else {
+            int[] best = new int[capacity + 1];
+            for (int i = lo; i < hi; i++) {
+                int weight = items.getWeight(i);
+                int value = items.getValue(i);
+                int row = (i - lo) * words;
+                for (int c = capacity; c >= weight; c--) {
+                    int candidate = best[c - weight] + value;
+                    if (candidate > best[c]) {
+                        best[c] = candidate;
+                        decisions[row + (c >>> 6)] |= 1L << c; // The shift is taken mod 64
+                    }
+                }
+            }
+        }
+
+        // Walk back through the items, taking each one whose bit is set at the
+        // capacity that is left
+        int c = capacity;
+        for (int i = hi - 1; i >= lo; i--) {
+            int row = (i - lo) * words;
+            if ((decisions[row + (c >>> 6)] & (1L << c)) != 0) {
+                gene[i] = 1;
+                c -= items.getWeight(i);
+            } else {
+                gene[i] = 0;
+            }
+        }
+    }
+
+    /** Solves the default instance and prints the optimal knapsack */
+    public static void main(String[] args) {
+        KnapsackInstance items = new KnapsackInstance();
+        int capacity = ProblemConfiguration.instance.getMaximumCapacity();
+        long startTime = System.currentTimeMillis();
+        int[] gene = solve(items, capacity);
+        long runtime = System.currentTimeMillis() - startTime;
+        int weight = 0;
+        int value = 0;
+        for (int i = 0; i < gene.length; i++) {
+            weight += gene[i] * items.getWeight(i);
+            value += gene[i] * items.getValue(i);
+        }
+        System.out.println("Optimal value: " + value + " (weight " + weight + ") in " + runtime + " ms");
+        System.out.println("Cached optimum: " + getOptimalValue(items, capacity));
+    }
+}
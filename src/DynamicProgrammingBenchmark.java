@@ -0,0 +1,60 @@
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares the sequential and parallel dynamic programming rows on random
+ * instances with capacities W = 10^3 up to 10^8, printing the time each takes
+ * to compute the best values for every capacity.
+ *
+ * Usage: java DynamicProgrammingBenchmark [maxExponent] [numItems] [numThreads]
+ */
+public class DynamicProgrammingBenchmark {
+    private final static int WARMUP_RUNS = 2;
+
+    public static void main(String[] args) {
+        int maxExponent = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int numItems = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int numThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(numThreads);
+        MersenneTwister random = new MersenneTwister(42);
+
+        System.out.println("n = " + numItems + ", threads = " + numThreads);
+        System.out.println(String.format("%12s %15s %15s %10s", "W", "Sequential ms", "Parallel ms", "Speedup"));
+        for (int exponent = 3; exponent <= maxExponent; exponent++) {
+            int capacity = (int) Math.pow(10, exponent);
+            // Items weigh up to a quarter of the capacity, so that about half fit
+            int[] weights = new int[numItems];
+            int[] values = new int[numItems];
+            for (int i = 0; i < numItems; i++) {
+                weights[i] = 1 + random.nextInt(Math.max(1, capacity / 4));
+                values[i] = 1 + random.nextInt(1000);
+            }
+            KnapsackInstance items = new KnapsackInstance(weights, values);
+
+            try {
+                // Warm up both versions on a small capacity so that they are compiled
+                for (int r = 0; r < WARMUP_RUNS; r++) {
+                    DynamicProgramming.computeBestValuesSequential(items, 0, numItems, Math.min(capacity, 100000));
+                    DynamicProgramming.computeBestValuesParallel(items, 0, numItems, Math.min(capacity, 100000), pool);
+                }
+                long startTime = System.nanoTime();
+                int[] sequential = DynamicProgramming.computeBestValuesSequential(items, 0, numItems, capacity);
+                double sequentialTime = (System.nanoTime() - startTime) / 1e6;
+                int sequentialBest = sequential[capacity];
+                sequential = null;
+
+                startTime = System.nanoTime();
+                int[] parallel = DynamicProgramming.computeBestValuesParallel(items, 0, numItems, capacity, pool);
+                double parallelTime = (System.nanoTime() - startTime) / 1e6;
+                if (parallel[capacity] != sequentialBest) {
+                    System.out.println("Mismatch at W = " + capacity + ": " + sequentialBest + " vs " + parallel[capacity]);
+                }
+                System.out.println(String.format("%12d %15.1f %15.1f %9.2fx", capacity, sequentialTime, parallelTime,
+                        sequentialTime / parallelTime));
+            } catch (OutOfMemoryError e) {
+                System.out.println(String.format("%12d %15s", capacity, "out of memory"));
+                break;
+            }
+        }
+        pool.shutdown();
+    }
+}
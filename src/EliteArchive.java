@@ -0,0 +1,223 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The best distinct knapsacks found by previous runs on an instance, kept in a
+ * compact binary file so that later runs can start from them rather than from
+ * random solutions: the GA seeds part of its initial population from the
+ * archive, SA starts from one of its knapsacks, and PSO places some of its
+ * particles on them. Every run of these algorithms offers its best knapsack
+ * back to the archive at the end.
+ *
+ * The file is named after a hash of the items' weights and values (see
+ * KnapsackInstance.getContentHash()), so each instance has its own archive. The
+ * knapsacks are stored over the full instance, one bit per item, and mapped onto
+ * the items being searched when they are used, so the archive is shared by runs
+ * with and without preprocessing. The capacities are not part of the key: when
+ * they have changed, knapsacks that no longer fit are repaired greedily (see
+ * LocalSearch) as they are loaded.
+ */
+public class EliteArchive {
+    public final static int SIZE = 32; // The most knapsacks kept
+    // The most of a population or swarm started from the archive, so that the rest
+    // keeps the search diverse
+    public final static double MAX_SEED_RATIO = 0.1;
+    private final static int MAGIC = 0x4b454c54; // "KELT"
+    private final static int VERSION = 1;
+
+    private final Path path;
+    private final KnapsackInstance fullItems;
+    private final long hash;
+    private final List<Elite> elites = new ArrayList<Elite>(); // In descending order of value
+    private final Set<BitSet> genes = new HashSet<BitSet>(); // For finding duplicates
+
+    /** A knapsack over the full instance, and its value */
+    private static class Elite {
+        final BitSet gene;
+        final int value;
+
+        Elite(BitSet gene, int value) {
+            this.gene = gene;
+            this.value = value;
+        }
+    }
+
+    private EliteArchive(Path path, KnapsackInstance fullItems) {
+        this.path = path;
+        this.fullItems = fullItems;
+        this.hash = fullItems.getContentHash();
+    }
+
+    /**
+     * Opens the archive of the current instance in the directory, loading the
+     * knapsacks it already holds, if any
+     *
+     * @param directory e.g. "archive", holding e.g. archive/elite_1f3a...c2.bin
+     */
+    public static EliteArchive open(Path directory) throws IOException {
+        KnapsackInstance fullItems = ProblemConfiguration.instance.getFullKnapsackItems();
+        Path path = directory.resolve(String.format("elite_%016x.bin", fullItems.getContentHash()));
+        EliteArchive archive = new EliteArchive(path, fullItems);
+        archive.load();
+        return archive;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /** Returns the number of knapsacks in the archive */
+    public synchronized int size() {
+        return elites.size();
+    }
+
+    /** Returns the value of the best knapsack in the archive, or 0 if it is empty */
+    public synchronized int getBestValue() {
+        return elites.isEmpty() ? 0 : elites.get(0).value;
+    }
+
+    /**
+     * Returns up to the given number of the best knapsacks in the archive, as genes
+     * over the items being searched (the core left after preprocessing)
+     */
+    public synchronized int[][] getElites(int count) {
+        if (ProblemConfiguration.instance.getFullKnapsackItems() != fullItems) {
+            return new int[0][]; // The instance has changed since (see InstanceDelta)
+        }
+        KnapsackInstance items = ProblemConfiguration.instance.getKnapsackItems();
+        int[] capacities = ProblemConfiguration.instance.getCapacities();
+        int[][] result = new int[Math.min(count, elites.size())][];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = items.compress(toGene(elites.get(i).gene));
+            // A knapsack without all the items fixed by preprocessing may not fit
+            // once they are added back
+            if (!items.isFeasible(result[i], capacities)) {
+                result[i] = LocalSearch.repair(items, capacities, result[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds a knapsack over the items being searched, unless it is already in the
+     * archive, is overweight, or is worse than every knapsack of a full archive,
+     * or the instance has changed since the archive was opened. Returns true if it
+     * was added.
+     */
+    public synchronized boolean add(int[] gene) {
+        KnapsackInstance items = ProblemConfiguration.instance.getKnapsackItems();
+        if (ProblemConfiguration.instance.getFullKnapsackItems() != fullItems
+                || !items.isFeasible(gene, ProblemConfiguration.instance.getCapacities())) {
+            return false;
+        }
+        return insert(toBits(items.expand(gene)));
+    }
+
+    /**
+     * Writes the archive to its file, having first merged in any knapsacks that
+     * other runs have written to the file since it was loaded
+     */
+    public synchronized void save() throws IOException {
+        load();
+        Checkpoint.writeAtomically(path, out -> {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(hash);
+            out.writeInt(fullItems.size());
+            out.writeInt(elites.size());
+            for (Elite elite : elites) {
+                long[] words = elite.gene.toLongArray();
+                out.writeInt(words.length);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            }
+        });
+    }
+
+    /** Adds the knapsacks in the archive's file, if it exists */
+    private void load() throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(path + " is not an elite archive of version " + VERSION);
+            }
+            if (in.readLong() != hash || in.readInt() != fullItems.size()) {
+                throw new IOException(path + " is the elite archive of a different instance");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long[] words = new long[in.readInt()];
+                for (int j = 0; j < words.length; j++) {
+                    words[j] = in.readLong();
+                }
+                insert(fit(BitSet.valueOf(words)));
+            }
+        }
+    }
+
+    /**
+     * Returns the knapsack, or a greedily repaired copy of it if it is over the
+     * current capacities
+     */
+    private BitSet fit(BitSet bits) {
+        int[] capacities = ProblemConfiguration.instance.getCapacities();
+        int[] gene = toGene(bits);
+        if (fullItems.isFeasible(gene, capacities)) {
+            return bits;
+        }
+        return toBits(LocalSearch.repair(fullItems, capacities, gene));
+    }
+
+    /** Inserts a feasible knapsack over the full instance in order of value */
+    private boolean insert(BitSet gene) {
+        if (genes.contains(gene)) {
+            return false;
+        }
+        int value = 0;
+        for (int i = gene.nextSetBit(0); i >= 0; i = gene.nextSetBit(i + 1)) {
+            value += fullItems.getValue(i);
+        }
+        if (elites.size() == SIZE && value <= elites.get(SIZE - 1).value) {
+            return false;
+        }
+        int position = 0;
+        while (position < elites.size() && elites.get(position).value >= value) {
+            position++;
+        }
+        elites.add(position, new Elite(gene, value));
+        genes.add(gene);
+        if (elites.size() > SIZE) {
+            genes.remove(elites.remove(SIZE).gene);
+        }
+        return true;
+    }
+
+    private BitSet toBits(int[] gene) {
+        BitSet bits = new BitSet(gene.length);
+        for (int i = 0; i < gene.length; i++) {
+            if (gene[i] == 1) {
+                bits.set(i);
+            }
+        }
+        return bits;
+    }
+
+    private int[] toGene(BitSet bits) {
+        int[] gene = new int[fullItems.size()];
+        for (int i = bits.nextSetBit(0); i >= 0 && i < gene.length; i = bits.nextSetBit(i + 1)) {
+            gene[i] = 1;
+        }
+        return gene;
+    }
+}
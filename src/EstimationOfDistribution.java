@@ -0,0 +1,407 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Class used for running an estimation of distribution algorithm on the
+ * knapsack problem, given the specified parameters of model, population size
+ * and learning rate.
+ *
+ * Rather than a population of chromosomes, the population is represented by the
+ * probability of each item being in a knapsack. Candidates are sampled from the
+ * probabilities, repaired greedily if they are overweight (dropping the least
+ * dense items, then adding the densest items that still fit), and the
+ * probabilities are updated from the better candidates by one of three models:
+ *
+ * - "CGA" (compact GA) samples two candidates per iteration, and moves the
+ * probabilities of the items on which they differ 1 / population_size towards
+ * the winner
+ * - "PBIL" samples population_size candidates, and moves the probabilities
+ * towards the best of them by the learning rate
+ * - "UMDA" samples population_size candidates, and sets the probabilities to
+ * the frequency of each item in the better half of them
+ *
+ * Each candidate is sampled from its own seed, so only the values of the
+ * candidates are kept - the ones selected to update the model are sampled again
+ * from their seeds. Memory is therefore O(n) per thread, whatever the population
+ * size. Each 64-bit random number decides two items, and with several threads
+ * the candidates are split between them; as every candidate depends only on its
+ * seed, the result does not depend on the number of threads.
+ */
+public class EstimationOfDistribution extends KnapsackSolver {
+    // Candidates are sampled in parallel in chunks of this many
+    private final static int CHUNK_SIZE = 16;
+
+    private String model;
+    private int populationSize;
+    private double learningRate;
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    // The state of the current run
+    private KnapsackInstance items;
+    private int[] capacities;
+    private int[] fixedWeights;
+    private double[] probabilities;
+    private long[] thresholds; // The probabilities scaled to 32 bits, for sampling
+    private int[] bestKnapsack;
+    private int bestValue;
+    private long numCandidates; // The number of candidates sampled
+    private ForkJoinPool pool;
+
+    /**
+     * Parametrized constructor for an EDA instance with parameters specified in
+     * the JSON files
+     *
+     * @param configuration  e.g. "eda_default_01"
+     * @param model          "CGA", "PBIL" or "UMDA"
+     * @param populationSize The (virtual) population size, e.g. 100
+     * @param learningRate   How far PBIL moves the probabilities towards the best
+     *                       candidate, e.g. 0.1 (not used by the other models)
+     */
+    public EstimationOfDistribution(String configuration, String model, int populationSize, double learningRate) {
+        super(configuration);
+        this.model = model.toUpperCase();
+        this.populationSize = Math.max(2, populationSize);
+        this.learningRate = learningRate;
+    }
+
+    /** Sets the number of threads that sample the candidates */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Returns the highest value of the knapsack achieved using the EDA with the
+     * given parameters
+     */
+    public int run() {
+        // To be used for statistics for report
+        startConstraintHandling();
+        startRun();
+        int maxIterations = maximumIterations;
+        int[] bweights = new int[maxIterations];
+        int[] bvalues = new int[maxIterations];
+        String[] knapsacks = new String[maxIterations];
+
+        initialize();
+        pool = numThreads > 1 ? new ForkJoinPool(numThreads) : null;
+        int numIterations = 0;
+        try {
+            while (numIterations < maxIterations && !shouldStop()) {
+                long seed = ProblemConfiguration.instance.getRandomGenerator().nextLong();
+                if (model.equals("CGA")) {
+                    updateCompact(seed);
+                } else if (model.equals("UMDA")) {
+                    updateUnivariate(seed);
+                } else {
+                    updateIncremental(seed);
+                }
+
+                // In a portfolio, share the best knapsack, and take up a better one found
+                // by another algorithm, moving the model towards it
+                SharedIncumbent.Solution shared = exchangeIncumbent(bestKnapsack, bestValue);
+                if (shared != null) {
+                    keepIfBest(shared.getGene(), shared.getValue());
+                    double rate = model.equals("PBIL") ? learningRate : 1.0 / populationSize;
+                    for (int i = 0; i < bestKnapsack.length; i++) {
+                        setProbability(i, (1 - rate) * probabilities[i] + rate * bestKnapsack[i]);
+                    }
+                }
+
+                bweights[numIterations] = getWeight(bestKnapsack);
+                bvalues[numIterations] = bestValue;
+                recordValue(bvalues[numIterations]);
+                knapsacks[numIterations] = displayKnapsack(bestKnapsack);
+                numIterations += 1;
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+
+        endRun();
+        long runtime = getRuntime();
+        String params = String.format("EDA | #%d | Model = %s | Population Size = %d | Learning Rate = %.2f",
+                numIterations, model, populationSize, learningRate);
+        if (numIterations < maxIterations) {
+            // Only report on the iterations that were run
+            if (getStopReason() != null) {
+                params += " | stopped: " + getStopReason();
+            }
+            bweights = Arrays.copyOf(bweights, numIterations);
+            bvalues = Arrays.copyOf(bvalues, numIterations);
+            knapsacks = Arrays.copyOf(knapsacks, numIterations);
+        }
+
+        if (reporting) {
+            double converged = 0;
+            for (double p : probabilities) {
+                converged += Math.max(p, 1 - p);
+            }
+            String statistics = String.format("Candidates sampled: %d | %.0f k candidates/s | %.1f%% converged",
+                    numCandidates, runtime == 0 ? 0 : numCandidates / (double) runtime,
+                    100 * (2 * converged / Math.max(1, probabilities.length) - 1));
+            String report = ReportGenerator.generateReport(configuration, params, bweights, bvalues, knapsacks,
+                    runtime, numIterations, statistics);
+            ReportGenerator.writeToFile(report, configuration);
+
+            System.out.println(configuration + ": " + bestValue);
+        }
+
+        return bestValue;
+    }
+
+    /** Starts every probability at 1/2 */
+    private void initialize() {
+        items = ProblemConfiguration.instance.getKnapsackItems();
+        capacities = ProblemConfiguration.instance.getCapacities();
+        fixedWeights = items.getFixedWeights();
+        int n = items.size();
+        probabilities = new double[n];
+        thresholds = new long[n];
+        for (int i = 0; i < n; i++) {
+            setProbability(i, 0.5);
+        }
+        bestKnapsack = new int[n];
+        bestValue = items.getFixedValue();
+        numCandidates = 0;
+    }
+
+    /**
+     * Sets the probability of an item, kept within [1/n, 1 - 1/n] so that no item
+     * is fixed in or out for good
+     */
+    private void setProbability(int i, double p) {
+        double margin = 1.0 / Math.max(2, probabilities.length);
+        probabilities[i] = Math.max(margin, Math.min(1 - margin, p));
+        thresholds[i] = (long) (probabilities[i] * (1L << 32));
+    }
+
+    /** cGA: samples two candidates, and moves the model towards the better one */
+    private void updateCompact(long seed) {
+        int n = probabilities.length;
+        int[] first = new int[n];
+        int[] second = new int[n];
+        int[] totals = new int[capacities.length];
+        int firstValue = sample(candidateSeed(seed, 0), first, totals);
+        int secondValue = sample(candidateSeed(seed, 1), second, totals);
+        numCandidates += 2;
+        int[] winner = firstValue >= secondValue ? first : second;
+        int[] loser = winner == first ? second : first;
+        for (int i = 0; i < n; i++) {
+            if (winner[i] != loser[i]) {
+                setProbability(i, probabilities[i] + (winner[i] == 1 ? 1.0 : -1.0) / populationSize);
+            }
+        }
+        keepIfBest(winner, Math.max(firstValue, secondValue));
+    }
+
+    /** PBIL: samples a population, and moves the model towards its best candidate */
+    private void updateIncremental(long seed) {
+        int[] values = sampleValues(seed);
+        int best = 0;
+        for (int k = 1; k < values.length; k++) {
+            if (values[k] > values[best]) {
+                best = k;
+            }
+        }
+        int[] candidate = new int[probabilities.length];
+        sample(candidateSeed(seed, best), candidate, new int[capacities.length]);
+        for (int i = 0; i < candidate.length; i++) {
+            setProbability(i, (1 - learningRate) * probabilities[i] + learningRate * candidate[i]);
+        }
+        keepIfBest(candidate, values[best]);
+    }
+
+    /**
+     * UMDA: samples a population, and sets the model to the frequency of each item
+     * in its better half
+     */
+    private void updateUnivariate(long seed) {
+        int[] values = sampleValues(seed);
+        // Select the better half, breaking ties by the order the candidates were sampled
+        Integer[] order = new Integer[values.length];
+        for (int k = 0; k < order.length; k++) {
+            order[k] = k;
+        }
+        Arrays.sort(order, (a, b) -> values[a] != values[b] ? Integer.compare(values[b], values[a]) : a - b);
+        int numSelected = Math.max(1, values.length / 2);
+        int[] selected = new int[numSelected];
+        for (int k = 0; k < numSelected; k++) {
+            selected[k] = order[k];
+        }
+
+        // Count how often each item is in the selected candidates, sampling them again
+        int n = probabilities.length;
+        int numChunks = (numSelected + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        int[][] counts = new int[numChunks][];
+        runChunks(numChunks, c -> {
+            int[] chunkCounts = new int[n];
+            int[] candidate = new int[n];
+            int[] totals = new int[capacities.length];
+            for (int k = c * CHUNK_SIZE; k < Math.min(numSelected, (c + 1) * CHUNK_SIZE); k++) {
+                sample(candidateSeed(seed, selected[k]), candidate, totals);
+                for (int i = 0; i < n; i++) {
+                    chunkCounts[i] += candidate[i];
+                }
+            }
+            counts[c] = chunkCounts;
+        });
+        for (int i = 0; i < n; i++) {
+            int count = 0;
+            for (int[] chunkCounts : counts) {
+                count += chunkCounts[i];
+            }
+            setProbability(i, (double) count / numSelected);
+        }
+
+        int[] best = new int[n];
+        sample(candidateSeed(seed, selected[0]), best, new int[capacities.length]);
+        keepIfBest(best, values[selected[0]]);
+    }
+
+    /**
+     * Samples population_size candidates from the seed, in parallel chunks if
+     * there are several threads, and returns only their values
+     */
+    private int[] sampleValues(long seed) {
+        int[] values = new int[populationSize];
+        int n = probabilities.length;
+        int numChunks = (populationSize + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        runChunks(numChunks, c -> {
+            int[] candidate = new int[n];
+            int[] totals = new int[capacities.length];
+            for (int k = c * CHUNK_SIZE; k < Math.min(populationSize, (c + 1) * CHUNK_SIZE); k++) {
+                values[k] = sample(candidateSeed(seed, k), candidate, totals);
+            }
+        });
+        numCandidates += populationSize;
+        return values;
+    }
+
+    /** Runs the chunks on the pool if there is one, otherwise one after another */
+    private void runChunks(int numChunks, IntConsumer chunk) {
+        if (pool == null) {
+            for (int c = 0; c < numChunks; c++) {
+                chunk.accept(c);
+            }
+            return;
+        }
+        try {
+            pool.submit(() -> IntStream.range(0, numChunks).parallel().forEach(chunk)).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Returns the seed of the k-th candidate sampled from an iteration's seed */
+    private static long candidateSeed(long seed, int k) {
+        // The MurmurHash3 finaliser, so that neighbouring candidates get unrelated seeds
+        long z = seed + k * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * Samples a candidate from the model into the buffer, repairs it if it is
+     * overweight, and returns its value
+     *
+     * @param seed   The candidate's seed
+     * @param gene   The buffer for the candidate
+     * @param totals A buffer for the weight in each dimension
+     */
+    private int sample(long seed, int[] gene, int[] totals) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int n = gene.length;
+        // Each random long decides two items, by comparing 32 bits with each threshold
+        for (int i = 0; i < n; i += 2) {
+            long bits = random.nextLong();
+            gene[i] = (bits & 0xFFFFFFFFL) < thresholds[i] ? 1 : 0;
+            if (i + 1 < n) {
+                gene[i + 1] = (bits >>> 32) < thresholds[i + 1] ? 1 : 0;
+            }
+        }
+
+        System.arraycopy(fixedWeights, 0, totals, 0, totals.length);
+        int value = items.getFixedValue();
+        for (int i = 0; i < n; i++) {
+            if (gene[i] == 1) {
+                items.addItem(totals, i);
+                value += items.getValue(i);
+            }
+        }
+
+        // Repair: drop the least dense items until the knapsack fits, then add the
+        // densest items that still fit
+        int[] order = items.getDensityOrder();
+        for (int p = n - 1; p >= 0 && !withinCapacity(totals); p--) {
+            int item = order[p];
+            if (gene[item] == 1) {
+                gene[item] = 0;
+                for (int d = 0; d < totals.length; d++) {
+                    totals[d] -= items.getWeight(d, item);
+                }
+                value -= items.getValue(item);
+            }
+        }
+        for (int item : order) {
+            if (gene[item] == 0 && items.fits(totals, item, capacities)) {
+                gene[item] = 1;
+                items.addItem(totals, item);
+                value += items.getValue(item);
+            }
+        }
+        return value;
+    }
+
+    /** Returns true if the totals are within every capacity */
+    private boolean withinCapacity(int[] totals) {
+        for (int d = 0; d < totals.length; d++) {
+            if (totals[d] > capacities[d]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Keeps a copy of the candidate if it is the best found so far */
+    private void keepIfBest(int[] candidate, int value) {
+        if (value > bestValue) {
+            bestValue = value;
+            System.arraycopy(candidate, 0, bestKnapsack, 0, candidate.length);
+        }
+    }
+
+    /** Gets the weight of the knapsack */
+    private int getWeight(int[] knapsack) {
+        int sum = items.getFixedWeight();
+        for (int i = 0; i < knapsack.length; i++) {
+            sum += knapsack[i] * items.getWeight(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Formats the knapsack as a string e.g. "[0101110...1110]" for display purposes
+     */
+    public String displayKnapsack(int[] knapsack) {
+        String s = "[";
+        int limit = Math.min(26, knapsack.length);
+        for (int i = 0; i < limit; i++) {
+            s += knapsack[i];
+        }
+        s += "...]";
+        return s;
+    }
+
+    /** Used for testing purposes */
+    public static void main(String[] args) {
+        EstimationOfDistribution eda = new EstimationOfDistribution("eda_default_01", "PBIL", 50, 0.1);
+        eda.run();
+    }
+}
@@ -1,22 +1,36 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
 /**
  * Class used for running a genetic algorithm solution to the knapsack problem,
  * given the specified parameters such as selection method, crossover method
  * etc.
  */
-public class GeneticAlgorithm {
+public class GeneticAlgorithm extends ResumableSolver {
     private final static int POPULATION_SIZE = 1024;
     private final static double ELITISM_RATIO = 0.1;
 
-    private String configuration;
     private String selectionMethod;
     private String crossoverMethod;
     private double crossoverRatio;
     private String mutationMethod;
     private double mutationRatio;
+    private double memeticRatio; // The fraction of offspring improved by local search, 0 for a plain GA
+
+    // The state of the current run
+    private Population population;
+    private Chromosome bestChromosome;
+    private int generation; // The generations run so far, including the initial one
+    private int[] bweights;
+    private int[] bvalues;
+    private String[] knapsacks;
 
     public GeneticAlgorithm(String configuration, String selectionMethod, String crossoverMethod, double crossoverRatio,
             String mutationMethod, double mutationRatio) {
-        this.configuration = configuration;
+        super(configuration);
         this.selectionMethod = selectionMethod;
         this.crossoverMethod = crossoverMethod;
         this.crossoverRatio = crossoverRatio;
@@ -25,59 +39,168 @@ public class GeneticAlgorithm {
     }
 
     /**
-     * Returns the highest value of the knapsack achieved by the GA with the given
-     * parameters
+     * Sets the fraction of each generation's offspring that are improved by local
+     * search (the memetic mode), or 0 to turn it off
      */
-    public int run() {
+    public void setMemeticRatio(double memeticRatio) {
+        this.memeticRatio = memeticRatio;
+    }
 
-        // Create initial population
-        Population population = new Population(POPULATION_SIZE, selectionMethod, crossoverMethod, crossoverRatio,
-                mutationMethod, mutationRatio, ELITISM_RATIO);
-        Chromosome bestChromosome = population.getPopulation()[0];
+    /** Creates the initial population */
+    protected void initialize() {
+        population = new Population(POPULATION_SIZE, selectionMethod, crossoverMethod, crossoverRatio,
+                mutationMethod, mutationRatio, ELITISM_RATIO, memeticRatio);
+        // Start part of the population from the best knapsacks of previous runs, if any
+        population.seed(getWarmStart((int) (POPULATION_SIZE * EliteArchive.MAX_SEED_RATIO)));
+        bestChromosome = getBestFeasible(null);
         // double currentBestFitness = bestChromosome.getFitness();
-        int generation = 1;
+        startGenerations();
+    }
+
+    /**
+     * Maps the population and the best knapsack onto the changed instance, and
+     * evolves on from them
+     */
+    protected void remap(UnaryOperator<int[]> mapping) {
+        population.remap(mapping);
+        Chromosome best = new Chromosome(mapping.apply(bestChromosome.getGene()));
+        bestChromosome = getBestFeasible(best.isFeasible() ? best : null);
+        if (best.isFeasible() && best.getTotalValue() > bestChromosome.getTotalValue()) {
+            bestChromosome = best;
+        }
+        startGenerations();
+    }
+
+    /**
+     * Returns the best feasible chromosome of the population, or the previous
+     * best if none of the chromosomes is feasible, or the empty knapsack if there
+     * is no previous best either
+     */
+    private Chromosome getBestFeasible(Chromosome previous) {
+        Chromosome best = population.getBestFeasible();
+        if (best != null) {
+            return best;
+        }
+        return previous != null ? previous
+                : new Chromosome(new int[ProblemConfiguration.instance.getKnapsackItems().size()]);
+    }
+
+    /** Starts the statistics of a run from the current population */
+    private void startGenerations() {
+        generation = 1;
 
         // To be used for statistics for report
-        int numGenerations = ProblemConfiguration.instance.maximumNumberOfIterations;
-        String params = String.format("GA | #%d | %s | %s (%.1f) | %s (%.3f)", numGenerations, selectionMethod,
-                crossoverMethod, crossoverRatio, mutationMethod, mutationRatio);
-        int[] bweights = new int[numGenerations];
-        int[] bvalues = new int[numGenerations];
-        String[] knapsacks = new String[numGenerations];
-        long startTime = System.currentTimeMillis();
+        bweights = new int[maximumIterations];
+        bvalues = new int[maximumIterations];
+        knapsacks = new String[maximumIterations];
+        startRun();
 
         bweights[0] = bestChromosome.getTotalWeight();
         bvalues[0] = bestChromosome.getTotalValue();
+        recordValue(bvalues[0]);
         knapsacks[0] = bestChromosome.toString();
+    }
 
-        // Iterate through generations
-        while ((++generation) <= ProblemConfiguration.instance.maximumNumberOfIterations) {
-            population.evolve();
-            bestChromosome = population.getPopulation()[0];
+    /**
+     * Evolves the next generation, unless the generations are used up or a
+     * termination criterion is met
+     */
+    protected boolean iterate() {
+        if (generation >= maximumIterations || shouldStop()) {
+            return false;
+        }
+        generation++;
+        population.evolve();
+        // Keep the best feasible knapsack found, since with a penalty the fittest
+        // chromosomes may be overweight
+        Chromosome best = population.getBestFeasible();
+        if (best != null && (!bestChromosome.isFeasible()
+                || best.getTotalValue() >= bestChromosome.getTotalValue())) {
+            bestChromosome = best;
+        }
+        // In a portfolio, share the best knapsack and take up a better one found
+        // by another algorithm
+        if (bestChromosome.isFeasible()) {
+            SharedIncumbent.Solution shared = exchangeIncumbent(bestChromosome.getGene(),
+                    bestChromosome.getTotalValue());
+            if (shared != null) {
+                bestChromosome = population.inject(shared.getGene());
+            }
+        }
 
-            bweights[generation - 1] = bestChromosome.getTotalWeight();
-            bvalues[generation - 1] = bestChromosome.getTotalValue();
-            knapsacks[generation - 1] = bestChromosome.toString();
+        bweights[generation - 1] = bestChromosome.getTotalWeight();
+        bvalues[generation - 1] = bestChromosome.getTotalValue();
+        recordValue(bvalues[generation - 1]);
+        knapsacks[generation - 1] = bestChromosome.toString();
 
-            // if (bestChromosome.getFitness() > currentBestFitness) {
-            // currentBestFitness = bestChromosome.getFitness();
-            // }
-        }
-        generation--; // We stopped before evolving the next generation
+        // if (bestChromosome.getFitness() > currentBestFitness) {
+        // currentBestFitness = bestChromosome.getFitness();
+        // }
+        return true;
+    }
+
+    /** Writes the population, the best knapsack and the statistics so far */
+    protected void writeState(DataOutputStream out) throws IOException {
+        out.writeInt(generation);
+        Checkpoint.writeGene(out, bestChromosome.getGene());
+        out.writeInt(bestChromosome.getFitness());
+        population.writeState(out);
+        writeTrace(out, bweights, bvalues, knapsacks, generation);
+    }
 
-        long endTime = System.currentTimeMillis();
-        long runtime = endTime - startTime;
+    /** Restores the population, the best knapsack and the statistics so far */
+    protected void readState(DataInputStream in) throws IOException {
+        generation = in.readInt();
+        int[] bestGene = Checkpoint.readGene(in);
+        bestChromosome = new Chromosome(bestGene, in.readInt());
+        population = Population.restore(in, selectionMethod, crossoverMethod, crossoverRatio, mutationMethod,
+                mutationRatio, ELITISM_RATIO, memeticRatio);
+        bweights = new int[maximumIterations];
+        bvalues = new int[maximumIterations];
+        knapsacks = new String[maximumIterations];
+        readTrace(in, bweights, bvalues, knapsacks);
+    }
+
+    /** Reports on the generations that were run, and returns the best value */
+    protected int end() {
+        endRun();
+        long runtime = getRuntime();
+        int numGenerations = maximumIterations;
+        if (generation < numGenerations) {
+            // Only report on the generations that were run
+            numGenerations = generation;
+            bweights = Arrays.copyOf(bweights, numGenerations);
+            bvalues = Arrays.copyOf(bvalues, numGenerations);
+            knapsacks = Arrays.copyOf(knapsacks, numGenerations);
+        }
+        String params = String.format("GA | #%d | %s | %s (%.1f) | %s (%.3f)", numGenerations, selectionMethod,
+                crossoverMethod, crossoverRatio, mutationMethod, mutationRatio);
+        if (memeticRatio > 0) {
+            params += String.format(" | LS (%.2f)", memeticRatio);
+        }
+        if (getStopReason() != null) {
+            params += " | stopped: " + getStopReason();
+        }
 
         // Final best solution
         int maxValue = bestChromosome.getTotalValue();
+        if (bestChromosome.isFeasible()) {
+            archiveBest(bestChromosome.getGene());
+        }
 
-        System.out.println(configuration + ": " + maxValue);
+        if (reporting) {
+            System.out.println(configuration + ": " + maxValue);
 
-        // Create report
-        String report = ReportGenerator.generateReport(configuration, params, bweights, bvalues, knapsacks, runtime,
-                numGenerations);
-        ReportGenerator.writeToFile(report, configuration);
+            // Create report
+            String statistics = constraintHandler.getStatistics();
+            if (population.getOperatorStatistics() != null) {
+                statistics += "\n" + population.getOperatorStatistics();
+            }
+            String report = ReportGenerator.generateReport(configuration, params, bweights, bvalues, knapsacks,
+                    runtime, numGenerations, statistics);
+            ReportGenerator.writeToFile(report, configuration);
+        }
 
         return maxValue;
     }
-}
\ No newline at end of file
+}
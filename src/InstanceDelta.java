@@ -0,0 +1,198 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * A change to the instance being solved - items added, removed or repriced, and
+ * new capacities - so that a run can be re-optimized from its current state
+ * rather than from scratch (see ResumableSolver.reoptimize()). Items are
+ * identified by their ids, i.e. the index column of the csv file, e.g.
+ *
+ * new InstanceDelta().removeItem(12).addItem(101, 40, 25).setValue(7, 60).setCapacities(800)
+ *
+ * Applying the change replaces the instance in ProblemConfiguration with a new
+ * one, preprocessed as the old one was, and returns a mapping of knapsacks over
+ * the old items being searched onto the new ones: the items that are still in
+ * the instance keep their place in the knapsack, new items are left out, and a
+ * knapsack that no longer fits is repaired greedily (see LocalSearch).
+ */
+public class InstanceDelta {
+    // The weights (one per constraint) followed by the value of each new item
+    private final Map<Integer, int[]> addedItems = new LinkedHashMap<Integer, int[]>();
+    private final Set<Integer> removedItems = new HashSet<Integer>();
+    private final Map<Integer, int[]> newWeights = new HashMap<Integer, int[]>();
+    private final Map<Integer, Integer> newValues = new HashMap<Integer, Integer>();
+    private int[] newCapacities; // Or null to keep the capacities
+
+    /** Adds an item with the given value and weights (one per constraint) */
+    public InstanceDelta addItem(int id, int value, int... weights) {
+        int[] item = Arrays.copyOf(weights, weights.length + 1);
+        item[weights.length] = value;
+        addedItems.put(id, item);
+        return this;
+    }
+
+    public InstanceDelta removeItem(int id) {
+        removedItems.add(id);
+        return this;
+    }
+
+    /** Changes the weights (one per constraint) of an item */
+    public InstanceDelta setWeights(int id, int... weights) {
+        newWeights.put(id, weights.clone());
+        return this;
+    }
+
+    public InstanceDelta setValue(int id, int value) {
+        newValues.put(id, value);
+        return this;
+    }
+
+    /** Changes the capacities (one per constraint) */
+    public InstanceDelta setCapacities(int... capacities) {
+        newCapacities = capacities.clone();
+        return this;
+    }
+
+    /**
+     * Returns the instance with the change applied, in which the items that are
+     * kept come first in their old order, followed by the new items
+     *
+     * @param newIndex Set to the index in the new instance of each item of the old
+     *                 one, or -1 if it was removed
+     */
+    KnapsackInstance applyTo(KnapsackInstance items, int[] newIndex) {
+        int numConstraints = items.getNumConstraints();
+        Map<Integer, Integer> indexOfId = new HashMap<Integer, Integer>();
+        for (int i = 0; i < items.size(); i++) {
+            indexOfId.put(items.getId(i), i);
+        }
+        checkIds(indexOfId, removedItems, "remove");
+        checkIds(indexOfId, newWeights.keySet(), "reweigh");
+        checkIds(indexOfId, newValues.keySet(), "reprice");
+        for (Map.Entry<Integer, int[]> item : addedItems.entrySet()) {
+            if (indexOfId.containsKey(item.getKey())) {
+                throw new IllegalArgumentException("Cannot add item " + item.getKey() + ", which is already there");
+            }
+            checkDimensions(item.getValue().length - 1, numConstraints);
+        }
+        for (int[] weights : newWeights.values()) {
+            checkDimensions(weights.length, numConstraints);
+        }
+
+        int n = 0;
+        for (int i = 0; i < items.size(); i++) {
+            newIndex[i] = removedItems.contains(items.getId(i)) ? -1 : n++;
+        }
+        int size = n + addedItems.size();
+        int[] weights = new int[numConstraints * size];
+        int[] values = new int[size];
+        int[] ids = new int[size];
+        for (int i = 0; i < items.size(); i++) {
+            if (newIndex[i] < 0) {
+                continue;
+            }
+            int id = items.getId(i);
+            int[] itemWeights = newWeights.get(id);
+            for (int d = 0; d < numConstraints; d++) {
+                weights[d * size + newIndex[i]] = itemWeights != null ? itemWeights[d] : items.getWeight(d, i);
+            }
+            values[newIndex[i]] = newValues.getOrDefault(id, items.getValue(i));
+            ids[newIndex[i]] = id;
+        }
+        for (Map.Entry<Integer, int[]> item : addedItems.entrySet()) {
+            for (int d = 0; d < numConstraints; d++) {
+                weights[d * size + n] = item.getValue()[d];
+            }
+            values[n] = item.getValue()[numConstraints];
+            ids[n] = item.getKey();
+            n++;
+        }
+        return new KnapsackInstance(numConstraints, weights, values, ids);
+    }
+
+    /**
+     * Applies the change to the instance being solved, and returns the mapping of
+     * knapsacks over the items being searched before the change onto those being
+     * searched after it, which repairs the knapsacks that no longer fit.
+     *
+     * Note that the instance is shared by every algorithm in the JVM, so it should
+     * only be changed while no other run is using it.
+     */
+    UnaryOperator<int[]> apply() {
+        ProblemConfiguration configuration = ProblemConfiguration.instance;
+        KnapsackInstance oldItems = configuration.getKnapsackItems();
+        KnapsackInstance oldFullItems = configuration.fullKnapsackItems;
+        int[] newIndex = new int[oldFullItems.size()];
+        KnapsackInstance newFullItems = applyTo(oldFullItems, newIndex);
+        if (newCapacities != null) {
+            checkDimensions(newCapacities.length, newFullItems.getNumConstraints());
+            configuration.maximumCapacity = newCapacities[0];
+            configuration.additionalCapacities = Arrays.copyOfRange(newCapacities, 1, newCapacities.length);
+        }
+        configuration.setInstance(newFullItems, configuration.isPreprocessed());
+        return createMapping(oldItems, newFullItems, newIndex);
+    }
+
+    /**
+     * Changes the capacities of the current thread alone (see
+     * ProblemConfiguration.setThreadCapacities()), and returns the mapping of
+     * knapsacks over the items searched for the old capacities onto those searched
+     * for the new ones, which differ when the instance is preprocessed
+     */
+    static UnaryOperator<int[]> applyThreadCapacities(int[] capacities) {
+        ProblemConfiguration configuration = ProblemConfiguration.instance;
+        KnapsackInstance oldItems = configuration.getKnapsackItems();
+        configuration.setThreadCapacities(capacities);
+        int[] newIndex = new int[configuration.getFullKnapsackItems().size()];
+        for (int i = 0; i < newIndex.length; i++) {
+            newIndex[i] = i;
+        }
+        return createMapping(oldItems, configuration.getFullKnapsackItems(), newIndex);
+    }
+
+    /**
+     * Returns the mapping of knapsacks over oldItems onto knapsacks over the items
+     * now being searched, for the current capacities
+     *
+     * @param newIndex The index in newFullItems of each item of the full instance
+     *                 of oldItems, or -1 if it was removed
+     */
+    private static UnaryOperator<int[]> createMapping(KnapsackInstance oldItems, KnapsackInstance newFullItems,
+            int[] newIndex) {
+        KnapsackInstance newItems = ProblemConfiguration.instance.getKnapsackItems();
+        int[] capacities = ProblemConfiguration.instance.getCapacities();
+        return gene -> {
+            int[] oldFullGene = oldItems.expand(gene);
+            int[] newFullGene = new int[newFullItems.size()];
+            for (int i = 0; i < oldFullGene.length; i++) {
+                if (newIndex[i] >= 0) {
+                    newFullGene[newIndex[i]] = oldFullGene[i];
+                }
+            }
+            int[] newGene = newItems.compress(newFullGene);
+            // Only the knapsacks that no longer fit are repaired
+            return newItems.isFeasible(newGene, capacities) ? newGene
+                    : LocalSearch.repair(newItems, capacities, newGene);
+        };
+    }
+
+    private static void checkIds(Map<Integer, Integer> indexOfId, Iterable<Integer> ids, String change) {
+        for (int id : ids) {
+            if (!indexOfId.containsKey(id)) {
+                throw new IllegalArgumentException("Cannot " + change + " item " + id + ", which is not there");
+            }
+        }
+    }
+
+    private static void checkDimensions(int length, int numConstraints) {
+        if (length != numConstraints) {
+            throw new IllegalArgumentException(
+                    "The instance has " + numConstraints + " constraints, not " + length);
+        }
+    }
+}
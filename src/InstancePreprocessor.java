@@ -0,0 +1,204 @@
+import java.util.Arrays;
+
+/**
+ * Reduces a knapsack instance before it is searched by the GA, SA or PSO.
+ *
+ * Items are considered in order of value/weight ratio. Items heavier than the
+ * maximum capacity are dropped, and every other item is tested against the
+ * Dantzig (LP relaxation) upper bound: if forcing an item to the opposite of
+ * its value in the greedy solution cannot beat the greedy solution, the item is
+ * fixed in or out of the knapsack. The items that remain undecided form the
+ * "core" of the instance, which is all that the algorithms need to search.
+ *
+ * The reduction relies on a single weight per item, so multi-dimensional
+ * instances are searched in full.
+ */
+public class InstancePreprocessor {
+    // The core is never made smaller than this, so that the algorithms still
+    // have something to search on easy instances
+    private final static int MIN_CORE_SIZE = 30;
+
+    /** Extracts the core of an instance, fixing only items that are proven */
+    public static KnapsackInstance extractCore(KnapsackInstance instance, int capacity) {
+        return extractCore(instance, capacity, 0);
+    }
+
+    /**
+     * Extracts the core of an instance
+     *
+     * @param instance    The full knapsack instance
+     * @param capacity    The maximum capacity of the knapsack
+     * @param maxCoreSize If positive, only this many undecided items closest to
+     *                    the break item are kept in the core, and the rest are
+     *                    fixed to their greedy value (a heuristic reduction)
+     * @return A core instance whose expand() method maps back onto instance
+     */
+    public static KnapsackInstance extractCore(KnapsackInstance instance, int capacity, int maxCoreSize) {
+        if (instance.getNumConstraints() > 1) {
+            return instance;
+        }
+        int n = instance.size();
+        int[] fixed = new int[n]; // -1 if undecided, otherwise the fixed value
+        Arrays.fill(fixed, -1);
+
+        // Items that can never fit are always left out of the knapsack
+        int[] sorted = new int[n];
+        int m = 0;
+        for (int item : instance.getDensityOrder()) {
+            if (instance.getWeight(item) > capacity) {
+                fixed[item] = 0;
+            } else {
+                sorted[m++] = item;
+            }
+        }
+
+        // Prefix sums of the weights and values in density order
+        long[] prefixWeight = new long[m + 1];
+        long[] prefixValue = new long[m + 1];
+        for (int p = 0; p < m; p++) {
+            prefixWeight[p + 1] = prefixWeight[p] + instance.getWeight(sorted[p]);
+            prefixValue[p + 1] = prefixValue[p] + instance.getValue(sorted[p]);
+        }
+
+        // The greedy solution: the items before the break item, then any later item
+        // that still fits
+        int breakPosition = largestPrefixWithin(prefixWeight, m, capacity, -1, 0);
+        int[] greedy = new int[m];
+        long greedyWeight = prefixWeight[breakPosition];
+        long lowerBound = prefixValue[breakPosition];
+        for (int p = 0; p < m; p++) {
+            if (p < breakPosition) {
+                greedy[p] = 1;
+            } else if (greedyWeight + instance.getWeight(sorted[p]) <= capacity) {
+                greedy[p] = 1;
+                greedyWeight += instance.getWeight(sorted[p]);
+                lowerBound += instance.getValue(sorted[p]);
+            }
+        }
+
+        // Fix every item whose opposite choice cannot improve on the greedy solution
+        for (int p = 0; p < m; p++) {
+            int item = sorted[p];
+            long upperBound;
+            if (greedy[p] == 1) {
+                upperBound = upperBound(instance, sorted, prefixWeight, prefixValue, m, capacity, p);
+            } else {
+                upperBound = instance.getValue(item) + upperBound(instance, sorted, prefixWeight, prefixValue, m,
+                        capacity - instance.getWeight(item), p);
+            }
+            if (upperBound <= lowerBound) {
+                fixed[item] = greedy[p];
+            }
+        }
+
+        // Undecided items, ordered by distance from the break item
+        Integer[] byDistance = new Integer[m];
+        for (int p = 0; p < m; p++) {
+            byDistance[p] = p;
+        }
+        Arrays.sort(byDistance, (a, b) -> Integer.compare(Math.abs(a - breakPosition), Math.abs(b - breakPosition)));
+
+        boolean[] inCore = new boolean[n];
+        int coreSize = 0;
+        for (int p : byDistance) {
+            if (fixed[sorted[p]] == -1) {
+                if (maxCoreSize > 0 && coreSize >= maxCoreSize) {
+                    // Heuristically fix the undecided items far away from the break item
+                    fixed[sorted[p]] = greedy[p];
+                } else {
+                    inCore[sorted[p]] = true;
+                    coreSize++;
+                }
+            }
+        }
+        // Release the fixed items closest to the break item if the core is too small
+        int minCoreSize = Math.min(n, MIN_CORE_SIZE);
+        for (int p : byDistance) {
+            if (coreSize >= minCoreSize) {
+                break;
+            }
+            if (!inCore[sorted[p]]) {
+                inCore[sorted[p]] = true;
+                coreSize++;
+            }
+        }
+        for (int item = 0; item < n && coreSize < minCoreSize; item++) {
+            if (!inCore[item]) {
+                inCore[item] = true;
+                coreSize++;
+            }
+        }
+
+        // Keep the core items in their original order
+        int[] parentIndex = new int[coreSize];
+        int[] fixedGene = new int[n];
+        int index = 0;
+        for (int item = 0; item < n; item++) {
+            if (inCore[item]) {
+                parentIndex[index++] = item;
+            } else if (fixed[item] == 1) {
+                fixedGene[item] = 1;
+            }
+        }
+        return new KnapsackInstance(instance, parentIndex, fixedGene);
+    }
+
+    /**
+     * Returns the Dantzig upper bound for the items in density order, excluding
+     * the item at position excluded (or -1 to exclude none), given the capacity
+     */
+    private static long upperBound(KnapsackInstance instance, int[] sorted, long[] prefixWeight, long[] prefixValue,
+            int m, long capacity, int excluded) {
+        if (capacity < 0) {
+            return Long.MIN_VALUE / 2;
+        }
+        long excludedWeight = excluded >= 0 ? instance.getWeight(sorted[excluded]) : 0;
+        long excludedValue = excluded >= 0 ? instance.getValue(sorted[excluded]) : 0;
+        int k = largestPrefixWithin(prefixWeight, m, capacity, excluded, excludedWeight);
+        long weight = prefixWeight[k] - (excluded >= 0 && k > excluded ? excludedWeight : 0);
+        long value = prefixValue[k] - (excluded >= 0 && k > excluded ? excludedValue : 0);
+        if (k < m) {
+            // Add the fraction of the break item that fits
+            int breakItem = sorted[k];
+            value += (capacity - weight) * instance.getValue(breakItem) / instance.getWeight(breakItem);
+        }
+        return value;
+    }
+
+    /**
+     * Binary searches for the largest k such that the first k items in density
+     * order, excluding the item at position excluded, weigh at most capacity
+     */
+    private static int largestPrefixWithin(long[] prefixWeight, int m, long capacity, int excluded,
+            long excludedWeight) {
+        int low = 0;
+        int high = m;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            long weight = prefixWeight[mid] - (excluded >= 0 && mid > excluded ? excludedWeight : 0);
+            if (weight <= capacity) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /** Prints the result of preprocessing the default instance */
+    public static void main(String[] args) {
+        KnapsackInstance instance = new KnapsackInstance();
+        int capacity = ProblemConfiguration.instance.getMaximumCapacity();
+        KnapsackInstance core = extractCore(instance, capacity);
+        int fixedIn = 0;
+        int[] fixedGene = core.expand(new int[core.size()]);
+        for (int x : fixedGene) {
+            fixedIn += x;
+        }
+        System.out.println("Items: " + instance.size());
+        System.out.println("Core size: " + core.size());
+        System.out.println("Fixed in: " + fixedIn + " (weight " + core.getFixedWeight() + ", value "
+                + core.getFixedValue() + ")");
+        System.out.println("Fixed out: " + (instance.size() - core.size() - fixedIn));
+    }
+}
@@ -1,47 +1,353 @@
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Scanner;
 
 /**
  * Stores all the possible items that can be chosen for the knapsack (each with
  * an associated weight and value) in a single object in memory.
- * 
+ *
  * These items are read in from 'knapsack_instance.csv' and stored via parallel
- * arrays - one array for the weights and one for the values for each item
+ * arrays - one array for the weights and one for the values for each item.
+ *
+ * A multi-dimensional instance has several weights per item (e.g. weight,
+ * volume and budget), one per constraint. Its csv file has one weight column per
+ * constraint between the index and value columns, and the weights are stored
+ * column-major, i.e. all the items' weights for constraint 0, then all the
+ * items' weights for constraint 1, and so on. Constraint 0 is the usual weight,
+ * so the single-constraint methods work unchanged on the first dimension.
+ *
+ * An instance can also be a reduced "core" of a larger parent instance (see
+ * InstancePreprocessor), in which case the items that were fixed into the
+ * knapsack during preprocessing are accounted for by the fixed weight and
+ * fixed value, and expand() maps a solution back onto the parent instance.
  */
 public class KnapsackInstance {
-    private final static String DATA_PATH = "/Users/shaneweisz/Documents/UCT/Honours/Evolutionary Computing/Assignment/data/knapsack_instance.csv";
-    private final static int[] weights = new int[150];
-    private final static int[] values = new int[150];
+    private final static String DATA_PATH = "data/knapsack_instance.csv";
+
+    private final int numConstraints;
+    private final int[] weights; // Column-major, weights[d * size() + i]
+    private final int[] values;
+    private final int[] ids; // The index column of each item in the csv file
+
+    // Items sorted by value/weight ratio, highest density first
+    private final int[] densityOrder;
+
+    // Only set for a core instance extracted from a parent instance
+    private KnapsackInstance parent;
+    private int[] parentIndex; // parentIndex[i] is the index of item i in the parent
+    private int[] fixedGene; // The parent gene with only the items fixed into the knapsack
+    private int[] fixedWeights; // The weight of the fixed items in each dimension
+    private int fixedValue;
 
     public KnapsackInstance() {
+        this(DATA_PATH);
+    }
+
+    /** Reads the items in from the given csv file */
+    public KnapsackInstance(String dataPath) {
+        ArrayList<int[]> items = new ArrayList<int[]>();
+        int columns = 3;
         // Read the data into the parallel arrays from the csv file
         try {
-            Scanner scFile = new Scanner(new File(DATA_PATH));
-            scFile.nextLine(); // skip the header line
-            for (int i = 0; i < 150; i++) // loop through the 150 lines in the csv file
+            Scanner scFile = new Scanner(new File(dataPath));
+            // The header line has one weight column per constraint
+            columns = scFile.nextLine().split(";").length;
+            while (scFile.hasNextLine()) // loop through the lines in the csv file
             {
                 String line = scFile.nextLine();
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
                 Scanner scLine = new Scanner(line);
                 scLine.useDelimiter(";");
-                scLine.nextInt(); // skip the index column
-                weights[i] = scLine.nextInt();
-                values[i] = scLine.nextInt();
+                int[] item = new int[columns]; // index, weights..., value
+                for (int c = 0; c < columns; c++) {
+                    item[c] = scLine.nextInt();
+                }
+                items.add(item);
                 scLine.close();
             }
             scFile.close();
         } catch (FileNotFoundException fe) {
             System.out.println(fe);
         }
+
+        int n = items.size();
+        numConstraints = columns - 2;
+        weights = new int[numConstraints * n];
+        values = new int[n];
+        ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            int[] item = items.get(i);
+            ids[i] = item[0];
+            for (int d = 0; d < numConstraints; d++) {
+                weights[d * n + i] = item[1 + d];
+            }
+            values[i] = item[columns - 1];
+        }
+        fixedWeights = new int[numConstraints];
+        densityOrder = computeDensityOrder();
+    }
+
+    /** Creates an instance directly from parallel arrays of weights and values */
+    public KnapsackInstance(int[] weights, int[] values) {
+        this(1, weights, values);
+    }
+
+    /**
+     * Creates a multi-dimensional instance from a column-major weight matrix with
+     * numConstraints * values.length entries, and an array of values
+     */
+    public KnapsackInstance(int numConstraints, int[] weights, int[] values) {
+        this(numConstraints, weights, values, null);
+    }
+
+    /**
+     * Creates a multi-dimensional instance as above, with the given item ids, or
+     * ids 1, 2, ... if ids is null
+     */
+    public KnapsackInstance(int numConstraints, int[] weights, int[] values, int[] ids) {
+        this.numConstraints = numConstraints;
+        this.weights = weights;
+        this.values = values;
+        this.ids = new int[values.length];
+        for (int i = 0; i < this.ids.length; i++) {
+            this.ids[i] = ids == null ? i + 1 : ids[i];
+        }
+        fixedWeights = new int[numConstraints];
+        densityOrder = computeDensityOrder();
+    }
+
+    /**
+     * Creates a core instance from the given items of a parent instance. The items
+     * in fixedGene are always in the knapsack and are not part of the core.
+     */
+    KnapsackInstance(KnapsackInstance parent, int[] parentIndex, int[] fixedGene) {
+        this.parent = parent;
+        this.parentIndex = parentIndex;
+        this.fixedGene = fixedGene;
+        int n = parentIndex.length;
+        numConstraints = parent.getNumConstraints();
+        weights = new int[numConstraints * n];
+        values = new int[n];
+        ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            for (int d = 0; d < numConstraints; d++) {
+                weights[d * n + i] = parent.getWeight(d, parentIndex[i]);
+            }
+            values[i] = parent.getValue(parentIndex[i]);
+            ids[i] = parent.getId(parentIndex[i]);
+        }
+        fixedWeights = new int[numConstraints];
+        for (int i = 0; i < fixedGene.length; i++) {
+            for (int d = 0; d < numConstraints; d++) {
+                fixedWeights[d] += fixedGene[i] * parent.getWeight(d, i);
+            }
+            fixedValue += fixedGene[i] * parent.getValue(i);
+        }
+        densityOrder = computeDensityOrder();
+    }
+
+    /**
+     * Returns the item indices sorted by value/weight ratio in descending order.
+     * With several constraints, the weight of an item is the sum of its weights
+     * in each dimension relative to that dimension's total weight.
+     */
+    private int[] computeDensityOrder() {
+        int n = values.length;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        if (numConstraints == 1) {
+            // Compare v_a/w_a with v_b/w_b by cross-multiplying, to avoid rounding
+            Arrays.sort(order, (a, b) -> {
+                int cmp = Long.compare((long) values[b] * weights[a], (long) values[a] * weights[b]);
+                return cmp != 0 ? cmp : Integer.compare(a, b);
+            });
+        } else {
+            double[] surrogateWeights = new double[n];
+            for (int d = 0; d < numConstraints; d++) {
+                long total = 1;
+                for (int i = 0; i < n; i++) {
+                    total += weights[d * n + i];
+                }
+                for (int i = 0; i < n; i++) {
+                    surrogateWeights[i] += (double) weights[d * n + i] / total;
+                }
+            }
+            Arrays.sort(order, (a, b) -> {
+                int cmp = Double.compare(values[b] * surrogateWeights[a], values[a] * surrogateWeights[b]);
+                return cmp != 0 ? cmp : Integer.compare(a, b);
+            });
+        }
+        int[] result = new int[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = order[i];
+        }
+        return result;
     }
 
-    /** Returns the weight of the knapsack item at index i */
+    /** Returns the weight of the knapsack item at index i (in dimension 0) */
     public int getWeight(int i) {
         return weights[i];
     }
 
+    /** Returns the weight of the knapsack item at index i in dimension d */
+    public int getWeight(int d, int i) {
+        return weights[d * values.length + i];
+    }
+
+    /** Returns the number of constraints (weight dimensions) of the instance */
+    public int getNumConstraints() {
+        return numConstraints;
+    }
+
     /** Returns the value of the knapsack item at index i */
     public int getValue(int i) {
         return values[i];
     }
-}
\ No newline at end of file
+
+    /** Returns the csv index column of the knapsack item at index i */
+    public int getId(int i) {
+        return ids[i];
+    }
+
+    /** Returns the number of items in the instance */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Returns the item indices sorted by value/weight ratio, highest density
+     * first. The returned array is shared, so callers must not modify it.
+     */
+    public int[] getDensityOrder() {
+        return densityOrder;
+    }
+
+    /**
+     * Returns the total weight of the items fixed into the knapsack by
+     * preprocessing (0 unless this is a core instance)
+     */
+    public int getFixedWeight() {
+        return fixedWeights[0];
+    }
+
+    /**
+     * Returns the total weight in each dimension of the items fixed into the
+     * knapsack by preprocessing, as a new array that can be used as running totals
+     */
+    public int[] getFixedWeights() {
+        return fixedWeights.clone();
+    }
+
+    /**
+     * Returns true if the item can be added to a knapsack with the given running
+     * totals per dimension without exceeding any of the capacities
+     */
+    public boolean fits(int[] totals, int item, int[] capacities) {
+        int n = values.length;
+        for (int d = 0; d < numConstraints; d++) {
+            if (totals[d] + weights[d * n + item] > capacities[d]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Adds the weights of the item to the running totals per dimension */
+    public void addItem(int[] totals, int item) {
+        int n = values.length;
+        for (int d = 0; d < numConstraints; d++) {
+            totals[d] += weights[d * n + item];
+        }
+    }
+
+    /**
+     * Returns true if the knapsack encoded by the gene is within the capacity of
+     * every dimension. Each dimension is a contiguous column, so it is summed in
+     * one pass and the check stops at the first dimension that is over capacity.
+     */
+    public boolean isFeasible(int[] gene, int[] capacities) {
+        int n = values.length;
+        for (int d = 0; d < numConstraints; d++) {
+            int sum = fixedWeights[d];
+            int offset = d * n;
+            for (int i = 0; i < n; i++) {
+                sum += gene[i] * weights[offset + i];
+            }
+            if (sum > capacities[d]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the total value of the items fixed into the knapsack by
+     * preprocessing (0 unless this is a core instance)
+     */
+    public int getFixedValue() {
+        return fixedValue;
+    }
+
+    /**
+     * Returns a 64-bit FNV-1a hash of the items' weights and values, which
+     * identifies the instance across runs, e.g. to find its elite archive
+     */
+    public long getContentHash() {
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ numConstraints) * 0x100000001b3L;
+        hash = (hash ^ values.length) * 0x100000001b3L;
+        for (int w : weights) {
+            hash = (hash ^ w) * 0x100000001b3L;
+        }
+        for (int v : values) {
+            hash = (hash ^ v) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /** Returns true if this is a core extracted from a larger instance */
+    public boolean isCore() {
+        return parent != null;
+    }
+
+    /** Returns the instance this core was extracted from, or itself */
+    public KnapsackInstance getParent() {
+        return parent == null ? this : parent;
+    }
+
+    /**
+     * Maps a gene over the items of this instance back onto the parent instance,
+     * adding in the items that were fixed into the knapsack by preprocessing
+     */
+    public int[] expand(int[] gene) {
+        if (parent == null) {
+            return gene.clone();
+        }
+        int[] parentGene = fixedGene.clone();
+        for (int i = 0; i < gene.length; i++) {
+            parentGene[parentIndex[i]] = gene[i];
+        }
+        return parentGene;
+    }
+
+    /**
+     * Maps a gene over the items of the parent instance onto the items of this
+     * core, dropping the items that were fixed by preprocessing
+     */
+    public int[] compress(int[] parentGene) {
+        if (parent == null) {
+            return parentGene.clone();
+        }
+        int[] gene = new int[parentIndex.length];
+        for (int i = 0; i < gene.length; i++) {
+            gene[i] = parentGene[parentIndex[i]];
+        }
+        return gene;
+    }
+}
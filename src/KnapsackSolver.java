@@ -0,0 +1,281 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Base class for the algorithms that solve the knapsack problem (GA, SA, PSO,
+ * TS, ACO and EDA), holding the settings that are common to all of them - the name of the
+ * configuration being run, the iteration budget, and whether to report on the
+ * run.
+ *
+ * It also keeps the statistics of the last run: its runtime, and the times at
+ * which the best value found improved, so that the time taken to reach any
+ * target value can be looked up afterwards. The algorithms call shouldStop()
+ * once per iteration to stop early according to the termination criteria, and
+ * startConstraintHandling() at the start of a run to choose how overweight
+ * knapsacks are treated.
+ *
+ * When the algorithm is run as part of a portfolio, it also shares its best
+ * knapsack with the other algorithms through a SharedIncumbent, taking up
+ * theirs when it is better (see exchangeIncumbent()), and stops as soon as the
+ * incumbent reaches the upper bound or target value.
+ */
+public abstract class KnapsackSolver {
+    protected String configuration;
+    protected int maximumIterations = ProblemConfiguration.instance.maximumNumberOfIterations;
+    protected boolean reporting = true;
+    protected TerminationCriteria terminationCriteria = ProblemConfiguration.instance.terminationCriteria;
+    protected String constraintHandling = ProblemConfiguration.instance.constraintHandling;
+    protected ConstraintHandler constraintHandler; // The handler of the last run
+    protected SharedIncumbent incumbent; // Shared with the rest of a portfolio, or null
+
+    // Statistics of the last run
+    private long startTime;
+    private long runtime;
+    private int upperBound; // Of the instance being solved, looked up before the timer starts
+    private int bestValue;
+    private int numImprovements;
+    private int[] improvementValues = new int[16];
+    private long[] improvementTimes = new long[16]; // In ms since the start of the run
+    private int numRecorded; // The number of values recorded, one per iteration
+    private int lastImprovement; // The value of numRecorded at the last improvement
+    private String stopReason;
+
+    public KnapsackSolver(String configuration) {
+        this.configuration = configuration;
+    }
+
+    /** Returns the highest value of the knapsack achieved by the algorithm */
+    public abstract int run();
+
+    public String getConfiguration() {
+        return configuration;
+    }
+
+    public int getMaximumIterations() {
+        return maximumIterations;
+    }
+
+    /** Sets the number of iterations (or generations) the algorithm may run for */
+    public void setMaximumIterations(int maximumIterations) {
+        this.maximumIterations = maximumIterations;
+    }
+
+    /**
+     * Sets whether the run should print its result and write a report - turned
+     * off when the algorithm is run many times, e.g. by the RacingTuner
+     */
+    public void setReporting(boolean reporting) {
+        this.reporting = reporting;
+    }
+
+    /** Sets the conditions under which the algorithm stops early */
+    public void setTerminationCriteria(TerminationCriteria terminationCriteria) {
+        this.terminationCriteria = terminationCriteria;
+    }
+
+    /** Sets how overweight knapsacks are treated (see ConstraintHandler) */
+    public void setConstraintHandling(String constraintHandling) {
+        this.constraintHandling = constraintHandling;
+    }
+
+    /**
+     * Sets the incumbent shared with the other algorithms of a portfolio, or null
+     * to run alone
+     */
+    public void setIncumbent(SharedIncumbent incumbent) {
+        this.incumbent = incumbent;
+    }
+
+    /**
+     * Offers the algorithm's best feasible knapsack to the shared incumbent, and
+     * returns the incumbent if another algorithm has found a better knapsack, for
+     * the algorithm to take up into its own state. Returns null if the algorithm
+     * is not part of a portfolio.
+     *
+     * @param knapsack The best feasible knapsack found by the algorithm
+     * @param value    Its value
+     */
+    protected SharedIncumbent.Solution exchangeIncumbent(int[] knapsack, int value) {
+        if (incumbent == null) {
+            return null;
+        }
+        if (value > incumbent.getValue()) {
+            incumbent.offer(value, knapsack, configuration);
+            return null;
+        }
+        SharedIncumbent.Solution solution = incumbent.get();
+        return solution != null && solution.getValue() > value ? solution : null;
+    }
+
+    /**
+     * Installs a new constraint handler on the current thread for a run, so that
+     * its statistics only cover the run
+     */
+    protected void startConstraintHandling() {
+        constraintHandler = ConstraintHandler.create(constraintHandling);
+        ProblemConfiguration.instance.setConstraintHandler(constraintHandler);
+    }
+
+    /** Returns the constraint handler of the last run */
+    public ConstraintHandler getConstraintHandler() {
+        return constraintHandler;
+    }
+
+    /**
+     * Returns up to the given number of the best knapsacks of previous runs to
+     * start from (see EliteArchive), or none if there is no archive
+     */
+    protected int[][] getWarmStart(int count) {
+        EliteArchive archive = ProblemConfiguration.instance.eliteArchive;
+        return archive == null ? new int[0][] : archive.getElites(count);
+    }
+
+    /**
+     * Adds the best knapsack of the run to the archive of the best knapsacks for
+     * later runs, if there is one
+     */
+    protected void archiveBest(int[] knapsack) {
+        EliteArchive archive = ProblemConfiguration.instance.eliteArchive;
+        if (archive != null && archive.add(knapsack)) {
+            try {
+                archive.save();
+            } catch (IOException e) {
+                System.out.println("Could not save the elite archive: " + e);
+            }
+        }
+    }
+
+    /** Resets the statistics at the start of a run */
+    protected void startRun() {
+        resolveUpperBound();
+        startTime = System.currentTimeMillis();
+        runtime = 0;
+        bestValue = Integer.MIN_VALUE;
+        numImprovements = 0;
+        numRecorded = 0;
+        lastImprovement = 0;
+        stopReason = null;
+    }
+
+    /** Records the best value found so far, noting the time if it has improved */
+    protected void recordValue(int value) {
+        numRecorded++;
+        if (value <= bestValue) {
+            return;
+        }
+        bestValue = value;
+        lastImprovement = numRecorded;
+        if (numImprovements == improvementValues.length) {
+            improvementValues = Arrays.copyOf(improvementValues, numImprovements * 2);
+            improvementTimes = Arrays.copyOf(improvementTimes, numImprovements * 2);
+        }
+        improvementValues[numImprovements] = value;
+        improvementTimes[numImprovements] = System.currentTimeMillis() - startTime;
+        numImprovements++;
+    }
+
+    /**
+     * Returns true if the run should stop now according to the termination
+     * criteria, having recorded the reason. In a portfolio, the run also stops once
+     * the shared incumbent reaches the upper bound or target value.
+     */
+    protected boolean shouldStop() {
+        if (terminationCriteria == null) {
+            return false;
+        }
+        stopReason = terminationCriteria.getReasonToStop(bestValue, upperBound, numRecorded - lastImprovement,
+                System.currentTimeMillis() - startTime);
+        if (stopReason == null && incumbent != null && incumbent.getValue() > bestValue) {
+            // With no iterations or time used, only the upper bound or target can stop it
+            String reason = terminationCriteria.getReasonToStop(incumbent.getValue(), upperBound, 0, 0);
+            if (reason != null) {
+                stopReason = reason + " by " + incumbent.get().getSource();
+            }
+        }
+        return stopReason != null;
+    }
+
+    /**
+     * Returns why the last run stopped before using up its iterations, or null if
+     * it did not
+     */
+    public String getStopReason() {
+        return stopReason;
+    }
+
+    /**
+     * Writes the statistics of the run so far to a checkpoint (see
+     * ResumableSolver). The time is written as the time elapsed, so that a resumed
+     * run does not count the time it was stopped for.
+     */
+    protected void writeStatistics(DataOutputStream out) throws IOException {
+        out.writeLong(System.currentTimeMillis() - startTime);
+        out.writeInt(bestValue);
+        out.writeInt(numRecorded);
+        out.writeInt(lastImprovement);
+        out.writeInt(numImprovements);
+        for (int i = 0; i < numImprovements; i++) {
+            out.writeInt(improvementValues[i]);
+            out.writeLong(improvementTimes[i]);
+        }
+    }
+
+    /** Restores the statistics of a run from a checkpoint, in place of startRun() */
+    protected void readStatistics(DataInputStream in) throws IOException {
+        resolveUpperBound();
+        startTime = System.currentTimeMillis() - in.readLong();
+        runtime = 0;
+        stopReason = null;
+        bestValue = in.readInt();
+        numRecorded = in.readInt();
+        lastImprovement = in.readInt();
+        numImprovements = in.readInt();
+        improvementValues = new int[Math.max(16, numImprovements)];
+        improvementTimes = new long[improvementValues.length];
+        for (int i = 0; i < numImprovements; i++) {
+            improvementValues[i] = in.readInt();
+            improvementTimes[i] = in.readLong();
+        }
+    }
+
+    /**
+     * Looks up the upper bound the run stops at, which the first time for an
+     * instance may mean solving it exactly, so that it is done outside the time of
+     * the run rather than in its first iteration
+     */
+    private void resolveUpperBound() {
+        upperBound = terminationCriteria != null && terminationCriteria.isStoppingAtUpperBound()
+                ? TerminationCriteria.getUpperBound()
+                : Integer.MAX_VALUE;
+    }
+
+    /** Records the runtime at the end of a run */
+    protected void endRun() {
+        runtime = System.currentTimeMillis() - startTime;
+    }
+
+    /** Returns the runtime of the last run in ms */
+    public long getRuntime() {
+        return runtime;
+    }
+
+    /** Returns the best value found in the last run */
+    public int getBestValue() {
+        return bestValue;
+    }
+
+    /**
+     * Returns the time in ms the last run took to first reach the target value, or
+     * -1 if it never did
+     */
+    public long getTimeToValue(int target) {
+        for (int i = 0; i < numImprovements; i++) {
+            if (improvementValues[i] >= target) {
+                return improvementTimes[i];
+            }
+        }
+        return -1;
+    }
+}
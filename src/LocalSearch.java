@@ -0,0 +1,155 @@
+/**
+ * A fast local search for knapsacks, used by the memetic mode of the genetic
+ * algorithm to improve offspring. Its repair steps are also used on their own
+ * for constraint handling (see ConstraintHandler).
+ *
+ * An overweight knapsack is first repaired by dropping its least dense items,
+ * and then filled with the densest items that still fit. It is then improved
+ * by 1-flip moves (adding an item that fits) and 1-1 swaps (replacing an item in
+ * the knapsack with a more valuable one that fits instead) until neither
+ * improves it. The weight in each dimension and the value are kept as running
+ * totals, so each move is evaluated in constant time per dimension.
+ *
+ * The search uses no random numbers and only reads the instance, so many
+ * knapsacks can be improved in parallel.
+ */
+public class LocalSearch {
+    // The most rounds of swaps to try on one knapsack
+    private final static int MAX_PASSES = 20;
+
+    /** Returns an improved, feasible copy of the gene */
+    public static int[] improve(int[] gene) {
+        KnapsackInstance items = ProblemConfiguration.instance.getKnapsackItems();
+        return improve(items, ProblemConfiguration.instance.getCapacities(), gene);
+    }
+
+    /**
+     * Returns an improved, feasible copy of a gene over the items of the instance
+     *
+     * @param items      The knapsack instance (possibly a core)
+     * @param capacities The capacity of each constraint
+     * @param gene       The knapsack to improve, which may be overweight
+     */
+    public static int[] improve(KnapsackInstance items, int[] capacities, int[] gene) {
+        int n = items.size();
+        int m = items.getNumConstraints();
+        int[] result = gene.clone();
+        int[] totals = getTotals(items, result);
+        int[] order = items.getDensityOrder();
+
+        // Repair, then fill with the densest items that still fit (the 1-flip moves)
+        dropLeastDense(items, capacities, result, totals, order);
+        fill(items, capacities, result, totals, order);
+
+        // Swap: replace an item with a more valuable one that fits in its place
+        for (int pass = 0; pass < MAX_PASSES; pass++) {
+            boolean improved = false;
+            for (int i = 0; i < n; i++) {
+                if (result[i] == 0) {
+                    continue;
+                }
+                int bestSwap = -1;
+                int bestGain = 0;
+                for (int j = 0; j < n; j++) {
+                    int gain = items.getValue(j) - items.getValue(i);
+                    if (result[j] == 1 || gain <= bestGain) {
+                        continue;
+                    }
+                    boolean fits = true;
+                    for (int d = 0; d < m && fits; d++) {
+                        fits = totals[d] - items.getWeight(d, i) + items.getWeight(d, j) <= capacities[d];
+                    }
+                    if (fits) {
+                        bestSwap = j;
+                        bestGain = gain;
+                    }
+                }
+                if (bestSwap >= 0) {
+                    result[i] = 0;
+                    removeItem(items, totals, i);
+                    result[bestSwap] = 1;
+                    items.addItem(totals, bestSwap);
+                    improved = true;
+                }
+            }
+            if (!improved) {
+                break;
+            }
+            // A swap may have freed enough capacity for another item
+            fill(items, capacities, result, totals, order);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a feasible copy of the gene: the least dense items are dropped until
+     * every constraint is met, and then the densest items that still fit are added
+     */
+    public static int[] repair(KnapsackInstance items, int[] capacities, int[] gene) {
+        int[] result = gene.clone();
+        int[] totals = getTotals(items, result);
+        dropLeastDense(items, capacities, result, totals, items.getDensityOrder());
+        fill(items, capacities, result, totals, items.getDensityOrder());
+        return result;
+    }
+
+    /**
+     * Returns a feasible copy of the gene with only the least dense items dropped
+     * until every constraint is met
+     */
+    public static int[] dropUntilFeasible(KnapsackInstance items, int[] capacities, int[] gene) {
+        int[] result = gene.clone();
+        dropLeastDense(items, capacities, result, getTotals(items, result), items.getDensityOrder());
+        return result;
+    }
+
+    /** Returns the weight in each dimension of the knapsack, including fixed items */
+    private static int[] getTotals(KnapsackInstance items, int[] gene) {
+        int[] totals = items.getFixedWeights();
+        for (int i = 0; i < gene.length; i++) {
+            if (gene[i] == 1) {
+                items.addItem(totals, i);
+            }
+        }
+        return totals;
+    }
+
+    /** Drops the least dense items in the knapsack until every constraint is met */
+    private static void dropLeastDense(KnapsackInstance items, int[] capacities, int[] gene, int[] totals,
+            int[] order) {
+        for (int p = order.length - 1; p >= 0 && !withinCapacity(totals, capacities); p--) {
+            int item = order[p];
+            if (gene[item] == 1) {
+                gene[item] = 0;
+                removeItem(items, totals, item);
+            }
+        }
+    }
+
+    /** Adds every item not in the knapsack that fits, in density order */
+    private static void fill(KnapsackInstance items, int[] capacities, int[] gene, int[] totals, int[] order) {
+        for (int item : order) {
+            if (gene[item] == 0 && items.getValue(item) > 0 && items.fits(totals, item, capacities)) {
+                gene[item] = 1;
+                items.addItem(totals, item);
+            }
+        }
+    }
+
+    /** Subtracts the weights of the item from the running totals per dimension */
+    private static void removeItem(KnapsackInstance items, int[] totals, int item) {
+        for (int d = 0; d < totals.length; d++) {
+            totals[d] -= items.getWeight(d, item);
+        }
+    }
+
+    /** Returns true if the running totals are within every capacity */
+    private static boolean withinCapacity(int[] totals, int[] capacities) {
+        for (int d = 0; d < totals.length; d++) {
+            if (totals[d] > capacities[d]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
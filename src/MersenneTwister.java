@@ -714,6 +714,7 @@ public class MersenneTwister extends Random implements Cloneable {
         len = mag01.length;
         for (int x = 0; x < len; x++)
             mag01[x] = stream.readInt();
+        mti = stream.readInt();
         nextNextGaussian = stream.readDouble();
         haveNextNextGaussian = stream.readBoolean();
     }
@@ -0,0 +1,262 @@
+import java.util.ArrayList;
+
+/**
+ * A mutation for the genetic algorithm, which returns a mutated copy of an array
+ * of genes - a 0/1 gene or, for every mutation other than bit flip, an item
+ * order (see PermutationChromosome). The built-in mutations are registered in
+ * OperatorRegistry under their method names.
+ */
+public interface MutationOperator {
+    /** Returns a mutated copy of the genes, which are left unchanged */
+    int[] mutate(int[] gene);
+
+    /**
+     * Bit Flip Mutation ("BFM"): chooses a random bit and 'flips' it - i.e. changes
+     * it from 0 to 1 or from 1 to 0
+     */
+    public static final class BitFlip implements MutationOperator {
+        @Override
+        public int[] mutate(int[] gene) {
+            // Copy the current genes to the new chromosome
+            int[] newGene = new int[gene.length];
+            System.arraycopy(gene, 0, newGene, 0, gene.length);
+
+            // Choose a random item in the knapsack and 'flip' the bit
+            int randomItem = ProblemConfiguration.instance.getRandomGenerator().nextInt(gene.length);
+            newGene[randomItem] = newGene[randomItem] == 1 ? 0 : 1;
+
+            return newGene;
+        }
+    }
+
+    /**
+     * Exchange/Swap/Interchanging Mutation ("EXM"): chooses two random items and
+     * swaps them
+     */
+    public static final class Exchange implements MutationOperator {
+        @Override
+        public int[] mutate(int[] gene) {
+            // Copy the current genes to the new chromosome
+            int[] newGene = new int[gene.length];
+            System.arraycopy(gene, 0, newGene, 0, gene.length);
+
+            // Choose two distinct random indices in the knapsack
+            int index1 = ProblemConfiguration.instance.getRandomGenerator().nextInt(gene.length);
+            int index2;
+            do {
+                index2 = ProblemConfiguration.instance.getRandomGenerator().nextInt(gene.length);
+            } while (index2 == index1); // Ensure the two chosen indices are not the same
+
+            // Swap the bits of the two random indices
+            int temp = newGene[index1];
+            newGene[index1] = newGene[index2];
+            newGene[index2] = temp;
+
+            return newGene;
+        }
+    }
+
+    /**
+     * Inversion Mutation ("IVM"): chooses two distinct random indices, and
+     * reverses the substring between them (inclusive of the endpoints)
+     */
+    public static final class Inversion implements MutationOperator {
+        @Override
+        public int[] mutate(int[] gene) {
+            // Copy the current genes to the new chromosome
+            int[] newGene = new int[gene.length];
+            System.arraycopy(gene, 0, newGene, 0, gene.length);
+
+            // Choose two random indices in the knapsack
+            int index1 = ProblemConfiguration.instance.getRandomGenerator().nextInt(gene.length);
+            int index2;
+            do {
+                index2 = ProblemConfiguration.instance.getRandomGenerator().nextInt(gene.length);
+            } while (index2 == index1); // Ensure the two chosen indices are not the same
+
+            // Make sure index1 < index2
+            if (index2 < index1) {
+                int temp = index1;
+                index1 = index2;
+                index2 = temp;
+            }
+
+            // Reverse the substring between index1 and index2, inclusive
+            for (int i = 0; i <= index2 - index1; i++) {
+                newGene[index1 + i] = gene[index2 - i];
+            }
+
+            return newGene;
+        }
+    }
+
+    /**
+     * Insertion Mutation ("ISM"): chooses two random items, and inserts the
+     * second directly after the first, moving the rest of the items back to
+     * accomodate
+     */
+    public static final class Insertion implements MutationOperator {
+        @Override
+        public int[] mutate(int[] gene) {
+            // Copy the current genes to the new chromosome
+            int[] newGene = new int[gene.length];
+            System.arraycopy(gene, 0, newGene, 0, gene.length);
+
+            // Choose two random indices in the knapsack
+            int index1 = ProblemConfiguration.instance.getRandomGenerator().nextInt(gene.length);
+            int index2;
+            do {
+                index2 = ProblemConfiguration.instance.getRandomGenerator().nextInt(gene.length);
+            } while (index2 == index1); // Ensure the two chosen indices are not the same
+
+            // We will insert the item at index2 directly after the item at index1
+
+            // If index1 is less than index2, since we are moving the item at index2 to the
+            // left, we will need to shift the other items right to accomodate
+            if (index1 < index2) {
+                // Store the item directly after the first
+                int temp = newGene[index1 + 1];
+                // Insert the second item directly after the first
+                newGene[index1 + 1] = newGene[index2];
+
+                // Move the rest of the items back by one
+                int curr = temp, next;
+                for (int i = 1; i < index2 - index1; i++) {
+                    // Store the next item which we are about to replace
+                    next = newGene[index1 + 1 + i];
+                    // Replace the next item with the current item i.e. moving the current item back
+                    // by one
+                    newGene[index1 + 1 + i] = curr;
+                    // Set the current item to be the stored next value that is to be moved back
+                    curr = next;
+                }
+            }
+            // If index2 is less than index1, since we are moving the item at index2 to the
+            // right, we will need to shift the other items left to accomodate
+            else if (index2 < index1) {
+                // Store the item we are going to insert after index1
+                int itemToInsert = newGene[index2];
+                // Shift the other items back, including the item at index1
+                for (int i = index2; i < index1; i++) {
+                    newGene[i] = newGene[i + 1];
+                }
+                // Insert the item at index2 where the item at index1 was
+                newGene[index1] = itemToInsert;
+                // Note, the item at index2 now immediately follows the item at index1
+            }
+
+            // System.out.println("TEST: " + newGene[index2] + " inserted after " +
+            // newGene[index1]);
+
+            return newGene;
+        }
+    }
+
+    /**
+     * Displacement Mutation ("DPM"): selects two random items, takes the items
+     * between them as a group, and moves the whole group to another random point,
+     * displaced from the original
+     */
+    public static final class Displacement implements MutationOperator {
+        @Override
+        public int[] mutate(int[] gene) {
+            // Create an array list with the elements from this gene array
+            ArrayList<Integer> newGeneList = new ArrayList<Integer>();
+            for (int x : gene) {
+                newGeneList.add(x);
+            }
+
+            // Choose two random indices in the knapsack
+            // index1 will be the leftmost index of the group,
+            // index 2 will be the rightmost index
+            int index1 = ProblemConfiguration.instance.getRandomGenerator().nextInt(gene.length);
+            int index2;
+            do {
+                index2 = ProblemConfiguration.instance.getRandomGenerator().nextInt(gene.length);
+            } while (index2 == index1); // Ensure the two chosen indices are not the same
+
+            // Ensure index1 < index2
+            if (index2 < index1) {
+                int temp = index1;
+                index1 = index2;
+                index2 = temp;
+            }
+
+            // The size of the group to be displaced
+            int groupSize = index2 - index1 + 1;
+
+            // Extract the group that we will displace
+            int[] group = new int[groupSize];
+            for (int i = 0; i <= index2 - index1; i++) {
+                group[i] = gene[index1 + i];
+            }
+
+            // Remove the group that is to be displaced from the original list
+            for (int i = 0; i < groupSize; i++) {
+                // Each element in the group becomes index1 after removing the previous element
+                newGeneList.remove(index1);
+            }
+
+            // Randomly choose the index in the resulting list where we must insert the
+            // displaced group
+            int insertIndex = ProblemConfiguration.instance.getRandomGenerator().nextInt(gene.length - groupSize + 1);
+
+            // Insert the displaced group at the chosen index
+            for (int i = groupSize - 1; i >= 0; i--) {
+                // Insert the group elements one-by-one at index `insertIndex`
+                // The order is backwards to ensure correct order in final list
+                newGeneList.add(insertIndex, group[i]);
+            }
+
+            // Cast from the Array List to an Integer array to an int array
+            Integer[] newIntegerGene = newGeneList.toArray(new Integer[gene.length]);
+            int[] newGene = new int[gene.length];
+            for (int i = 0; i < gene.length; i++) {
+                newGene[i] = newIntegerGene[i].intValue();
+            }
+
+            // Build the resulting Chromosome
+            return newGene;
+        }
+    }
+
+    /**
+     * Scramble Mutation ("SM"): chooses two distinct random indices, and randomly
+     * shuffles the substring between them (inclusive of the endpoints)
+     */
+    public static final class Scramble implements MutationOperator {
+        @Override
+        public int[] mutate(int[] gene) {
+            // Copy the current genes to the new chromosome
+            int[] newGene = new int[gene.length];
+            System.arraycopy(gene, 0, newGene, 0, gene.length);
+
+            // Choose two random indices in the knapsack
+            int index1 = ProblemConfiguration.instance.getRandomGenerator().nextInt(gene.length);
+            int index2;
+            do {
+                index2 = ProblemConfiguration.instance.getRandomGenerator().nextInt(gene.length);
+            } while (index2 == index1); // Ensure the two chosen indices are not the same
+
+            // Make sure index1 < index2
+            int temp;
+            if (index2 < index1) {
+                temp = index1;
+                index1 = index2;
+                index2 = temp;
+            }
+
+            // We will 'scramble' the genes between index1 and index2, inclusive
+            for (int i = index1; i <= index2; i++) {
+                // Pick a random index within the chosen portion to swap the current item with
+                int indexToSwap = ProblemConfiguration.instance.getRandomGenerator().nextInt(index1, index2);
+                // Swap the chosen two items
+                temp = newGene[i];
+                newGene[i] = newGene[indexToSwap];
+                newGene[indexToSwap] = temp;
+            }
+
+            return newGene;
+        }
+    }
+}
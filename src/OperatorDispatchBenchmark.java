@@ -0,0 +1,132 @@
+/**
+ * Compares the cost per offspring of dispatching the GA operators by their
+ * method names, with calling operators that were looked up once, as Population
+ * does. The names are dispatched both as the chains of method.equals() in
+ * Chromosome.doCrossover(String, ...) and doMutation(String) did before the
+ * OperatorRegistry (the baseline), and by looking them up in the registry for
+ * every offspring, as those methods do now. Each pair of crossover and mutation
+ * is timed both for the operators alone and for whole offspring, including
+ * their evaluation.
+ *
+ * Usage: java OperatorDispatchBenchmark [numOffspring] [numItems]
+ */
+public class OperatorDispatchBenchmark {
+    private final static int WARMUP_RUNS = 3;
+    private final static String[][] PAIRS = { { "1PX", "BFM" }, { "2PX", "EXM" }, { "2PX", "IVM" },
+            { "1PX", "SM" } };
+
+    // The operators the baseline's chains of string comparisons call
+    private final static CrossoverOperator ONE_POINT = OperatorRegistry.getCrossover("1PX");
+    private final static CrossoverOperator TWO_POINT = OperatorRegistry.getCrossover("2PX");
+    private final static MutationOperator BIT_FLIP = OperatorRegistry.getMutation("BFM");
+    private final static MutationOperator EXCHANGE = OperatorRegistry.getMutation("EXM");
+    private final static MutationOperator INVERSION = OperatorRegistry.getMutation("IVM");
+    private final static MutationOperator INSERTION = OperatorRegistry.getMutation("ISM");
+    private final static MutationOperator DISPLACEMENT = OperatorRegistry.getMutation("DPM");
+    private final static MutationOperator SCRAMBLE = OperatorRegistry.getMutation("SM");
+
+    public static void main(String[] args) {
+        int numOffspring = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int numItems = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        MersenneTwister random = new MersenneTwister(42);
+        int[] weights = new int[numItems];
+        int[] values = new int[numItems];
+        for (int i = 0; i < numItems; i++) {
+            weights[i] = 1 + random.nextInt(100);
+            values[i] = 1 + random.nextInt(100);
+        }
+        ProblemConfiguration.instance.maximumCapacity = numItems * 25;
+        ProblemConfiguration.instance.setInstance(new KnapsackInstance(weights, values), false);
+        Chromosome parent1 = Chromosome.generateRandom();
+        Chromosome parent2 = Chromosome.generateRandom();
+
+        System.out.println("n = " + numItems + ", " + numOffspring + " offspring per measurement, in ns per offspring");
+        System.out.println(String.format("%-10s %10s %10s %10s %8s %14s %14s %14s %8s", "Operators", "Switch",
+                "Registry", "Resolved", "Speedup", "Switch+eval", "Registry+eval", "Resolved+eval", "Speedup"));
+        long sink = 0;
+        for (String[] pair : PAIRS) {
+            double[] times = new double[6];
+            for (int r = 0; r <= WARMUP_RUNS; r++) {
+                CrossoverOperator crossover = OperatorRegistry.getCrossover(pair[0]);
+                MutationOperator mutation = OperatorRegistry.getMutation(pair[1]);
+
+                long startTime = System.nanoTime();
+                for (int k = 0; k < numOffspring; k++) {
+                    int[][] children = crossBySwitch(pair[0], parent1.getGene(), parent2.getGene());
+                    sink += mutateBySwitch(pair[1], children[k & 1])[0];
+                }
+                times[0] = (System.nanoTime() - startTime) / (double) numOffspring;
+
+                startTime = System.nanoTime();
+                for (int k = 0; k < numOffspring; k++) {
+                    int[][] children = OperatorRegistry.getCrossover(pair[0]).cross(parent1.getGene(),
+                            parent2.getGene());
+                    sink += OperatorRegistry.getMutation(pair[1]).mutate(children[k & 1])[0];
+                }
+                times[1] = (System.nanoTime() - startTime) / (double) numOffspring;
+
+                startTime = System.nanoTime();
+                for (int k = 0; k < numOffspring; k++) {
+                    int[][] children = crossover.cross(parent1.getGene(), parent2.getGene());
+                    sink += mutation.mutate(children[k & 1])[0];
+                }
+                times[2] = (System.nanoTime() - startTime) / (double) numOffspring;
+
+                startTime = System.nanoTime();
+                for (int k = 0; k < numOffspring; k++) {
+                    // As the old doCrossover(String, ...) and doMutation(String) did
+                    int[][] genes = crossBySwitch(pair[0], parent1.getGene(), parent2.getGene());
+                    Chromosome[] children = { new Chromosome(genes[0]), new Chromosome(genes[1]) };
+                    sink += new Chromosome(mutateBySwitch(pair[1], children[k & 1].getGene())).getFitness();
+                }
+                times[3] = (System.nanoTime() - startTime) / (double) numOffspring;
+
+                startTime = System.nanoTime();
+                for (int k = 0; k < numOffspring; k++) {
+                    sink += parent1.doCrossover(pair[0], parent2)[k & 1].doMutation(pair[1]).getFitness();
+                }
+                times[4] = (System.nanoTime() - startTime) / (double) numOffspring;
+
+                startTime = System.nanoTime();
+                for (int k = 0; k < numOffspring; k++) {
+                    sink += parent1.doCrossover(crossover, parent2)[k & 1].doMutation(mutation).getFitness();
+                }
+                times[5] = (System.nanoTime() - startTime) / (double) numOffspring;
+            }
+            // Only the last run, after the warm-up runs, is printed, with the speedup of
+            // the resolved operators over the baseline
+            System.out.println(String.format("%-10s %10.1f %10.1f %10.1f %7.2fx %14.1f %14.1f %14.1f %7.2fx",
+                    pair[0] + "+" + pair[1], times[0], times[1], times[2], times[0] / times[2], times[3], times[4],
+                    times[5], times[3] / times[5]));
+        }
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    /** Dispatches a crossover by its name, as before the OperatorRegistry */
+    private static int[][] crossBySwitch(String method, int[] gene1, int[] gene2) {
+        if (method.equals("1PX")) {
+            return ONE_POINT.cross(gene1, gene2);
+        } else if (method.equals("2PX")) {
+            return TWO_POINT.cross(gene1, gene2);
+        }
+        throw new IllegalArgumentException("Unknown crossover: " + method);
+    }
+
+    /** Dispatches a mutation by its name, as before the OperatorRegistry */
+    private static int[] mutateBySwitch(String method, int[] gene) {
+        if (method.equals("BFM")) {
+            return BIT_FLIP.mutate(gene);
+        } else if (method.equals("EXM")) {
+            return EXCHANGE.mutate(gene);
+        } else if (method.equals("IVM")) {
+            return INVERSION.mutate(gene);
+        } else if (method.equals("ISM")) {
+            return INSERTION.mutate(gene);
+        } else if (method.equals("DPM")) {
+            return DISPLACEMENT.mutate(gene);
+        } else if (method.equals("SM")) {
+            return SCRAMBLE.mutate(gene);
+        }
+        throw new IllegalArgumentException("Unknown mutation: " + method);
+    }
+}
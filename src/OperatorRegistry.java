@@ -0,0 +1,85 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * The selection, crossover and mutation operators of the genetic algorithm, by
+ * the method names used in the JSON configurations, e.g. "RWS", "2PX", "BFM".
+ *
+ * The GA looks its operators up here once, when its population is created, and
+ * then calls them directly for every offspring. A new operator is added by
+ * registering it under a new name, e.g.
+ *
+ * OperatorRegistry.registerMutation("UM", UniformMutation::new);
+ *
+ * after which "UM" can be used as the mutation of a configuration. Each lookup
+ * creates a new operator, so an operator may keep state for a population.
+ */
+public class OperatorRegistry {
+    private final static Map<String, Supplier<? extends SelectionOperator>> selections = //
+            new ConcurrentHashMap<String, Supplier<? extends SelectionOperator>>();
+    private final static Map<String, Supplier<? extends CrossoverOperator>> crossovers = //
+            new ConcurrentHashMap<String, Supplier<? extends CrossoverOperator>>();
+    private final static Map<String, Supplier<? extends MutationOperator>> mutations = //
+            new ConcurrentHashMap<String, Supplier<? extends MutationOperator>>();
+
+    static {
+        registerSelection("RWS", SelectionOperator.RouletteWheel::new);
+        registerSelection("TS", SelectionOperator.Tournament::new);
+
+        registerCrossover("1PX", CrossoverOperator.OnePoint::new);
+        registerCrossover("2PX", CrossoverOperator.TwoPoint::new);
+        registerCrossover("OX", CrossoverOperator.OrderCrossover::new);
+        registerCrossover("PMX", CrossoverOperator.PartiallyMapped::new);
+
+        registerMutation("BFM", MutationOperator.BitFlip::new);
+        registerMutation("EXM", MutationOperator.Exchange::new);
+        registerMutation("IVM", MutationOperator.Inversion::new);
+        registerMutation("ISM", MutationOperator.Insertion::new);
+        registerMutation("DPM", MutationOperator.Displacement::new);
+        registerMutation("SM", MutationOperator.Scramble::new);
+    }
+
+    public static void registerSelection(String name, Supplier<? extends SelectionOperator> factory) {
+        selections.put(name, factory);
+    }
+
+    public static void registerCrossover(String name, Supplier<? extends CrossoverOperator> factory) {
+        crossovers.put(name, factory);
+    }
+
+    public static void registerMutation(String name, Supplier<? extends MutationOperator> factory) {
+        mutations.put(name, factory);
+    }
+
+    /** Returns a new selection operator, e.g. for "RWS" or "TS" */
+    public static SelectionOperator getSelection(String name) {
+        return create(selections, "selection", name);
+    }
+
+    /** Returns a new crossover operator, e.g. for "1PX", "2PX", "OX" or "PMX" */
+    public static CrossoverOperator getCrossover(String name) {
+        return create(crossovers, "crossover", name);
+    }
+
+    /**
+     * Returns a new mutation operator, e.g. for "BFM", "EXM", "IVM", "ISM", "DPM"
+     * or "SM"
+     */
+    public static MutationOperator getMutation(String name) {
+        return create(mutations, "mutation", name);
+    }
+
+    /** Returns true if a crossover is registered under the name */
+    public static boolean isCrossover(String name) {
+        return crossovers.containsKey(name);
+    }
+
+    private static <T> T create(Map<String, Supplier<? extends T>> operators, String kind, String name) {
+        Supplier<? extends T> factory = operators.get(name);
+        if (factory == null) {
+            throw new IllegalArgumentException("Unknown " + kind + " method: " + name);
+        }
+        return factory.get();
+    }
+}
@@ -0,0 +1,140 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Chooses which of several GA operators (e.g. the mutations "BFM", "EXM", ...)
+ * to use for each generation, as a multi-armed bandit (see Population).
+ *
+ * Every application of the chosen operator is recorded with the fitness it
+ * gained over its parent(s) - 0 if the offspring is no fitter - and the time it
+ * took, including evaluating the offspring. At the start of the next generation,
+ * the gain per ns of the generation is folded into the operator's
+ * recency-weighted credit, since an operator that helps early in a run may not
+ * help later. The operator with the highest UCB score - its credit relative to
+ * the highest credit, plus a bonus for operators that have been chosen for few
+ * generations - is then chosen, trying every operator once first.
+ */
+public class OperatorSelector {
+    private final static double RECENCY = 0.3; // The weight of the last generation in the credit
+    private final static double EXPLORATION = 0.5; // The weight of the UCB bonus
+
+    private final String[] operators;
+    private final int[] numGenerations; // The generations each operator was chosen for
+    private final long[] numUses;
+    private final long[] totalGain;
+    private final long[] totalTime; // In ns
+    private final double[] credit; // Recency-weighted gain per ns
+    private int totalGenerations;
+
+    // The operator chosen for the current generation, and its results so far
+    private int current = -1;
+    private long generationGain;
+    private long generationTime;
+
+    /** @param operators The operators to choose between, e.g. "1PX", "2PX" */
+    public OperatorSelector(String... operators) {
+        this.operators = operators;
+        numGenerations = new int[operators.length];
+        numUses = new long[operators.length];
+        totalGain = new long[operators.length];
+        totalTime = new long[operators.length];
+        credit = new double[operators.length];
+    }
+
+    /**
+     * Credits the operator of the last generation with its results, and returns
+     * the operator to use for the next one
+     */
+    public String select() {
+        if (current >= 0) {
+            double rate = generationTime == 0 ? 0 : (double) generationGain / generationTime;
+            credit[current] = numGenerations[current] == 1 ? rate : (1 - RECENCY) * credit[current] + RECENCY * rate;
+        }
+        double maxCredit = 0;
+        for (double c : credit) {
+            maxCredit = Math.max(maxCredit, c);
+        }
+
+        int best = 0;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < operators.length; i++) {
+            double score;
+            if (numGenerations[i] == 0) {
+                score = Double.POSITIVE_INFINITY;
+            } else {
+                score = (maxCredit == 0 ? 0 : credit[i] / maxCredit)
+                        + EXPLORATION * Math.sqrt(Math.log(totalGenerations) / numGenerations[i]);
+            }
+            if (score > bestScore) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        current = best;
+        numGenerations[current]++;
+        totalGenerations++;
+        generationGain = 0;
+        generationTime = 0;
+        return operators[current];
+    }
+
+    /**
+     * Records one application of the current operator
+     *
+     * @param gain The fitness the offspring gained over its parent(s), or 0
+     * @param time The time in ns the operator took
+     */
+    public void record(int gain, long time) {
+        numUses[current]++;
+        totalGain[current] += Math.max(0, gain);
+        totalTime[current] += time;
+        generationGain += Math.max(0, gain);
+        generationTime += time;
+    }
+
+    /** Writes the statistics and credit of the operators to a checkpoint */
+    public void writeState(DataOutputStream out) throws IOException {
+        Checkpoint.writeInts(out, numGenerations);
+        Checkpoint.writeLongs(out, numUses);
+        Checkpoint.writeLongs(out, totalGain);
+        Checkpoint.writeLongs(out, totalTime);
+        Checkpoint.writeDoubles(out, credit);
+        out.writeInt(totalGenerations);
+        out.writeInt(current);
+        out.writeLong(generationGain);
+        out.writeLong(generationTime);
+    }
+
+    /** Restores the state written by writeState() for the same operators */
+    public void readState(DataInputStream in) throws IOException {
+        int[] generations = Checkpoint.readInts(in);
+        if (generations.length != operators.length) {
+            throw new IOException("The checkpoint is for " + generations.length + " operators, not "
+                    + operators.length);
+        }
+        System.arraycopy(generations, 0, numGenerations, 0, operators.length);
+        System.arraycopy(Checkpoint.readLongs(in), 0, numUses, 0, operators.length);
+        System.arraycopy(Checkpoint.readLongs(in), 0, totalGain, 0, operators.length);
+        System.arraycopy(Checkpoint.readLongs(in), 0, totalTime, 0, operators.length);
+        System.arraycopy(Checkpoint.readDoubles(in), 0, credit, 0, operators.length);
+        totalGenerations = in.readInt();
+        current = in.readInt();
+        generationGain = in.readLong();
+        generationTime = in.readLong();
+    }
+
+    /**
+     * Returns a line for the report with the usage and credit of each operator,
+     * e.g. "Mutation: BFM 12 gen, 3200 uses, gain 410, 0.52 gain/us | EXM ..."
+     */
+    public String getStatistics(String name) {
+        String s = name + ":";
+        for (int i = 0; i < operators.length; i++) {
+            s += String.format("%s %s %d gen, %d uses, gain %d, %.2f gain/us", i == 0 ? "" : " |", operators[i],
+                    numGenerations[i], numUses[i], totalGain[i],
+                    totalTime[i] == 0 ? 0 : totalGain[i] * 1000.0 / totalTime[i]);
+        }
+        return s;
+    }
+}
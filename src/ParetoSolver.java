@@ -0,0 +1,249 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Exact solver for the 0/1 knapsack problem using the Nemhauser-Ullmann
+ * algorithm, which keeps the Pareto frontier of the (weight, value) states of
+ * the items considered so far.
+ *
+ * A state is dominated if another state weighs no more and is worth at least as
+ * much, and only the states that are not dominated are kept, sorted by weight
+ * (and so also by value). Each item is added by merging the frontier with a
+ * copy of itself shifted by the item's weight and value, with two pointers, into
+ * a second pair of long[] buffers. Items are added in density order, and a state
+ * is dropped once its value plus the Dantzig upper bound of the items left is
+ * below the best value found so far.
+ *
+ * The work done depends on the size of the frontier rather than on the
+ * capacity, so for instances with a huge capacity but few non-dominated states
+ * it is much faster than dynamic programming over the capacities.
+ */
+public class ParetoSolver {
+    private final KnapsackInstance items;
+    private final long capacity; // The capacity left after the fixed items of a core
+
+    // The items that can fit, in density order, with prefix sums of their weights and values
+    private int[] sorted;
+    private long[] prefixWeight;
+    private long[] prefixValue;
+    private int m;
+
+    private int[] frontierSizes; // The size of the frontier after each item, in density order
+    private long lowerBound;
+
+    /**
+     * @param items    The knapsack instance (with a single constraint)
+     * @param capacity The maximum capacity of the knapsack
+     */
+    public ParetoSolver(KnapsackInstance items, int capacity) {
+        if (items.getNumConstraints() > 1) {
+            throw new IllegalArgumentException("The Pareto solver only solves single-constraint instances");
+        }
+        this.items = items;
+        this.capacity = (long) capacity - items.getFixedWeight();
+    }
+
+    /** Returns the optimal value of the instance, without keeping the frontiers */
+    public int getOptimalValue() {
+        if (capacity < 0) {
+            return 0;
+        }
+        long[][] frontier = buildFrontiers(null);
+        long[] values = frontier[1];
+        int size = frontierSizes.length > 0 ? frontierSizes[frontierSizes.length - 1] : 1;
+        return (int) values[size - 1] + items.getFixedValue();
+    }
+
+    /**
+     * Returns an optimal knapsack for the instance, as a gene over its items. The
+     * frontier after every item is kept, and the optimal state is traced back
+     * through them.
+     */
+    public int[] solve() {
+        int[] gene = new int[items.size()];
+        if (capacity < 0) {
+            return gene;
+        }
+        List<long[][]> levels = new ArrayList<long[][]>();
+        buildFrontiers(levels);
+
+        // The optimal state is the last (most valuable) state of the final frontier
+        long[][] last = levels.get(m);
+        long weight = last[0][last[0].length - 1];
+        long value = last[1][last[1].length - 1];
+        for (int p = m - 1; p >= 0; p--) {
+            // If the state was already on the previous frontier, item p was not taken
+            long[][] previous = levels.get(p);
+            int index = Arrays.binarySearch(previous[0], weight);
+            if (index < 0 || previous[1][index] != value) {
+                gene[sorted[p]] = 1;
+                weight -= items.getWeight(sorted[p]);
+                value -= items.getValue(sorted[p]);
+            }
+        }
+        return gene;
+    }
+
+    /**
+     * Returns the number of states on the frontier after each item was added by
+     * the last solve, in the order the items were added (by density)
+     */
+    public int[] getFrontierSizes() {
+        return frontierSizes;
+    }
+
+    /**
+     * Adds the items one at a time, and returns the final frontier as {weights,
+     * values}. If levels is not null, a trimmed copy of the frontier before the
+     * first item and after each item is added to it.
+     */
+    private long[][] buildFrontiers(List<long[][]> levels) {
+        initialise();
+        long[] weights = new long[16];
+        long[] values = new long[16];
+        long[] nextWeights = new long[16];
+        long[] nextValues = new long[16];
+        int size = 1; // The empty knapsack
+        if (levels != null) {
+            levels.add(new long[][] { new long[] { 0 }, new long[] { 0 } });
+        }
+
+        for (int p = 0; p < m; p++) {
+            long itemWeight = items.getWeight(sorted[p]);
+            long itemValue = items.getValue(sorted[p]);
+            if (nextWeights.length < 2 * size) {
+                nextWeights = new long[2 * size];
+                nextValues = new long[2 * size];
+            }
+
+            // Merge the frontier with itself shifted by the item, both in order of weight
+            int i = 0;
+            int j = 0;
+            int next = 0;
+            long lastValue = -1;
+            while (i < size || j < size) {
+                long weight;
+                long value;
+                if (j < size && weights[j] + itemWeight > capacity) {
+                    j = size; // The shifted states only get heavier
+                    continue;
+                }
+                if (j >= size || (i < size && (weights[i] < weights[j] + itemWeight
+                        || (weights[i] == weights[j] + itemWeight && values[i] >= values[j] + itemValue)))) {
+                    weight = weights[i];
+                    value = values[i];
+                    i++;
+                } else {
+                    weight = weights[j] + itemWeight;
+                    value = values[j] + itemValue;
+                    j++;
+                }
+                // Drop states that are dominated by a lighter state, or that cannot beat
+                // the best value so far (which also drops everything they dominate)
+                if (value <= lastValue) {
+                    continue;
+                }
+                lastValue = value;
+                if (value + upperBound(p + 1, capacity - weight) < lowerBound) {
+                    continue;
+                }
+                nextWeights[next] = weight;
+                nextValues[next] = value;
+                next++;
+            }
+            lowerBound = Math.max(lowerBound, nextValues[next - 1]);
+
+            // Swap the buffers
+            long[] temp = weights;
+            weights = nextWeights;
+            nextWeights = temp;
+            temp = values;
+            values = nextValues;
+            nextValues = temp;
+            size = next;
+            frontierSizes[p] = size;
+            if (levels != null) {
+                levels.add(new long[][] { Arrays.copyOf(weights, size), Arrays.copyOf(values, size) });
+            }
+        }
+        return new long[][] { weights, values };
+    }
+
+    /**
+     * Sorts the items that can fit by density, builds the prefix sums and takes the
+     * greedy solution as the first lower bound
+     */
+    private void initialise() {
+        sorted = new int[items.size()];
+        m = 0;
+        for (int item : items.getDensityOrder()) {
+            if (items.getWeight(item) <= capacity) {
+                sorted[m++] = item;
+            }
+        }
+        prefixWeight = new long[m + 1];
+        prefixValue = new long[m + 1];
+        long remaining = capacity;
+        lowerBound = 0;
+        for (int p = 0; p < m; p++) {
+            int weight = items.getWeight(sorted[p]);
+            prefixWeight[p + 1] = prefixWeight[p] + weight;
+            prefixValue[p + 1] = prefixValue[p] + items.getValue(sorted[p]);
+            if (weight <= remaining) {
+                remaining -= weight;
+                lowerBound += items.getValue(sorted[p]);
+            }
+        }
+        frontierSizes = new int[m];
+    }
+
+    /**
+     * Returns the Dantzig upper bound on the value of the items from position
+     * start onwards with the given capacity
+     */
+    private long upperBound(int start, long remaining) {
+        long limit = prefixWeight[start] + remaining;
+        int low = start;
+        int high = m;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (prefixWeight[mid] <= limit) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        long bound = prefixValue[low] - prefixValue[start];
+        if (low < m) {
+            bound += (limit - prefixWeight[low]) * items.getValue(sorted[low]) / items.getWeight(sorted[low]);
+        }
+        return bound;
+    }
+
+    /**
+     * Solves the default instance, printing the frontier size after each item
+     * and comparing the total number of states with the cells of the DP table
+     */
+    public static void main(String[] args) {
+        KnapsackInstance items = new KnapsackInstance();
+        int capacity = ProblemConfiguration.instance.getMaximumCapacity();
+        ParetoSolver solver = new ParetoSolver(items, capacity);
+        long startTime = System.currentTimeMillis();
+        int[] gene = solver.solve();
+        long runtime = System.currentTimeMillis() - startTime;
+
+        long states = 0;
+        int[] sizes = solver.getFrontierSizes();
+        for (int p = 0; p < sizes.length; p++) {
+            System.out.println("Item " + (p + 1) + ": " + sizes[p] + " states");
+            states += sizes[p];
+        }
+        int value = 0;
+        for (int i = 0; i < gene.length; i++) {
+            value += gene[i] * items.getValue(i);
+        }
+        System.out.println("Optimal value: " + value + " in " + runtime + " ms");
+        System.out.println("States: " + states + " vs " + items.size() * ((long) capacity + 1) + " DP cells");
+    }
+}
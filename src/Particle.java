@@ -1,3 +1,5 @@
+import java.util.function.UnaryOperator;
+
 /**
  * Class that encodes a particle that participates in a swarm in PSO
  */
@@ -18,12 +20,68 @@ public class Particle {
         individualBestValue = evaluateCurrentPosition();
     }
 
-    /** Returns the fitness of the knapsack at the current position */
+    /** Creates a new particle at the given position, e.g. a known good knapsack */
+    public Particle(Vector position) {
+        this.position = position;
+        velocity = new Vector();
+        bestPosition = position.clone();
+        individualBestValue = evaluateCurrentPosition();
+    }
+
+    /**
+     * Maps the particle's position and best position onto a changed instance (see
+     * InstanceDelta), and stops it, as its velocity was over the old items
+     */
+    public void remap(UnaryOperator<int[]> mapping) {
+        int[] best = mapping.apply(toGene(bestPosition));
+        bestPosition = toVector(best);
+        individualBestValue = ProblemConfiguration.instance.getConstraintHandler().evaluate(best);
+        position = toVector(mapping.apply(toGene(position)));
+        velocity = new Vector();
+        updateIndividualBestValue();
+    }
+
+    /** Creates a particle with a known state, e.g. restored from a checkpoint */
+    public Particle(Vector position, Vector velocity, Vector bestPosition, int individualBestValue) {
+        this.position = position;
+        this.velocity = velocity;
+        this.bestPosition = bestPosition;
+        this.individualBestValue = individualBestValue;
+    }
+
+    /**
+     * Returns the fitness of the knapsack at the current position - its value, or
+     * if it is overweight, as decided by the constraint handler (0 by default). A
+     * handler that repairs knapsacks moves the particle to the repaired position.
+     */
     public int evaluateCurrentPosition() {
-        if (!isValid(position)) {
-            return 0;
+        ConstraintHandler handler = ProblemConfiguration.instance.getConstraintHandler();
+        int[] gene = toGene(position);
+        int[] applied = handler.apply(gene);
+        if (applied != gene) {
+            for (int i = 0; i < applied.length; i++) {
+                position.setValue(i, applied[i]);
+            }
+        }
+        return handler.evaluate(applied);
+    }
+
+    /** Returns the knapsack encoded by a position vector as a gene array */
+    public static int[] toGene(Vector position) {
+        int[] gene = new int[position.size()];
+        for (int i = 0; i < gene.length; i++) {
+            gene[i] = (int) position.getValue(i);
         }
-        return getValue(position);
+        return gene;
+    }
+
+    /** Returns a position vector encoding the knapsack of a gene array */
+    public static Vector toVector(int[] gene) {
+        double[] values = new double[gene.length];
+        for (int i = 0; i < gene.length; i++) {
+            values[i] = gene[i];
+        }
+        return new Vector(values);
     }
 
     /**
@@ -78,7 +136,7 @@ public class Particle {
     public void updatePosition() {
         // Loop through each dimension of the position vector
         for (int i = 0; i < position.size(); i++) {
-            double rand = ProblemConfiguration.instance.randomGenerator.nextDouble();
+            double rand = ProblemConfiguration.instance.getRandomGenerator().nextDouble();
             // Update the position dimension's value according to the probability
             // given by the sigmoid function applied to the velocity
             if (rand < (1.0 / (1 + Math.exp(-velocity.getValue(i))))) {
@@ -91,32 +149,49 @@ public class Particle {
 
     /** Gets the weight of the knapsack encoded by a position vector */
     public static int getWeight(Vector position) {
-        int sum = 0;
+        KnapsackInstance items = ProblemConfiguration.instance.getKnapsackItems();
+        int sum = items.getFixedWeight();
         for (int i = 0; i < position.size(); i++) {
             // knapsack[i] is either 1 or 0 depending on whether the item is in the knapsack
             // or
             // not - hence, we only add its weight if knapsack[i] == 1
-            sum += (int) position.getValue(i) * ProblemConfiguration.instance.knapsackItems.getWeight(i);
+            sum += (int) position.getValue(i) * items.getWeight(i);
         }
         return sum;
     }
 
     /**
      * Returns true if the weight of the knapsack is less than or equal to the
-     * maximum capacity, else returns false
+     * maximum capacity (in every dimension), else returns false
      */
     public static boolean isValid(Vector position) {
-        return getWeight(position) <= ProblemConfiguration.instance.maximumCapacity;
+        KnapsackInstance items = ProblemConfiguration.instance.getKnapsackItems();
+        if (items.getNumConstraints() > 1) {
+            int[] capacities = ProblemConfiguration.instance.getCapacities();
+            int[] totals = items.getFixedWeights();
+            // Check one dimension at a time, stopping at the first one over capacity
+            for (int d = 0; d < totals.length; d++) {
+                for (int i = 0; i < position.size(); i++) {
+                    totals[d] += (int) position.getValue(i) * items.getWeight(d, i);
+                }
+                if (totals[d] > capacities[d]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return getWeight(position) <= ProblemConfiguration.instance.getMaximumCapacity();
     }
 
     /** Gets the value of the knapsack */
     public static int getValue(Vector position) {
-        int sum = 0;
+        KnapsackInstance items = ProblemConfiguration.instance.getKnapsackItems();
+        int sum = items.getFixedValue();
         for (int i = 0; i < position.size(); i++) {
             // knapsack[i] is either 1 or 0 depending on whether the item is in the knapsack
             // or
             // not - hence, we only add its value if knapsack[i] == 1
-            sum += (int) position.getValue(i) * ProblemConfiguration.instance.knapsackItems.getValue(i);
+            sum += (int) position.getValue(i) * items.getValue(i);
         }
         return sum;
     }
@@ -126,22 +201,53 @@ public class Particle {
      * the knapsack, and stopping just before the knapsack becomes overweight
      */
     public void setRandomPosition() {
-        int total_weight = 0;
+        KnapsackInstance items = ProblemConfiguration.instance.getKnapsackItems();
+        if (items.getNumConstraints() > 1) {
+            setRandomMultiDimensionalPosition(items);
+            return;
+        }
+        int capacity = ProblemConfiguration.instance.getMaximumCapacity();
+        int total_weight = items.getFixedWeight();
+        int num_items = 0;
         // Keep adding items to the knapsack while the current weight is less than the
-        // maximum capacity
-        while (total_weight < ProblemConfiguration.instance.maximumCapacity) {
-            int random_item = ProblemConfiguration.instance.randomGenerator.nextInt(150);
+        // maximum capacity (and there are items left to add)
+        while (total_weight < capacity && num_items < position.size()) {
+            int random_item = ProblemConfiguration.instance.getRandomGenerator().nextInt(position.size());
             if (position.getValue(random_item) == 1.0) {
                 continue; // i.e. if the item is already in the knapsack, pick a different one.
             }
-            int weight = ProblemConfiguration.instance.knapsackItems.getWeight(random_item);
-            if (total_weight + weight > ProblemConfiguration.instance.maximumCapacity) {
+            int weight = items.getWeight(random_item);
+            if (total_weight + weight > capacity) {
                 // if adding this item will make the knapsack overweight, then end the loop and
                 // use the current knapsack configuration as the random chromosome
                 break;
             }
             position.setValue(random_item, 1);
             total_weight += weight;
+            num_items++;
+        }
+    }
+
+    /**
+     * Generates a random position vector on a multi-dimensional instance, keeping
+     * a running total per dimension and stopping just before any constraint is
+     * exceeded
+     */
+    private void setRandomMultiDimensionalPosition(KnapsackInstance items) {
+        int[] capacities = ProblemConfiguration.instance.getCapacities();
+        int[] totals = items.getFixedWeights();
+        int num_items = 0;
+        while (num_items < position.size()) {
+            int random_item = ProblemConfiguration.instance.getRandomGenerator().nextInt(position.size());
+            if (position.getValue(random_item) == 1.0) {
+                continue; // i.e. if the item is already in the knapsack, pick a different one.
+            }
+            if (!items.fits(totals, random_item, capacities)) {
+                break;
+            }
+            position.setValue(random_item, 1);
+            items.addItem(totals, random_item);
+            num_items++;
         }
     }
 }
\ No newline at end of file
@@ -1,12 +1,17 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
 /**
  * Class used for running a particle swarm optimization solution to the knapsack
  * problem, given the specified parameters such as number of particles, maximum
  * velocity etc.
  */
-public class ParticleSwarmOptimization {
+public class ParticleSwarmOptimization extends ResumableSolver {
 
     // Parameters
-    private String configuration;
     private int numParticles;
     private int minVelocity;
     private int maxVelocity;
@@ -17,6 +22,19 @@ public class ParticleSwarmOptimization {
     // Best values
     private Vector bestPosition;
     private int globalBestEvaluationValue;
+    // The best feasible knapsack found, which is what is reported - with a penalty
+    // the global best position may be overweight
+    private Vector bestFeasiblePosition;
+    private int bestFeasibleValue;
+
+    // The state of the current run
+    private KnapsackInstance items; // Read once per run, as are the capacities
+    private int[] capacities;
+    private Particle[] particles;
+    private int iteration; // The iterations run so far
+    private int[] bweights;
+    private int[] bvalues;
+    private String[] knapsacks;
 
     /**
      * Parametrized constructor for a ParticleSwarmOptimization instance with
@@ -32,7 +50,7 @@ public class ParticleSwarmOptimization {
      */
     public ParticleSwarmOptimization(String configuration, int numParticles, int minVelocity, int maxVelocity,
             double c1, double c2, double inertia) {
-        this.configuration = configuration;
+        super(configuration);
         this.numParticles = numParticles;
         this.minVelocity = minVelocity;
         this.maxVelocity = maxVelocity;
@@ -41,83 +59,199 @@ public class ParticleSwarmOptimization {
         this.inertia = inertia;
     }
 
+    /** Creates the initial swarm of particles */
+    protected void initialize() {
+        readInstance();
+        // The initial swarm of particles
+        particles = createSwarm();
+        startIterations();
+    }
+
     /**
-     * Returns the highest value of the knapsack achieved using PSO with the given
-     * parameters
+     * Maps every particle's position and best position, and the best knapsack,
+     * onto the changed instance, and moves on from them. The velocities are reset,
+     * as they were over the old items.
      */
-    public int run() {
-        // To be used for statistics for report
-        long startTime = System.currentTimeMillis();
-        int maxIterations = ProblemConfiguration.instance.maximumNumberOfIterations;
-        int[] bweights = new int[maxIterations];
-        int[] bvalues = new int[maxIterations];
-        String[] knapsacks = new String[maxIterations];
+    protected void remap(UnaryOperator<int[]> mapping) {
+        readInstance();
+        bestFeasiblePosition = Particle.toVector(mapping.apply(Particle.toGene(bestFeasiblePosition)));
+        bestFeasibleValue = Particle.getValue(bestFeasiblePosition);
+        bestPosition = bestFeasiblePosition.clone();
+        globalBestEvaluationValue = bestFeasibleValue;
+        for (Particle particle : particles) {
+            particle.remap(mapping);
+            updateGlobalBest(particle);
+        }
+        startIterations();
+    }
 
-        // The initial swarm of particles
-        Particle[] particles = initialize();
+    /** Reads the instance and capacities solved by the current thread for the run */
+    private void readInstance() {
+        items = ProblemConfiguration.instance.getKnapsackItems();
+        capacities = ProblemConfiguration.instance.getCapacities();
+    }
+
+    /** Starts the statistics of a run from the current swarm */
+    private void startIterations() {
+        // To be used for statistics for report
+        startRun();
+        bweights = new int[maximumIterations];
+        bvalues = new int[maximumIterations];
+        knapsacks = new String[maximumIterations];
 
-        bweights[0] = Particle.getWeight(bestPosition);
-        bvalues[0] = globalBestEvaluationValue;
-        knapsacks[0] = bestPosition.toString();
+        bweights[0] = Particle.getWeight(bestFeasiblePosition);
+        bvalues[0] = bestFeasibleValue;
+        recordValue(bvalues[0]);
+        knapsacks[0] = bestFeasiblePosition.toString();
 
         // int previousGlobalBestEvaluationValue = globalBestEvaluationValue;
         // System.out.println("Running...");
         // System.out.println("Global best evaluation (iteration " + 0 + "):\t" +
         // globalBestEvaluationValue);
+        iteration = 0;
+    }
 
-        for (int i = 0; i < ProblemConfiguration.instance.maximumNumberOfIterations; i++) {
-            // if (globalBestEvaluationValue > previousGlobalBestEvaluationValue) {
-            // System.out.println("Global best evaluation (iteration " + (i + 1) + "):\t" +
-            // globalBestEvaluationValue);
-            // previousGlobalBestEvaluationValue = globalBestEvaluationValue;
-            // }
+    /**
+     * Moves every particle, unless the iterations are used up or a termination
+     * criterion is met
+     */
+    protected boolean iterate() {
+        if (iteration >= maximumIterations || shouldStop()) {
+            return false;
+        }
+        int i = iteration;
 
-            for (Particle particle : particles) {
-                particle.updateIndividualBestValue();
-                updateGlobalBest(particle);
-            }
-            // System.out.println("Iteration " + i + ":");
-            for (Particle particle : particles) {
-                updateVelocity(particle);
-                particle.updatePosition();
-                // System.out.println("Pos = " + particle.getPosition());
-                // System.out.println("Vel = " + particle.getVelocity());
-            }
+        // if (globalBestEvaluationValue > previousGlobalBestEvaluationValue) {
+        // System.out.println("Global best evaluation (iteration " + (i + 1) + "):\t" +
+        // globalBestEvaluationValue);
+        // previousGlobalBestEvaluationValue = globalBestEvaluationValue;
+        // }
 
-            bweights[i] = Particle.getWeight(bestPosition);
-            bvalues[i] = globalBestEvaluationValue;
-            knapsacks[i] = bestPosition.toString();
+        for (Particle particle : particles) {
+            particle.updateIndividualBestValue();
+            updateGlobalBest(particle);
+        }
+        // System.out.println("Iteration " + i + ":");
+        for (Particle particle : particles) {
+            updateVelocity(particle);
+            particle.updatePosition();
+            // System.out.println("Pos = " + particle.getPosition());
+            // System.out.println("Vel = " + particle.getVelocity());
+        }
+
+        // In a portfolio, share the best knapsack, and take up a better one found by
+        // another algorithm as the global best position the particles move towards
+        SharedIncumbent.Solution shared = exchangeIncumbent(Particle.toGene(bestFeasiblePosition),
+                bestFeasibleValue);
+        if (shared != null) {
+            bestFeasiblePosition = Particle.toVector(shared.getGene());
+            bestFeasibleValue = shared.getValue();
+            bestPosition = bestFeasiblePosition.clone();
+            globalBestEvaluationValue = shared.getValue();
+        }
+
+        bweights[i] = Particle.getWeight(bestFeasiblePosition);
+        bvalues[i] = bestFeasibleValue;
+        recordValue(bvalues[i]);
+        knapsacks[i] = bestFeasiblePosition.toString();
+        iteration++;
+        return true;
+    }
+
+    /** Writes the particles, the best positions and the statistics so far */
+    protected void writeState(DataOutputStream out) throws IOException {
+        out.writeInt(iteration);
+        out.writeBoolean(bestPosition != null);
+        if (bestPosition != null) {
+            Checkpoint.writeVector(out, bestPosition);
         }
+        out.writeInt(globalBestEvaluationValue);
+        Checkpoint.writeVector(out, bestFeasiblePosition);
+        out.writeInt(bestFeasibleValue);
+        out.writeInt(particles.length);
+        for (Particle particle : particles) {
+            Checkpoint.writeVector(out, particle.position);
+            Checkpoint.writeVector(out, particle.velocity);
+            Checkpoint.writeVector(out, particle.bestPosition);
+            out.writeInt(particle.individualBestValue);
+        }
+        writeTrace(out, bweights, bvalues, knapsacks, iteration);
+    }
 
+    /** Restores the particles, the best positions and the statistics so far */
+    protected void readState(DataInputStream in) throws IOException {
+        readInstance();
+        iteration = in.readInt();
+        bestPosition = in.readBoolean() ? Checkpoint.readVector(in) : null;
+        globalBestEvaluationValue = in.readInt();
+        bestFeasiblePosition = Checkpoint.readVector(in);
+        bestFeasibleValue = in.readInt();
+        particles = new Particle[in.readInt()];
+        for (int i = 0; i < particles.length; i++) {
+            Vector position = Checkpoint.readVector(in);
+            Vector velocity = Checkpoint.readVector(in);
+            Vector bestPosition = Checkpoint.readVector(in);
+            particles[i] = new Particle(position, velocity, bestPosition, in.readInt());
+        }
+        bweights = new int[maximumIterations];
+        bvalues = new int[maximumIterations];
+        knapsacks = new String[maximumIterations];
+        readTrace(in, bweights, bvalues, knapsacks);
+    }
+
+    /** Reports on the iterations that were run, and returns the best value */
+    protected int end() {
         // System.out.println();
         // System.out.println("Result:");
         // System.out.println("Global best evaulation " + globalBestEvaluationValue);
         // System.out.println("Best knapsack " + bestPosition);
 
         // To be used for statistics for report
-        long endTime = System.currentTimeMillis();
-        long runtime = endTime - startTime;
+        endRun();
+        long runtime = getRuntime();
+        int maxIterations = maximumIterations;
+        int numIterations = Math.max(1, iteration);
+        if (numIterations < maxIterations) {
+            // Only report on the iterations that were run
+            bweights = Arrays.copyOf(bweights, numIterations);
+            bvalues = Arrays.copyOf(bvalues, numIterations);
+            knapsacks = Arrays.copyOf(knapsacks, numIterations);
+        }
         String params = String.format(
                 "PSO | #%d | %d particles | minV = %d | maxV = %d | c1 = %.1f | c2 = %.1f | inertia = %.2f",
-                maxIterations, numParticles, minVelocity, maxVelocity, c1, c2, inertia);
+                numIterations, numParticles, minVelocity, maxVelocity, c1, c2, inertia);
+        if (getStopReason() != null) {
+            params += " | stopped: " + getStopReason();
+        }
 
-        String report = ReportGenerator.generateReport(configuration, params, bweights, bvalues, knapsacks, runtime,
-                maxIterations);
-        ReportGenerator.writeToFile(report, configuration);
+        if (bestFeasibleValue > 0) {
+            archiveBest(Particle.toGene(bestFeasiblePosition));
+        }
+        if (reporting) {
+            String report = ReportGenerator.generateReport(configuration, params, bweights, bvalues, knapsacks,
+                    runtime, numIterations, constraintHandler.getStatistics());
+            ReportGenerator.writeToFile(report, configuration);
 
-        System.out.println(configuration + ": " + globalBestEvaluationValue);
+            System.out.println(configuration + ": " + bestFeasibleValue);
+        }
 
-        return globalBestEvaluationValue;
+        return bestFeasibleValue;
     }
 
     /**
      * Initialize the swarm of particles by generating particles at random positions
      */
-    private Particle[] initialize() {
+    private Particle[] createSwarm() {
         Particle[] particles = new Particle[numParticles];
+        bestPosition = null;
+        globalBestEvaluationValue = 0;
+        bestFeasiblePosition = new Vector();
+        bestFeasibleValue = 0;
 
+        // Place some of the particles on the best knapsacks of previous runs, if any
+        int[][] elites = getWarmStart((int) (numParticles * EliteArchive.MAX_SEED_RATIO));
         for (int i = 0; i < numParticles; i++) {
-            Particle particle = new Particle();
+            Particle particle = i < elites.length ? new Particle(Particle.toVector(elites[i])) : new Particle();
             particles[i] = particle;
             updateGlobalBest(particle);
         }
@@ -133,6 +267,16 @@ public class ParticleSwarmOptimization {
         if (particle.getIndividualBestValue() > globalBestEvaluationValue) {
             bestPosition = particle.getBestPosition();
             globalBestEvaluationValue = particle.getIndividualBestValue();
+
+            // Record the feasible knapsack the new global best stands for, if better
+            int[] gene = Particle.toGene(bestPosition);
+            int[] decoded = ProblemConfiguration.instance.getConstraintHandler().decode(gene);
+            Vector candidate = decoded == gene ? bestPosition.clone() : Particle.toVector(decoded);
+            int value = Particle.getValue(candidate);
+            if (value > bestFeasibleValue && items.isFeasible(decoded, capacities)) {
+                bestFeasiblePosition = candidate;
+                bestFeasibleValue = value;
+            }
         }
     }
 
@@ -153,7 +297,7 @@ public class ParticleSwarmOptimization {
         pBest.multiply(c1);
         // Multiply each dimension of the vector by a random double
         for (int i = 0; i < pBest.size(); i++) {
-            double randomValue01 = ProblemConfiguration.instance.randomGenerator.nextDouble();
+            double randomValue01 = ProblemConfiguration.instance.getRandomGenerator().nextDouble();
             pBest.setValue(i, pBest.getValue(i) * randomValue01);
         }
         newVelocity.add(pBest);
@@ -162,7 +306,7 @@ public class ParticleSwarmOptimization {
         gBest.multiply(c2);
         // Multiply each dimension of the vector by a random double
         for (int i = 0; i < gBest.size(); i++) {
-            double randomValue02 = ProblemConfiguration.instance.randomGenerator.nextDouble();
+            double randomValue02 = ProblemConfiguration.instance.getRandomGenerator().nextDouble();
             gBest.setValue(i, gBest.getValue(i) * randomValue02);
         }
         newVelocity.add(gBest);
@@ -0,0 +1,227 @@
+import java.util.Arrays;
+
+/**
+ * A chromosome for the genetic algorithm that encodes an order of the items
+ * rather than a 0/1 gene. The knapsack it stands for is found by a greedy
+ * decoder, which goes through the items in order and packs each one that still
+ * fits, so every chromosome is feasible by construction and no fitness is wasted
+ * on overweight knapsacks.
+ *
+ * The decoder keeps the weight in each dimension and the value packed after
+ * every position of the order. A child made from a parent by crossover or
+ * mutation usually shares a prefix of the parent's order, and the decisions for
+ * that prefix are the same, so decoding resumes from the parent's totals at the
+ * end of the shared prefix instead of starting again.
+ *
+ * The order crossovers OX (order crossover) and PMX (partially mapped
+ * crossover) are applied to the order (see CrossoverOperator), as are the
+ * permutation mutations ("EXM", "IVM", "ISM", "DPM", "SM").
+ */
+public class PermutationChromosome extends Chromosome {
+    private final int[] order; // The items in the order they are packed
+    private final int[] prefixTotals; // The weight per dimension packed before each position, flattened
+    private final int[] prefixValues; // The value packed before each position
+
+    /** Creates a chromosome for the order, decoding it from scratch */
+    public PermutationChromosome(int[] order) {
+        this(order, decode(order, null));
+    }
+
+    /**
+     * Decodes the order, reusing the totals of the parent (which may be null) for
+     * the prefix it shares with the order
+     */
+    private PermutationChromosome(int[] order, PermutationChromosome parent) {
+        this(order, decode(order, parent));
+    }
+
+    private PermutationChromosome(int[] order, Decoding decoding) {
+        super(decoding.gene, decoding.value);
+        this.order = order;
+        this.prefixTotals = decoding.prefixTotals;
+        this.prefixValues = decoding.prefixValues;
+    }
+
+    /**
+     * Returns true if the crossover method is an order crossover, in which case
+     * the GA uses this encoding
+     */
+    public static boolean isPermutationCrossover(String method) {
+        return OperatorRegistry.isCrossover(method) && OperatorRegistry.getCrossover(method).isPermutation();
+    }
+
+    /**
+     * Returns the mutation for the method on an order - "BFM" has no meaning for an
+     * order, so it swaps two items like "EXM"
+     */
+    public static MutationOperator getMutation(String method) {
+        return OperatorRegistry.getMutation(method.equals("BFM") ? "EXM" : method);
+    }
+
+    /** Generates a chromosome with a random order of the items */
+    protected static PermutationChromosome generateRandom() {
+        int n = ProblemConfiguration.instance.getKnapsackItems().size();
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        // Fisher-Yates shuffle
+        for (int i = n - 1; i > 0; i--) {
+            int j = ProblemConfiguration.instance.getRandomGenerator().nextInt(i + 1);
+            int temp = order[i];
+            order[i] = order[j];
+            order[j] = temp;
+        }
+        return new PermutationChromosome(order);
+    }
+
+    /**
+     * Returns a chromosome that decodes to (at least) the given feasible knapsack:
+     * the items in the knapsack come first, followed by the rest
+     */
+    public static PermutationChromosome fromGene(int[] gene) {
+        int[] order = new int[gene.length];
+        int next = 0;
+        for (int i = 0; i < gene.length; i++) {
+            if (gene[i] == 1) {
+                order[next++] = i;
+            }
+        }
+        for (int i = 0; i < gene.length; i++) {
+            if (gene[i] == 0) {
+                order[next++] = i;
+            }
+        }
+        return new PermutationChromosome(order);
+    }
+
+    public int[] getOrder() {
+        return order;
+    }
+
+    /**
+     * Performs an order crossover with a second parent
+     *
+     * @param operator An order crossover, e.g. OX (Order Crossover) or PMX
+     *                 (Partially Mapped Crossover)
+     * @param c        A second parent, which must also be a PermutationChromosome
+     * @return The two children resulting from the crossover
+     */
+    @Override
+    public Chromosome[] doCrossover(CrossoverOperator operator, Chromosome c) {
+        PermutationChromosome other = (PermutationChromosome) c;
+        int[][] orders = operator.cross(order, other.order);
+
+        // Each child is decoded from whichever parent shares the longer prefix with it
+        Chromosome[] children = new Chromosome[2];
+        children[0] = new PermutationChromosome(orders[0], closerParent(orders[0], this, other));
+        children[1] = new PermutationChromosome(orders[1], closerParent(orders[1], other, this));
+        return children;
+    }
+
+    /** Performs a mutation on the order, with "BFM" swapping two items like "EXM" */
+    @Override
+    public Chromosome doMutation(String method) {
+        return doMutation(getMutation(method));
+    }
+
+    /** Performs a mutation on the order, decoding it from this chromosome's totals */
+    @Override
+    public Chromosome doMutation(MutationOperator operator) {
+        return new PermutationChromosome(operator.mutate(order), this);
+    }
+
+    /** Returns the parent whose order shares the longer prefix with the child */
+    private static PermutationChromosome closerParent(int[] child, PermutationChromosome first,
+            PermutationChromosome second) {
+        return sharedPrefix(child, second) > sharedPrefix(child, first) ? second : first;
+    }
+
+    /** Returns the length of the prefix that the order shares with the parent's */
+    private static int sharedPrefix(int[] order, PermutationChromosome parent) {
+        if (parent == null) {
+            return 0;
+        }
+        int p = 0;
+        while (p < order.length && order[p] == parent.order[p]) {
+            p++;
+        }
+        return p;
+    }
+
+    /**
+     * Packs the items greedily in the given order, starting from the parent's
+     * decoding at the end of the prefix they share
+     */
+    private static Decoding decode(int[] order, PermutationChromosome parent) {
+        long startTime = System.nanoTime();
+        KnapsackInstance items = ProblemConfiguration.instance.getKnapsackItems();
+        int[] capacities = ProblemConfiguration.instance.getCapacities();
+        int n = order.length;
+        int m = items.getNumConstraints();
+
+        Decoding decoding = new Decoding();
+        decoding.gene = new int[n];
+        decoding.prefixTotals = new int[(n + 1) * m];
+        decoding.prefixValues = new int[n + 1];
+
+        // Copy the decisions and totals for the shared prefix from the parent
+        int start = sharedPrefix(order, parent);
+        int[] totals;
+        int value;
+        if (start > 0) {
+            for (int p = 0; p < start; p++) {
+                decoding.gene[order[p]] = parent.getGene()[order[p]];
+            }
+            System.arraycopy(parent.prefixTotals, 0, decoding.prefixTotals, 0, (start + 1) * m);
+            System.arraycopy(parent.prefixValues, 0, decoding.prefixValues, 0, start + 1);
+            totals = new int[m];
+            System.arraycopy(parent.prefixTotals, start * m, totals, 0, m);
+            value = parent.prefixValues[start];
+        } else {
+            totals = items.getFixedWeights();
+            value = items.getFixedValue();
+            System.arraycopy(totals, 0, decoding.prefixTotals, 0, m);
+            decoding.prefixValues[0] = value;
+        }
+
+        // Pack each remaining item that still fits
+        for (int p = start; p < n; p++) {
+            int item = order[p];
+            if (items.fits(totals, item, capacities)) {
+                decoding.gene[item] = 1;
+                items.addItem(totals, item);
+                value += items.getValue(item);
+            }
+            System.arraycopy(totals, 0, decoding.prefixTotals, (p + 1) * m, m);
+            decoding.prefixValues[p + 1] = value;
+        }
+        decoding.value = value;
+
+        ProblemConfiguration.instance.getConstraintHandler().recordEvaluation(true, System.nanoTime() - startTime);
+        return decoding;
+    }
+
+    /** The knapsack an order decodes to, with the totals after each position */
+    private static class Decoding {
+        int[] gene;
+        int value;
+        int[] prefixTotals;
+        int[] prefixValues;
+    }
+
+    // Tests the order crossovers and the decoder
+    public static void main(String[] args) {
+        int[] parent1 = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 };
+        int[] parent2 = { 9, 3, 7, 8, 2, 6, 5, 1, 4, 0 };
+        System.out.println("OX: " + Arrays.toString(CrossoverOperator.OrderCrossover.cross(parent1, parent2, 3, 7)));
+        System.out.println("PMX: " + Arrays.toString(CrossoverOperator.PartiallyMapped.cross(parent1, parent2, 3, 7)));
+
+        PermutationChromosome c = generateRandom();
+        System.out.println("Random order: weight " + c.getTotalWeight() + ", value " + c.getTotalValue());
+        PermutationChromosome mutated = (PermutationChromosome) c.doMutation("ISM");
+        PermutationChromosome fresh = new PermutationChromosome(mutated.getOrder());
+        System.out.println("Mutated: value " + mutated.getTotalValue() + " (decoded from scratch: "
+                + fresh.getTotalValue() + ", shared prefix " + sharedPrefix(mutated.getOrder(), c) + ")");
+    }
+}
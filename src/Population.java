@@ -1,35 +1,71 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
 
 /**
  * Class for a population of chromosomes that evolve as part of the genetic
- * algorithm.
+ * algorithm. The selection, crossover and mutation operators are looked up in
+ * the OperatorRegistry from their methods when the population is created.
+ *
+ * With an order crossover ("OX" or "PMX") the chromosomes are item orders
+ * decoded greedily (see PermutationChromosome), otherwise 0/1 genes.
+ *
+ * The crossover method "ADAPTIVE" chooses between 1PX and 2PX each generation,
+ * and the mutation method "ADAPTIVE" between BFM, EXM, IVM, ISM, DPM and SM, by
+ * the fitness each has gained per ns (see OperatorSelector).
+ *
+ * In memetic mode, a sampled fraction of the offspring of each generation are
+ * improved by a local search (see LocalSearch) before they join the population.
  */
 public class Population {
+    // The method name for an operator chosen adaptively each generation
+    public final static String ADAPTIVE = "ADAPTIVE";
+    // The most of the population kept after a change to the instance; the rest is
+    // replaced by random chromosomes, as a converged population barely moves
+    private final static double REMAP_KEPT_RATIO = 0.5;
+
     private double elitismRatio;
-    private String selectionMethod;
-    private String crossoverMethod;
     private double crossoverRatio;
-    private String mutationMethod;
     private double mutationRatio;
+    private double memeticRatio; // The fraction of offspring improved by local search
+    // Choose the operator each generation when the method is "ADAPTIVE", otherwise null
+    private OperatorSelector crossoverSelector;
+    private OperatorSelector mutationSelector;
+
+    // The operators, looked up once from their methods rather than for every
+    // offspring (or once per generation if they are chosen adaptively)
+    private final boolean permutation; // Whether the chromosomes are item orders
+    private final SelectionOperator selection;
+    private CrossoverOperator crossover;
+    private MutationOperator mutation;
+    private MutationOperator secondMutation; // For the second child of a crossover
 
     private Chromosome[] population;
     private int numberOfCrossoverOperations = 0;
     private int numberOfMutationOperations = 0;
+    private int numberOfLocalSearchOperations = 0;
 
     public Population(int size, String selectionMethod, String crossoverMethod, double crossoverRatio,
             String mutationMethod, double mutationRatio, double elitismRatio) {
-        this.selectionMethod = selectionMethod;
-        this.crossoverMethod = crossoverMethod;
-        this.crossoverRatio = crossoverRatio;
-        this.mutationMethod = mutationMethod;
-        this.mutationRatio = mutationRatio;
-        this.elitismRatio = elitismRatio;
+        this(size, selectionMethod, crossoverMethod, crossoverRatio, mutationMethod, mutationRatio, elitismRatio, 0);
+    }
+
+    public Population(int size, String selectionMethod, String crossoverMethod, double crossoverRatio,
+            String mutationMethod, double mutationRatio, double elitismRatio, double memeticRatio) {
+        this(selectionMethod, crossoverMethod, crossoverRatio, mutationMethod, mutationRatio, elitismRatio,
+                memeticRatio);
 
-        // Randomly generate the initial population
+        // Randomly generate the initial population, as item orders if the crossover
+        // is an order crossover
         population = new Chromosome[size];
         for (int i = 0; i < size; i++) {
-            population[i] = Chromosome.generateRandom();
+            population[i] = permutation ? PermutationChromosome.generateRandom() : Chromosome.generateRandom();
         }
 
         // Sort the population in descending order i.e. fittest individuals at the
@@ -37,12 +73,67 @@ public class Population {
         Arrays.sort(population, Collections.reverseOrder());
     }
 
+    /**
+     * Restores a population from the state written by writeState() for a
+     * population with the same methods, without generating one first
+     */
+    public static Population restore(DataInputStream in, String selectionMethod, String crossoverMethod,
+            double crossoverRatio, String mutationMethod, double mutationRatio, double elitismRatio,
+            double memeticRatio) throws IOException {
+        Population population = new Population(selectionMethod, crossoverMethod, crossoverRatio, mutationMethod,
+                mutationRatio, elitismRatio, memeticRatio);
+        population.readState(in);
+        return population;
+    }
+
+    /** Sets up the operators, leaving the chromosomes to the caller */
+    private Population(String selectionMethod, String crossoverMethod, double crossoverRatio,
+            String mutationMethod, double mutationRatio, double elitismRatio, double memeticRatio) {
+        this.memeticRatio = memeticRatio;
+        this.crossoverRatio = crossoverRatio;
+        this.mutationRatio = mutationRatio;
+        this.elitismRatio = elitismRatio;
+        permutation = PermutationChromosome.isPermutationCrossover(crossoverMethod);
+        selection = OperatorRegistry.getSelection(selectionMethod);
+        if (crossoverMethod.equalsIgnoreCase(ADAPTIVE)) {
+            crossoverSelector = new OperatorSelector("1PX", "2PX");
+        } else {
+            crossover = OperatorRegistry.getCrossover(crossoverMethod);
+        }
+        if (mutationMethod.equalsIgnoreCase(ADAPTIVE)) {
+            mutationSelector = new OperatorSelector("BFM", "EXM", "IVM", "ISM", "DPM", "SM");
+        } else {
+            mutation = getMutation(mutationMethod);
+            // The second child of a crossover is mutated with BFM, unless the mutation is
+            // adaptive
+            secondMutation = getMutation("BFM");
+        }
+    }
+
     public Chromosome[] getPopulation() {
         Chromosome[] chromosomeArray = new Chromosome[population.length];
         System.arraycopy(population, 0, chromosomeArray, 0, population.length);
         return chromosomeArray;
     }
 
+    /**
+     * Returns the fittest chromosome that stands for a feasible knapsack (decoded
+     * by the constraint handler if necessary), or null if none of them do
+     */
+    public Chromosome getBestFeasible() {
+        ConstraintHandler handler = ProblemConfiguration.instance.getConstraintHandler();
+        for (Chromosome chromosome : population) {
+            if (chromosome.isFeasible()) {
+                return chromosome;
+            }
+            int[] decoded = handler.decode(chromosome.getGene());
+            if (decoded != chromosome.getGene()) {
+                return new Chromosome(decoded);
+            }
+        }
+        return null;
+    }
+
     public int getNumberOfCrossoverOperations() {
         return numberOfCrossoverOperations;
     }
@@ -51,6 +142,10 @@ public class Population {
         return numberOfMutationOperations;
     }
 
+    public int getNumberOfLocalSearchOperations() {
+        return numberOfLocalSearchOperations;
+    }
+
     /** Evolves the population to the next generation */
     public void evolve() {
         Chromosome[] chromosomeArray = new Chromosome[population.length];
@@ -58,47 +153,46 @@ public class Population {
         // Keep the elite in the new chromosome array for the next generation
         int index = (int) Math.round(population.length * elitismRatio);
         System.arraycopy(population, 0, chromosomeArray, 0, index);
+        int numElite = index;
 
-        double[] rouletteWheel = null;
-        // Compute the roulette wheel for the population, in advance,
-        // if the method is RWS
-        if (this.selectionMethod.equals("RWS")) {
-            rouletteWheel = createRouletteWheel();
+        // Choose the operators for this generation, if they are chosen adaptively
+        if (crossoverSelector != null) {
+            crossover = OperatorRegistry.getCrossover(crossoverSelector.select());
+        }
+        if (mutationSelector != null) {
+            mutation = getMutation(mutationSelector.select());
+            secondMutation = mutation;
         }
 
-        // PRINT ROULETTE WHEEL
-        // for (int i = 0; i < rouletteWheel.length; i++) {
-        // System.out.print(rouletteWheel[i] + " ");
-        // }
+        // Prepare the selection for the population in advance, e.g. compute the
+        // roulette wheel if the method is RWS
+        selection.prepare(population);
 
         while (index < chromosomeArray.length) {
-            if (ProblemConfiguration.instance.randomGenerator.nextFloat() <= crossoverRatio) {
+            if (ProblemConfiguration.instance.getRandomGenerator().nextFloat() <= crossoverRatio) {
                 Chromosome[] parents = new Chromosome[2];
-                if (this.selectionMethod.equals("RWS")) {
-                    parents = selectParentsRWS(rouletteWheel);
-                } else if (this.selectionMethod.equals("TS")) {
-                    parents = selectParentsTS();
-                }
-                Chromosome[] children = parents[0].doCrossover(this.crossoverMethod, parents[1]);
+                parents[0] = selection.select(population);
+                parents[1] = selection.select(population);
+                Chromosome[] children = crossover(parents);
                 numberOfCrossoverOperations++;
 
-                if (ProblemConfiguration.instance.randomGenerator.nextFloat() <= mutationRatio) {
-                    chromosomeArray[index] = children[0].doMutation(this.mutationMethod);
+                if (ProblemConfiguration.instance.getRandomGenerator().nextFloat() <= mutationRatio) {
+                    chromosomeArray[index] = mutate(children[0], mutation);
                     numberOfMutationOperations++;
                 } else {
                     chromosomeArray[index] = children[0];
                 }
                 index++;
                 if (index < chromosomeArray.length) {
-                    if (ProblemConfiguration.instance.randomGenerator.nextFloat() <= mutationRatio) {
-                        chromosomeArray[index] = children[1].doMutation("BFM");
+                    if (ProblemConfiguration.instance.getRandomGenerator().nextFloat() <= mutationRatio) {
+                        chromosomeArray[index] = mutate(children[1], secondMutation);
                         numberOfMutationOperations++;
                     } else {
                         chromosomeArray[index] = children[1];
                     }
                 }
-            } else if (ProblemConfiguration.instance.randomGenerator.nextFloat() <= mutationRatio) {
-                chromosomeArray[index] = population[index].doMutation(this.mutationMethod);
+            } else if (ProblemConfiguration.instance.getRandomGenerator().nextFloat() <= mutationRatio) {
+                chromosomeArray[index] = mutate(population[index], mutation);
                 numberOfMutationOperations++;
             } else {
                 chromosomeArray[index] = population[index];
@@ -106,93 +200,198 @@ public class Population {
             index++;
         }
 
+        if (memeticRatio > 0) {
+            improveOffspring(chromosomeArray, numElite);
+        }
+
         // Sort the new population in descending order
         Arrays.sort(chromosomeArray, Collections.reverseOrder());
         population = chromosomeArray;
     }
 
     /**
-     * Returns the sum of the fitness values of all chromosomes in the population
+     * Returns the children of a crossover, crediting the crossover with their
+     * fitness gain over the fitter parent if it is chosen adaptively
      */
-    private int calculateTotalFitness() {
-        int sum = 0;
-        for (int i = 0; i < population.length; i++) {
-            sum += population[i].getFitness();
+    private Chromosome[] crossover(Chromosome[] parents) {
+        if (crossoverSelector == null) {
+            return parents[0].doCrossover(crossover, parents[1]);
         }
-        return sum;
+        long startTime = System.nanoTime();
+        Chromosome[] children = parents[0].doCrossover(crossover, parents[1]);
+        int gain = Math.max(children[0].getFitness(), children[1].getFitness())
+                - Math.max(parents[0].getFitness(), parents[1].getFitness());
+        crossoverSelector.record(gain, System.nanoTime() - startTime);
+        return children;
     }
 
     /**
-     * Returns the cut off points as a double [] corresponding to the roulette wheel
-     * 
-     * e.g. [0.3, 0.32, 0.39, ..., 0.95, 1.0] means that individual 0 has a 0.3
-     * chance of being selected, individual 1 has a 0.02 chance etc.
+     * Returns a mutated copy of the chromosome, crediting the mutation with its
+     * fitness gain if it is chosen adaptively
      */
-    private double[] createRouletteWheel() {
-        int totalFitness = calculateTotalFitness();
-        double[] rouletteWheel = new double[population.length];
-        double sumOfProbabilities = 0;
-        for (int i = 0; i < population.length; i++) {
-            double probability = (double) population[i].getFitness() / totalFitness;
-            sumOfProbabilities += probability;
-            rouletteWheel[i] = sumOfProbabilities;
+    private Chromosome mutate(Chromosome chromosome, MutationOperator operator) {
+        if (mutationSelector == null) {
+            return chromosome.doMutation(operator);
         }
-        return rouletteWheel;
+        long startTime = System.nanoTime();
+        Chromosome mutated = chromosome.doMutation(operator);
+        mutationSelector.record(mutated.getFitness() - chromosome.getFitness(), System.nanoTime() - startTime);
+        return mutated;
     }
 
     /**
-     * Picks a parent according to the probabilities in the specified roulette wheel
-     * Note: the roulette wheel sections are disjoint
+     * Returns the mutation for the method, which for an item order maps BFM to EXM
+     * (see PermutationChromosome)
      */
-    private Chromosome spinRouletteWheel(double[] rouletteWheel) {
-        double selectionPoint = ProblemConfiguration.instance.randomGenerator.nextFloat();
-        for (int i = 0; i < rouletteWheel.length; i++) {
-            if (selectionPoint < rouletteWheel[i]) {
-                return population[i];
-            }
+    private MutationOperator getMutation(String method) {
+        return permutation ? PermutationChromosome.getMutation(method) : OperatorRegistry.getMutation(method);
+    }
+
+    /**
+     * Returns the lines for the report with the usage and credit of the operators
+     * chosen adaptively, or null if neither is
+     */
+    public String getOperatorStatistics() {
+        if (crossoverSelector == null && mutationSelector == null) {
+            return null;
+        }
+        String s = crossoverSelector != null ? crossoverSelector.getStatistics("Crossover") : "";
+        if (mutationSelector != null) {
+            s += (s.isEmpty() ? "" : "\n") + mutationSelector.getStatistics("Mutation");
         }
-        // if we get here, the selection point must be 1 - so pick the last member of
-        // the population
-        return population[population.length - 1];
+        return s;
+    }
+
+    /**
+     * Replaces the least fit chromosome with one for the given feasible knapsack,
+     * e.g. the best knapsack of another algorithm, which then takes its place
+     * among the elite. Returns the new chromosome.
+     */
+    public Chromosome inject(int[] gene) {
+        Chromosome chromosome = permutation
+                ? PermutationChromosome.fromGene(gene)
+                : new Chromosome(gene);
+        population[population.length - 1] = chromosome;
+        Arrays.sort(population, Collections.reverseOrder());
+        return chromosome;
     }
 
     /**
-     * Selects the two parent Chromosomes to be used for reproduction using Roulette
-     * Wheel Selection
+     * Replaces the least fit chromosomes with ones for the given feasible
+     * knapsacks, e.g. the best knapsacks of previous runs
      */
-    private Chromosome[] selectParentsRWS(double[] rouletteWheel) {
-        Chromosome[] parentArray = new Chromosome[2];
-        // Choose two parents using Roulette Wheel Selection
-        for (int i = 0; i < 2; i++) {
-            Chromosome parent = spinRouletteWheel(rouletteWheel);
-            parentArray[i] = parent;
+    public void seed(int[][] genes) {
+        for (int i = 0; i < genes.length && i < population.length; i++) {
+            population[population.length - 1 - i] = permutation
+                    ? PermutationChromosome.fromGene(genes[i])
+                    : new Chromosome(genes[i]);
         }
-        return parentArray;
+        Arrays.sort(population, Collections.reverseOrder());
     }
 
     /**
-     * Selects the two parent Chromosomes to be used for reproduction using
-     * Tournament Selection
+     * Maps the chromosomes onto a changed instance (see InstanceDelta), keeping
+     * the operators and their statistics. The fittest distinct chromosomes, up to
+     * half of the population, are kept, and the rest are replaced by random ones.
      */
-    private Chromosome[] selectParentsTS() {
-        Chromosome[] parentArray = new Chromosome[2];
-
-        // Run two tournaments each to pick one of the parents
-        for (int i = 0; i < 2; i++) {
-            // Select the first contender for the tournament
-            int best = ProblemConfiguration.instance.randomGenerator.nextInt(population.length);
-            for (int j = 0; j < 3; j++) {
-                // Test three contenders against the current best contender
-                int contender = ProblemConfiguration.instance.randomGenerator.nextInt(population.length);
-                if (population[contender].getFitness() > population[best].getFitness()) {
-                    best = contender;
-                }
+    public void remap(UnaryOperator<int[]> mapping) {
+        Chromosome[] mapped = new Chromosome[population.length];
+        for (int i = 0; i < population.length; i++) {
+            int[] gene = mapping.apply(population[i].getGene());
+            mapped[i] = permutation ? PermutationChromosome.fromGene(gene) : new Chromosome(gene);
+        }
+        Arrays.sort(mapped, Collections.reverseOrder());
+
+        Set<String> genes = new HashSet<String>();
+        int numKept = 0;
+        for (int i = 0; i < mapped.length && numKept < population.length * REMAP_KEPT_RATIO; i++) {
+            if (genes.add(Arrays.toString(mapped[i].getGene()))) {
+                population[numKept++] = mapped[i];
+            }
+        }
+        for (int i = numKept; i < population.length; i++) {
+            population[i] = permutation ? PermutationChromosome.generateRandom() : Chromosome.generateRandom();
+        }
+        Arrays.sort(population, Collections.reverseOrder());
+    }
+
+    /**
+     * Writes the chromosomes, the operation counts and the state of any adaptive
+     * operator choice to a checkpoint (see GeneticAlgorithm)
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+        out.writeInt(numberOfCrossoverOperations);
+        out.writeInt(numberOfMutationOperations);
+        out.writeInt(numberOfLocalSearchOperations);
+        out.writeInt(population.length);
+        for (Chromosome chromosome : population) {
+            if (permutation) {
+                Checkpoint.writeInts(out, ((PermutationChromosome) chromosome).getOrder());
+            } else {
+                // The fitness is kept as it was, since with a penalty it depends on when
+                // the chromosome was evaluated
+                Checkpoint.writeGene(out, chromosome.getGene());
+                out.writeInt(chromosome.getFitness());
             }
-            // Add the winner of the tournament as one of the parents
-            parentArray[i] = population[best];
         }
+        if (crossoverSelector != null) {
+            crossoverSelector.writeState(out);
+        }
+        if (mutationSelector != null) {
+            mutationSelector.writeState(out);
+        }
+    }
 
-        return parentArray;
+    /** Reads the chromosomes and the rest of the state written by writeState() */
+    private void readState(DataInputStream in) throws IOException {
+        numberOfCrossoverOperations = in.readInt();
+        numberOfMutationOperations = in.readInt();
+        numberOfLocalSearchOperations = in.readInt();
+        population = new Chromosome[in.readInt()];
+        for (int i = 0; i < population.length; i++) {
+            if (permutation) {
+                population[i] = new PermutationChromosome(Checkpoint.readInts(in));
+            } else {
+                int[] gene = Checkpoint.readGene(in);
+                population[i] = new Chromosome(gene, in.readInt());
+            }
+        }
+        if (crossoverSelector != null) {
+            crossoverSelector.readState(in);
+        }
+        if (mutationSelector != null) {
+            mutationSelector.readState(in);
+        }
+    }
+
+    /**
+     * Improves a sampled fraction of the offspring (the chromosomes after the
+     * elite) with local search. The offspring are sampled on this thread, so the
+     * random number stream is unaffected by the searches, which run in parallel.
+     * Only the searches run on the pool's threads: the improved chromosomes are
+     * created back on this thread, so that they are evaluated by its constraint
+     * handler, and for its instance and capacities.
+     */
+    private void improveOffspring(Chromosome[] chromosomeArray, int numElite) {
+        int[] selected = new int[chromosomeArray.length - numElite];
+        int numSelected = 0;
+        for (int i = numElite; i < chromosomeArray.length; i++) {
+            if (ProblemConfiguration.instance.getRandomGenerator().nextFloat() < memeticRatio) {
+                selected[numSelected++] = i;
+            }
+        }
+        KnapsackInstance items = ProblemConfiguration.instance.getKnapsackItems();
+        int[] capacities = ProblemConfiguration.instance.getCapacities();
+        int[][] improved = new int[numSelected][];
+        IntStream.range(0, numSelected).parallel().forEach(k -> improved[k] = LocalSearch.improve(items,
+                capacities, chromosomeArray[selected[k]].getGene()));
+        for (int k = 0; k < numSelected; k++) {
+            int i = selected[k];
+            chromosomeArray[i] = chromosomeArray[i] instanceof PermutationChromosome
+                    ? PermutationChromosome.fromGene(improved[k])
+                    : new Chromosome(improved[k]);
+        }
+        numberOfLocalSearchOperations += numSelected;
     }
 
     /** Returns a formatted string with each chromosome in the population */
@@ -0,0 +1,91 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs several configurations, usually of different algorithms, at the same time
+ * on the same instance, each on its own thread with its own random number
+ * stream, and returns the best value found by any of them.
+ *
+ * The algorithms share their best knapsacks through a SharedIncumbent: each one
+ * offers its best knapsack every iteration, and takes up the incumbent into its
+ * own state when another algorithm has found a better one - the GA puts it among
+ * its elite, SA restarts from it, PSO makes it the global best position, TS
+ * moves to it, and ACO and EDA reinforce it. As soon as the incumbent reaches
+ * the upper bound on the optimum or the target value, every algorithm stops.
+ */
+public class PortfolioSolver {
+    private final String[] configurations;
+
+    /** @param configurations e.g. { "ga_default_01", "sa_default_01" } */
+    public PortfolioSolver(String[] configurations) {
+        this.configurations = configurations;
+    }
+
+    /**
+     * Runs the portfolio until every algorithm has stopped, prints the result of
+     * each of them and returns the best value
+     */
+    public int run() {
+        long seed = System.currentTimeMillis();
+        SharedIncumbent incumbent = new SharedIncumbent();
+        ExecutorService executor = Executors.newFixedThreadPool(configurations.length);
+        List<Callable<KnapsackSolver>> tasks = new ArrayList<Callable<KnapsackSolver>>();
+        for (int i = 0; i < configurations.length; i++) {
+            final int stream = i;
+            tasks.add(() -> {
+                ProblemConfiguration.instance.setRandomGenerator(ProblemConfiguration.createRandomGenerator(seed, stream));
+                KnapsackSolver solver = Application.createSolver(configurations[stream]);
+                if (solver != null) {
+                    solver.setIncumbent(incumbent);
+                    solver.run();
+                }
+                return solver;
+            });
+        }
+
+        long startTime = System.currentTimeMillis();
+        int bestValue = Integer.MIN_VALUE;
+        String bestConfiguration = null;
+        try {
+            for (Future<KnapsackSolver> future : executor.invokeAll(tasks)) {
+                try {
+                    KnapsackSolver solver = future.get();
+                    if (solver != null) {
+                        String stopReason = solver.getStopReason() == null ? "" : " (" + solver.getStopReason() + ")";
+                        System.out.println(String.format("%s: %d in %d ms%s", solver.getConfiguration(),
+                                solver.getBestValue(), solver.getRuntime(), stopReason));
+                        if (solver.getBestValue() > bestValue) {
+                            bestValue = solver.getBestValue();
+                            bestConfiguration = solver.getConfiguration();
+                        }
+                    }
+                } catch (ExecutionException e) {
+                    System.out.println(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            System.out.println(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        long runtime = System.currentTimeMillis() - startTime;
+
+        if (bestConfiguration == null) {
+            return -1;
+        }
+        // The algorithms that took up the incumbent report its value too, so credit
+        // the one that found it
+        SharedIncumbent.Solution best = incumbent.get();
+        if (best != null && best.getValue() >= bestValue) {
+            bestConfiguration = best.getSource();
+        }
+        System.out.println(String.format("Portfolio: %d found by %s in %d ms", bestValue, bestConfiguration,
+                runtime));
+        return bestValue;
+    }
+}
@@ -1,18 +1,198 @@
 import java.text.DecimalFormat;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Defines the key components defined by the Knapsack problem - including the
  * maximum number of iterations for each algorithm (10000), the maximum capacity
  * of the knapsack (822), and this specific knapsack instance with all possible
  * items, and each item's associated weight and value.
+ *
+ * The algorithms search knapsackItems, which is the core of the full instance
+ * left after preprocessing (see InstancePreprocessor).
+ *
+ * A thread may solve the instance for capacities of its own, or an instance of
+ * its own (see setThreadCapacities() and setThreadInstance()), so the instance,
+ * the capacities and the core should be read through getFullKnapsackItems(),
+ * getMaximumCapacity(), getCapacities() and getKnapsackItems().
  */
 public enum ProblemConfiguration {
     instance;
 
     int maximumNumberOfIterations = 10000;
     int maximumCapacity = 822;
-    KnapsackInstance knapsackItems = new KnapsackInstance(); // Stores the possible knapsack items
+    // Capacities of the constraints after the first on a multi-dimensional
+    // instance (the first constraint's capacity is maximumCapacity)
+    int[] additionalCapacities = {};
+    KnapsackInstance fullKnapsackItems = new KnapsackInstance(); // Stores all the possible knapsack items
+    KnapsackInstance knapsackItems = InstancePreprocessor.extractCore(fullKnapsackItems, maximumCapacity);
+    private boolean preprocessed = true;
+    // When the algorithms stop before using up their iterations
+    TerminationCriteria terminationCriteria = new TerminationCriteria();
+    // How the algorithms treat overweight knapsacks: ZERO, REPAIR, PENALTY or DECODER
+    String constraintHandling = "ZERO";
+    // The best knapsacks of previous runs on the instance, which the GA, SA and PSO
+    // start from and add to, or null to start from random knapsacks
+    EliteArchive eliteArchive;
 
-    MersenneTwister randomGenerator = new MersenneTwister(System.currentTimeMillis()); // For generating random numbers
+    // For generating random numbers - each thread has its own generator, so that
+    // algorithms running concurrently use isolated random number streams
+    private final long baseSeed = System.currentTimeMillis();
+    private final AtomicInteger streamCounter = new AtomicInteger();
+    private final ThreadLocal<MersenneTwister> randomGenerator = ThreadLocal
+            .withInitial(() -> createRandomGenerator(baseSeed, streamCounter.getAndIncrement()));
+    // Each thread has its own constraint handler, which keeps its own statistics
+    private final ThreadLocal<ConstraintHandler> constraintHandler = ThreadLocal
+            .withInitial(() -> ConstraintHandler.create(constraintHandling));
+    // The instance and/or capacities the current thread solves for instead of the
+    // ones above, if any
+    private final ThreadLocal<ThreadInstance> threadInstance = new ThreadLocal<ThreadInstance>();
     DecimalFormat decimalFormat = new DecimalFormat("00000"); // For outputting the number of generations
-}
\ No newline at end of file
+
+    /** The instance and capacities of a thread, and the core of the instance for them */
+    private static class ThreadInstance {
+        final KnapsackInstance fullItems;
+        final int[] capacities;
+        final boolean preprocessed;
+        final KnapsackInstance items;
+        // Whether the instance is the thread's own, rather than the shared one at the
+        // time the thread's capacities were set
+        final boolean own;
+
+        ThreadInstance(KnapsackInstance fullItems, int[] capacities, boolean preprocess, boolean own) {
+            if (capacities.length != fullItems.getNumConstraints()) {
+                throw new IllegalArgumentException("The instance has " + fullItems.getNumConstraints()
+                        + " constraints, not " + capacities.length);
+            }
+            this.fullItems = fullItems;
+            this.capacities = capacities.clone();
+            this.preprocessed = preprocess;
+            this.items = preprocess ? InstancePreprocessor.extractCore(fullItems, capacities[0]) : fullItems;
+            this.own = own;
+        }
+    }
+
+    /** Returns the random number generator of the current thread */
+    MersenneTwister getRandomGenerator() {
+        return randomGenerator.get();
+    }
+
+    /** Replaces the random number generator of the current thread */
+    void setRandomGenerator(MersenneTwister generator) {
+        randomGenerator.set(generator);
+    }
+
+    /** Returns the constraint handler of the current thread */
+    ConstraintHandler getConstraintHandler() {
+        return constraintHandler.get();
+    }
+
+    /** Replaces the constraint handler of the current thread */
+    void setConstraintHandler(ConstraintHandler handler) {
+        constraintHandler.set(handler);
+    }
+
+    /**
+     * Creates a generator for the given stream of a seed. Different streams of the
+     * same seed give independent sequences, and the same seed and stream always
+     * give the same sequence.
+     */
+    static MersenneTwister createRandomGenerator(long seed, int stream) {
+        return new MersenneTwister(new int[] { (int) seed, (int) (seed >>> 32), stream });
+    }
+
+    /**
+     * Makes the current thread solve the instance for the given capacities (one
+     * per constraint) rather than the ones of the configuration, e.g. so that
+     * several capacities can be solved at once, or for the configuration's again
+     * if capacities is null
+     */
+    void setThreadCapacities(int[] capacities) {
+        ThreadInstance thread = getThreadInstance();
+        if (thread != null && thread.own) {
+            threadInstance.set(new ThreadInstance(thread.fullItems,
+                    capacities != null ? capacities : thread.capacities, thread.preprocessed, true));
+        } else if (capacities == null) {
+            threadInstance.remove();
+        } else {
+            threadInstance.set(new ThreadInstance(fullKnapsackItems, capacities, preprocessed, false));
+        }
+    }
+
+    /**
+     * Makes the current thread solve an instance of its own for the given
+     * capacities, rather than the instance of the configuration, e.g. so that
+     * several instances can be solved at once, or the configuration's again if
+     * items is null
+     *
+     * @param preprocess Whether to search the core of the instance rather than all
+     *                   of its items
+     */
+    void setThreadInstance(KnapsackInstance items, int[] capacities, boolean preprocess) {
+        if (items == null) {
+            threadInstance.remove();
+        } else {
+            threadInstance.set(new ThreadInstance(items, capacities, preprocess, true));
+        }
+    }
+
+    /**
+     * Returns the instance and capacities of the current thread, or null if it
+     * has none of its own
+     */
+    private ThreadInstance getThreadInstance() {
+        ThreadInstance thread = threadInstance.get();
+        // Capacities set for a shared instance that has since been replaced no
+        // longer apply
+        return thread != null && (thread.own || thread.fullItems == fullKnapsackItems) ? thread : null;
+    }
+
+    /** Returns the full instance solved by the current thread */
+    KnapsackInstance getFullKnapsackItems() {
+        ThreadInstance thread = getThreadInstance();
+        return thread != null ? thread.fullItems : fullKnapsackItems;
+    }
+
+    /** Returns the capacity of the first constraint for the current thread */
+    int getMaximumCapacity() {
+        ThreadInstance thread = getThreadInstance();
+        return thread != null ? thread.capacities[0] : maximumCapacity;
+    }
+
+    /** Returns the items searched by the current thread (the core for its capacities) */
+    KnapsackInstance getKnapsackItems() {
+        ThreadInstance thread = getThreadInstance();
+        return thread != null ? thread.items : knapsackItems;
+    }
+
+    /**
+     * Returns the capacity of every constraint of the current instance for the
+     * current thread, in order
+     */
+    int[] getCapacities() {
+        ThreadInstance thread = getThreadInstance();
+        if (thread != null) {
+            return thread.capacities.clone();
+        }
+        int[] capacities = new int[knapsackItems.getNumConstraints()];
+        capacities[0] = maximumCapacity;
+        for (int d = 1; d < capacities.length; d++) {
+            capacities[d] = additionalCapacities[d - 1];
+        }
+        return capacities;
+    }
+
+    /**
+     * Sets the instance to be solved, and the core to be searched if preprocess
+     * is true
+     */
+    void setInstance(KnapsackInstance items, boolean preprocess) {
+        fullKnapsackItems = items;
+        knapsackItems = preprocess ? InstancePreprocessor.extractCore(items, maximumCapacity) : items;
+        preprocessed = preprocess;
+    }
+
+    /** Returns true if the instance set last was preprocessed */
+    boolean isPreprocessed() {
+        return preprocessed;
+    }
+}
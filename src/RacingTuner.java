@@ -0,0 +1,348 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Finds the best configuration of an algorithm by racing the candidate
+ * configurations against each other, rather than running each of them to the
+ * end (successive halving with statistical elimination).
+ *
+ * Every candidate is first run on several seeds with a small fraction of the
+ * full iteration budget. After each seed, any candidate that a paired t-test
+ * shows is significantly worse than the current leader is dropped. At the end
+ * of each round the worse half of the remaining candidates is dropped and the
+ * budget is doubled, until one candidate is left or the full budget is reached.
+ *
+ * The candidates are either the default JSON configurations, or are sampled
+ * from a file of parameter ranges, e.g.
+ *
+ * selection = RWS | TS
+ *
+ * crossover_ratio = 0.5 .. 0.9
+ *
+ * samples = 32
+ */
+public class RacingTuner {
+    private final static int NUM_SEEDS = 5;
+    private final static int MIN_SEEDS_FOR_TEST = 3;
+    private final static double INITIAL_BUDGET_FRACTION = 1.0 / 16;
+    private final static int MIN_BUDGET = 100; // The fewest iterations a run is given
+    private final static int DEFAULT_SAMPLES = 24;
+
+    // One-sided critical values of Student's t distribution at the 5% level, for 1
+    // to 30 degrees of freedom
+    private final static double[] T_CRITICAL = { 6.314, 2.920, 2.353, 2.132, 2.015, 1.943, 1.895, 1.860, 1.833,
+            1.812, 1.796, 1.782, 1.771, 1.761, 1.753, 1.746, 1.740, 1.734, 1.729, 1.725, 1.721, 1.717, 1.714, 1.711,
+            1.708, 1.706, 1.703, 1.701, 1.699, 1.697 };
+
+    /** A configuration taking part in the race */
+    private static class Candidate {
+        private final String name;
+        private final Map<String, String> parameters; // null if the candidate is a JSON file
+        private final double[] results = new double[NUM_SEEDS];
+        private int numResults;
+
+        Candidate(String name, Map<String, String> parameters) {
+            this.name = name;
+            this.parameters = parameters;
+        }
+
+        /** Returns the mean final value over the seeds run so far */
+        double getMean() {
+            double sum = 0;
+            for (int s = 0; s < numResults; s++) {
+                sum += results[s];
+            }
+            return numResults == 0 ? 0 : sum / numResults;
+        }
+    }
+
+    private final String algorithm;
+    private final List<Candidate> candidates;
+
+    private RacingTuner(String algorithm, List<Candidate> candidates) {
+        this.algorithm = algorithm.toLowerCase();
+        this.candidates = candidates;
+    }
+
+    /** Creates a tuner that races the default JSON configurations of an algorithm */
+    public static RacingTuner fromDefaultConfigurations(String algorithm) {
+        DecimalFormat decimalFormat = new DecimalFormat("00");
+        List<Candidate> candidates = new ArrayList<Candidate>();
+        for (int i = 1; i <= Application.getNumberOfDefaultConfigurations(algorithm); i++) {
+            String name = algorithm.toLowerCase() + "_default_" + decimalFormat.format(i);
+            if (new File(Application.getConfigurationPath(algorithm) + name + ".json").exists()) {
+                candidates.add(new Candidate(name, null));
+            }
+        }
+        return new RacingTuner(algorithm, candidates);
+    }
+
+    /**
+     * Creates a tuner that races configurations sampled from a file of parameter
+     * ranges. Each line is either "key = a | b | c" for a choice, "key = low ..
+     * high" for a range, or "samples = n" for the number of candidates to sample
+     */
+    public static RacingTuner fromParameterRanges(String algorithm, String rangesFile) throws FileNotFoundException {
+        Map<String, String> ranges = new LinkedHashMap<String, String>();
+        int samples = DEFAULT_SAMPLES;
+        Scanner scFile = new Scanner(new File(rangesFile));
+        while (scFile.hasNextLine()) {
+            String line = scFile.nextLine().trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String key = line.substring(0, line.indexOf("=")).trim();
+            String value = line.substring(line.indexOf("=") + 1).trim();
+            if (key.equals("samples")) {
+                samples = Integer.parseInt(value);
+            } else {
+                ranges.put(key, value);
+            }
+        }
+        scFile.close();
+
+        MersenneTwister random = new MersenneTwister(System.currentTimeMillis());
+        DecimalFormat decimalFormat = new DecimalFormat("00");
+        List<Candidate> candidates = new ArrayList<Candidate>();
+        for (int i = 1; i <= samples; i++) {
+            Map<String, String> parameters = new LinkedHashMap<String, String>();
+            for (Map.Entry<String, String> range : ranges.entrySet()) {
+                parameters.put(range.getKey(), sampleParameter(range.getValue(), random));
+            }
+            candidates.add(new Candidate(algorithm.toLowerCase() + "_race_" + decimalFormat.format(i), parameters));
+        }
+        return new RacingTuner(algorithm, candidates);
+    }
+
+    /** Picks a random value for a parameter given as a choice or as a range */
+    private static String sampleParameter(String range, MersenneTwister random) {
+        if (range.contains("..")) {
+            String low = range.substring(0, range.indexOf("..")).trim();
+            String high = range.substring(range.indexOf("..") + 2).trim();
+            if (!low.contains(".") && !high.contains(".")) {
+                return String.valueOf(random.nextInt(Integer.parseInt(low), Integer.parseInt(high)));
+            }
+            double value = Double.parseDouble(low)
+                    + random.nextDouble() * (Double.parseDouble(high) - Double.parseDouble(low));
+            return String.valueOf(Math.round(value * 10000) / 10000.0);
+        }
+        String[] choices = range.split("\\|");
+        return choices[random.nextInt(choices.length)].trim();
+    }
+
+    /**
+     * Races the candidates, writes the winner to [algorithm]_best.json and
+     * returns its name
+     */
+    public String race() {
+        if (candidates.isEmpty()) {
+            System.out.println("No configurations to race for " + algorithm);
+            return null;
+        }
+        long seed = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        List<Candidate> alive = new ArrayList<Candidate>(candidates);
+        double fraction = INITIAL_BUDGET_FRACTION;
+        double budgetUsed = 0; // In units of one run with the full budget
+        int round = 1;
+
+        try {
+            while (true) {
+                for (Candidate candidate : alive) {
+                    candidate.numResults = 0;
+                }
+                int size = alive.size();
+                for (int s = 0; s < NUM_SEEDS && alive.size() > 1; s++) {
+                    runSeed(executor, alive, seed, s, fraction);
+                    budgetUsed += alive.size() * fraction;
+                    if (s + 1 >= MIN_SEEDS_FOR_TEST) {
+                        eliminateSignificantlyWorse(alive);
+                    }
+                }
+                alive.sort((a, b) -> Double.compare(b.getMean(), a.getMean()));
+                System.out.println(String.format("Round %d (%.1f%% budget): %d -> %d candidates, leader %s (%.1f)",
+                        round, fraction * 100, size, alive.size(), alive.get(0).name, alive.get(0).getMean()));
+
+                if (alive.size() == 1 || fraction >= 1) {
+                    break;
+                }
+                // Successive halving: keep the better half and double their budget
+                alive = new ArrayList<Candidate>(alive.subList(0, (alive.size() + 1) / 2));
+                if (alive.size() == 1) {
+                    break;
+                }
+                fraction = Math.min(1, fraction * 2);
+                round++;
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            System.out.println(e);
+            return null;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Candidate best = alive.get(0);
+        System.out.println("Best configuration is " + best.name);
+        System.out.println(String.format("Used %.1f%% of the CPU of running every candidate on every seed in full",
+                100 * budgetUsed / (candidates.size() * NUM_SEEDS)));
+        writeBest(best);
+        return best.name;
+    }
+
+    /**
+     * Runs every remaining candidate on one seed in parallel. Every candidate uses
+     * the same random number stream for a seed, so that they are compared on equal
+     * terms.
+     */
+    private void runSeed(ExecutorService executor, List<Candidate> alive, long seed, int s, double fraction)
+            throws InterruptedException, ExecutionException {
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+        for (Candidate candidate : alive) {
+            tasks.add(() -> {
+                ProblemConfiguration.instance.setRandomGenerator(ProblemConfiguration.createRandomGenerator(seed, s));
+                KnapsackSolver solver = createSolver(candidate);
+                if (solver == null) {
+                    return 0;
+                }
+                solver.setReporting(false);
+                solver.setMaximumIterations(Math.max(MIN_BUDGET, (int) (solver.getMaximumIterations() * fraction)));
+                return solver.run();
+            });
+        }
+        List<Future<Integer>> results = executor.invokeAll(tasks);
+        for (int c = 0; c < alive.size(); c++) {
+            Candidate candidate = alive.get(c);
+            candidate.results[candidate.numResults++] = results.get(c).get();
+        }
+    }
+
+    /**
+     * Drops every candidate that is significantly worse than the leader according
+     * to a one-sided paired t-test over the seeds run so far
+     */
+    private void eliminateSignificantlyWorse(List<Candidate> alive) {
+        Candidate leader = alive.get(0);
+        for (Candidate candidate : alive) {
+            if (candidate.getMean() > leader.getMean()) {
+                leader = candidate;
+            }
+        }
+        final Candidate best = leader;
+        alive.removeIf(candidate -> candidate != best && isSignificantlyWorse(candidate, best));
+    }
+
+    /** Returns true if the paired differences show candidate is worse than best */
+    private static boolean isSignificantlyWorse(Candidate candidate, Candidate best) {
+        int n = candidate.numResults;
+        double meanDifference = best.getMean() - candidate.getMean();
+        double sumOfSquares = 0;
+        for (int s = 0; s < n; s++) {
+            double deviation = (best.results[s] - candidate.results[s]) - meanDifference;
+            sumOfSquares += deviation * deviation;
+        }
+        double standardDeviation = Math.sqrt(sumOfSquares / (n - 1));
+        if (standardDeviation == 0) {
+            // Worse on every seed by the same amount
+            return meanDifference > 0;
+        }
+        double t = meanDifference / (standardDeviation / Math.sqrt(n));
+        return t > T_CRITICAL[Math.min(n - 1, T_CRITICAL.length) - 1];
+    }
+
+    /** Creates the solver for a candidate, from its JSON file or its parameters */
+    private KnapsackSolver createSolver(Candidate candidate) {
+        Map<String, String> p = candidate.parameters;
+        if (p == null) {
+            return Application.createSolver(candidate.name);
+        }
+        if (algorithm.equals("ga")) {
+            GeneticAlgorithm ga = new GeneticAlgorithm(candidate.name, p.get("selection"), p.get("crossover"),
+                    Double.parseDouble(p.get("crossover_ratio")), p.get("mutation"),
+                    Double.parseDouble(p.get("mutation_ratio")));
+            if (p.containsKey("memetic_ratio")) {
+                ga.setMemeticRatio(Double.parseDouble(p.get("memetic_ratio")));
+            }
+            return ga;
+        } else if (algorithm.equals("sa")) {
+            return new SimulatedAnnealing(candidate.name, Integer.parseInt(p.get("initial_temperature")),
+                    Double.parseDouble(p.get("cooling_rate")));
+        } else if (algorithm.equals("pso")) {
+            return new ParticleSwarmOptimization(candidate.name, Integer.parseInt(p.get("num_particles")),
+                    Integer.parseInt(p.get("min_velocity")), Integer.parseInt(p.get("max_velocity")),
+                    Double.parseDouble(p.get("c1")), Double.parseDouble(p.get("c2")),
+                    Double.parseDouble(p.get("inertia")));
+        } else if (algorithm.equals("ts")) {
+            return new TabuSearch(candidate.name, Integer.parseInt(p.get("tabu_tenure")),
+                    Boolean.parseBoolean(p.get("swap_moves")));
+        } else if (algorithm.equals("aco")) {
+            return new AntColonyOptimization(candidate.name, Integer.parseInt(p.get("num_ants")),
+                    Double.parseDouble(p.get("alpha")), Double.parseDouble(p.get("beta")),
+                    Double.parseDouble(p.get("evaporation")));
+        } else if (algorithm.equals("eda")) {
+            return new EstimationOfDistribution(candidate.name, p.get("model"),
+                    Integer.parseInt(p.get("population_size")), Double.parseDouble(p.get("learning_rate")));
+        }
+        return null;
+    }
+
+    /**
+     * Writes the winning candidate to [algorithm]_best.json, in the same field
+     * order as the default JSON configurations
+     */
+    private void writeBest(Candidate best) {
+        String path = Application.getConfigurationPath(algorithm);
+        String destFile = path + algorithm + "_best.json";
+        // Delete the best file if it already exists, because we will replace it
+        new File(destFile).delete();
+        try {
+            if (best.parameters == null) {
+                Files.copy(new File(path + best.name + ".json").toPath(), new File(destFile).toPath());
+                return;
+            }
+            String[] keys;
+            if (algorithm.equals("ga") && best.parameters.containsKey("memetic_ratio")) {
+                keys = new String[] { "selection", "configuration", "mutation_ratio", "crossover_ratio", "crossover",
+                        "mutation", "memetic_ratio" };
+            } else if (algorithm.equals("ga")) {
+                keys = new String[] { "selection", "configuration", "mutation_ratio", "crossover_ratio", "crossover",
+                        "mutation" };
+            } else if (algorithm.equals("sa")) {
+                keys = new String[] { "initial_temperature", "configuration", "cooling_rate" };
+            } else if (algorithm.equals("ts")) {
+                keys = new String[] { "tabu_tenure", "configuration", "swap_moves" };
+            } else if (algorithm.equals("aco")) {
+                keys = new String[] { "num_ants", "configuration", "alpha", "beta", "evaporation" };
+            } else if (algorithm.equals("eda")) {
+                keys = new String[] { "model", "configuration", "population_size", "learning_rate" };
+            } else {
+                keys = new String[] { "min_velocity", "max_velocity", "inertia", "configuration", "num_particles",
+                        "c1", "c2" };
+            }
+            String json = "{";
+            for (int i = 0; i < keys.length; i++) {
+                String value = keys[i].equals("configuration") ? algorithm + "_best" : best.parameters.get(keys[i]);
+                json += (i > 0 ? "," : "") + "\"" + keys[i] + "\":\"" + value + "\"";
+            }
+            json += "}\n";
+            FileWriter writer = new FileWriter(destFile);
+            writer.write(json);
+            writer.close();
+        } catch (IOException e) {
+            System.out.println(e);
+        }
+    }
+}
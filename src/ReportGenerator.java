@@ -4,6 +4,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 
 /**
  * Class used for generating a report regarding important statistics regarding
@@ -11,9 +12,14 @@ import java.time.LocalDateTime;
  * convergences and plateau statistics
  */
 public class ReportGenerator {
-    private final static int BEST_KNOWN_OPTIMUM = 997;
     private final static String REPORTS_PATH = "reports/";
 
+    // The largest table (items x capacity) to solve exactly for the solution quality
+    final static long MAX_EXACT_CELLS = 2000000000L;
+    // The largest capacity to solve exactly, as dynamic programming keeps an int
+    // for every capacity up to it (32M ints, 128 MB per array)
+    final static long MAX_EXACT_CAPACITY = 1L << 25;
+
     /**
      * Creates a report `report_[algorithm]_yyyymmdd.txt` based on inputted
      * statistics
@@ -28,6 +34,15 @@ public class ReportGenerator {
      */
     public static String generateReport(String configuration, String params, int[] bweights, int[] bvalues,
             String[] knapsacks, long runtime, int numIterations) {
+        return generateReport(configuration, params, bweights, bvalues, knapsacks, runtime, numIterations, null);
+    }
+
+    /**
+     * Creates a report as above, with extra lines of statistics (e.g. on the
+     * constraint handling) after the runtime, or none if extraStatistics is null
+     */
+    public static String generateReport(String configuration, String params, int[] bweights, int[] bvalues,
+            String[] knapsacks, long runtime, int numIterations, String extraStatistics) {
         String report = "";
 
         DateTimeFormatter dtfFull = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
@@ -58,14 +73,18 @@ public class ReportGenerator {
 
         report += "[Statistics]\n";
 
-        report += "Runtime:\t" + runtime + " ms\n\n";
+        report += "Runtime:\t" + runtime + " ms\n";
+        if (extraStatistics != null) {
+            report += extraStatistics + "\n";
+        }
+        report += "\n";
 
         report += String.format("%-10s%9s%10s%8s%13s\n", "Convergence", "#  ", "bweight", "bvalue", "squality");
 
         // Print convergence statistics at 25%, 50%, 75% and 100% of iterations
         int intervalSize = numIterations / 4;
         for (int i = 1; i <= 4; i++) {
-            int index = intervalSize * i - 1;
+            int index = Math.max(0, intervalSize * i - 1); // A run stopped early may be very short
 
             report += String.format("%-10s%9d%10d%8d%13s\n", "", (index + 1), bweights[index], bvalues[index],
                     getSolutionQuality(bvalues[index]));
@@ -83,6 +102,87 @@ public class ReportGenerator {
         return report;
     }
 
+    /**
+     * Creates a summary report `summary_[configuration]_yyyymmdd.txt` over several
+     * runs of the same configuration with different seeds
+     *
+     * @param configuration The name of the configuration e.g. "ga_default_01"
+     * @param params        A string outlining the batch e.g. "10 runs on 4
+     *                      threads | target = 1143"
+     * @param values        The final value of each run
+     * @param runtimes      The runtime of each run in ms
+     * @param timesToTarget The time in ms each run took to reach the target value,
+     *                      or -1 if it did not reach it
+     */
+    public static String generateSummary(String configuration, String params, double[] values, double[] runtimes,
+            long[] timesToTarget) {
+        String report = "";
+
+        DateTimeFormatter dtfFull = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+        LocalDateTime currDateTime = LocalDateTime.now();
+
+        report += "Batch Evaluation | " + dtfFull.format(currDateTime) + "\n";
+
+        report += "Configuration:\t" + configuration + ".json\n";
+
+        report += "\t" + params + "\n";
+
+        report += addEqualsSigns();
+
+        report += String.format("%-20s%10s%10s%10s%10s%10s\n", "", "mean", "median", "stddev", "min", "max");
+
+        report += addDashes();
+
+        report += addStatisticsRow("Value", values);
+
+        report += addStatisticsRow("Runtime (ms)", runtimes);
+
+        // Only the runs that reached the target have a time-to-target
+        int numReached = 0;
+        double[] reached = new double[timesToTarget.length];
+        for (long time : timesToTarget) {
+            if (time >= 0) {
+                reached[numReached++] = time;
+            }
+        }
+        if (numReached > 0) {
+            report += addStatisticsRow("Time to target (ms)", Arrays.copyOf(reached, numReached));
+        }
+
+        report += addDashes();
+
+        report += "Reached target:\t" + numReached + "/" + timesToTarget.length + " runs\n\n";
+
+        report += String.format("%-9s%8s%13s%13s\n", "Run", "value", "runtime", "to target");
+        for (int i = 0; i < values.length; i++) {
+            report += String.format("%-9d%8d%13d%13s\n", i + 1, (int) values[i], (long) runtimes[i],
+                    timesToTarget[i] >= 0 ? String.valueOf(timesToTarget[i]) : "-");
+        }
+
+        report += addEqualsSigns();
+
+        return report;
+    }
+
+    /** Returns a row with the mean, median, standard deviation, min and max of x */
+    private static String addStatisticsRow(String name, double[] x) {
+        double[] sorted = x.clone();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+        double mean = 0;
+        for (double value : sorted) {
+            mean += value / n;
+        }
+        double sumOfSquares = 0;
+        for (double value : sorted) {
+            sumOfSquares += (value - mean) * (value - mean);
+        }
+        double standardDeviation = n > 1 ? Math.sqrt(sumOfSquares / (n - 1)) : 0;
+        double median = n % 2 == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2;
+        return String.format("%-20s%10.1f%10.1f%10.2f%10.0f%10.0f\n", name, mean, median, standardDeviation,
+                sorted[0], sorted[n - 1]);
+    }
+
     /** Returns a row of equal signs */
     private static String addEqualsSigns() {
         // Add a row of ='s
@@ -107,15 +207,50 @@ public class ReportGenerator {
 
     /**
      * Given an int solution value, returns its solution quality as a percentage
-     * relative to the given previous best-known optimum of 997. e.g. 997 -> 100%,
-     * 498 -> 49.99%, etc.
+     * relative to the optimum of the instance being solved. e.g. if the optimum is
+     * 1000 then 1000 -> 100%, 499 -> 49.9%, etc.
+     *
+     * Returns "-" if the optimum is not known (for multi-dimensional instances, or
+     * instances too large to solve exactly)
      */
     private static String getSolutionQuality(int value) {
+        int optimum = getOptimum();
+        if (optimum <= 0) {
+            return "-";
+        }
         DecimalFormat df = new DecimalFormat("###.##");
-        double quality = (double) value / BEST_KNOWN_OPTIMUM;
+        double quality = (double) value / optimum;
         return df.format(quality * 100) + "%";
     }
 
+    /**
+     * Returns the optimal value of the full instance being solved, or 0 if it is
+     * not known. The optimum is solved exactly once per instance and capacity,
+     * by branch and bound if the table or the capacity itself is too large for
+     * dynamic programming.
+     */
+    static int getOptimum() {
+        KnapsackInstance items = ProblemConfiguration.instance.getFullKnapsackItems();
+        int capacity = ProblemConfiguration.instance.getMaximumCapacity();
+        if (items.getNumConstraints() > 1) {
+            return 0;
+        }
+        if (!fitsDynamicProgramming(items, capacity)) {
+            return BranchAndBound.getOptimalValue(items, capacity);
+        }
+        return DynamicProgramming.getOptimalValue(items, capacity);
+    }
+
+    /**
+     * Returns true if the single-constraint instance is small enough to be solved
+     * by dynamic programming for the given capacity - both its table of items x
+     * capacities and its rolling array of capacities
+     */
+    static boolean fitsDynamicProgramming(KnapsackInstance items, int capacity) {
+        long capacities = (long) capacity + 1;
+        return capacities <= MAX_EXACT_CAPACITY && items.size() * capacities <= MAX_EXACT_CELLS;
+    }
+
     /**
      * Returns a line of the report corresponding to the longest sequence without
      * improvement. e.g. Pleateau | Longest sequence without improvement: 443-472
@@ -169,9 +304,17 @@ public class ReportGenerator {
      * run e.g. ga_default_01
      */
     public static void writeToFile(String text, String configuration) {
+        writeToFile(text, "report_", configuration);
+    }
+
+    /**
+     * Writes given text to a text file named with the given prefix, e.g.
+     * "summary_", and the configuration that was run
+     */
+    public static void writeToFile(String text, String prefix, String configuration) {
         DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyyMMdd");
         LocalDateTime currDateTime = LocalDateTime.now();
-        String fileName = "report_" + configuration + "_" + dtf.format(currDateTime) + ".txt";
+        String fileName = prefix + configuration + "_" + dtf.format(currDateTime) + ".txt";
         File file = new File(REPORTS_PATH + fileName);
         FileWriter fr = null;
         try {
@@ -0,0 +1,285 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.UnaryOperator;
+
+/**
+ * Base class for the algorithms that can be run a few iterations at a time (GA,
+ * SA and PSO), so that a scheduler can share the CPU between several of them
+ * (see AlgorithmScheduler). A run is start(), then step() until it returns
+ * false, then finish(); run() does all three in one go.
+ *
+ * The steps of a run may be taken on different threads, so the algorithm keeps
+ * the random number generator of the thread it was started on, and its
+ * constraint handler, and installs both on the current thread for every step.
+ *
+ * A long run can write a checkpoint every so many iterations or seconds (see
+ * setCheckpointing()), holding the algorithm's state, the statistics of the run,
+ * the constraint handler's state and the random number generator's state. A new
+ * solver for the same configuration can then restore() the checkpoint and run()
+ * on from exactly where the checkpoint was written.
+ *
+ * When the instance changes during or after a run (see InstanceDelta),
+ * reoptimize() maps the state of the run onto the changed instance and continues
+ * from it, so that a good knapsack is found again in a few iterations rather
+ * than a whole run.
+ */
+public abstract class ResumableSolver extends KnapsackSolver {
+    private MersenneTwister randomGenerator;
+    private boolean finished;
+    private long numIterations; // The iterations taken so far by step()
+    private boolean restored; // Whether the next run() continues from a checkpoint
+
+    // Where and how often to write checkpoints - never unless a path is set
+    private Path checkpointPath;
+    private int checkpointIterations; // 0 to not write them by iterations
+    private long checkpointInterval; // In ms, 0 to not write them by time
+    private long lastCheckpointIteration;
+    private long lastCheckpointTime;
+    private Checkpoint.Trace trace; // Of the last checkpoint written or read, null for a new run
+
+    public ResumableSolver(String configuration) {
+        super(configuration);
+    }
+
+    /** Sets up the state of a run, e.g. the initial population */
+    protected abstract void initialize();
+
+    /**
+     * Runs one iteration (or generation), and returns true, or returns false
+     * without running it if the run is over
+     */
+    protected abstract boolean iterate();
+
+    /**
+     * Records the end of the run, reports on it if reporting is on, and returns
+     * the best value found
+     */
+    protected abstract int end();
+
+    /** Writes the state of the run after the last iteration to a checkpoint */
+    protected abstract void writeState(DataOutputStream out) throws IOException;
+
+    /**
+     * Restores the state of a run from a checkpoint, in place of initialize(). The
+     * statistics of the run, the constraint handler and the random number
+     * generator are restored afterwards, so it may use them.
+     */
+    protected abstract void readState(DataInputStream in) throws IOException;
+
+    /**
+     * Maps the state of the run onto a changed instance, and starts the
+     * statistics of a new run from it, in place of initialize()
+     *
+     * @param mapping Maps a knapsack over the items searched before the change
+     *                onto those searched after it, repairing it if it no longer fits
+     */
+    protected abstract void remap(UnaryOperator<int[]> mapping);
+
+    /**
+     * Writes a checkpoint to the path every so many iterations and/or every so
+     * many ms during the run, whichever comes first
+     *
+     * @param path       e.g. checkpoints/ga_default_01.ckpt
+     * @param iterations The iterations between checkpoints, or 0
+     * @param interval   The ms between checkpoints, or 0
+     */
+    public void setCheckpointing(Path path, int iterations, long interval) {
+        this.checkpointPath = path;
+        this.checkpointIterations = iterations;
+        this.checkpointInterval = interval;
+    }
+
+    /**
+     * Returns the highest value of the knapsack achieved by the algorithm, running
+     * it to the end
+     */
+    public final int run() {
+        if (!restored) {
+            start();
+        }
+        restored = false;
+        while (step(Long.MAX_VALUE)) {
+        }
+        return finish();
+    }
+
+    /** Starts a run with the random number generator of the current thread */
+    public final void start() {
+        randomGenerator = ProblemConfiguration.instance.getRandomGenerator();
+        finished = false;
+        numIterations = 0;
+        trace = null;
+        startConstraintHandling();
+        initialize();
+        startCheckpointing();
+    }
+
+    /**
+     * Restores a run from a checkpoint of the same configuration, on the random
+     * number generator of the current thread, so that the next step() or run()
+     * continues it
+     */
+    public final void restore(Path path) throws IOException {
+        randomGenerator = ProblemConfiguration.instance.getRandomGenerator();
+        finished = false;
+        trace = new Checkpoint.Trace(path);
+        Checkpoint.read(path, configuration, in -> {
+            setConstraintHandling(in.readUTF());
+            startConstraintHandling();
+            maximumIterations = in.readInt();
+            numIterations = in.readLong();
+            readState(in);
+            readStatistics(in);
+            constraintHandler.readState(in);
+            randomGenerator.readState(in);
+        });
+        restored = true;
+        startCheckpointing();
+    }
+
+    /**
+     * Applies a change to the instance after (or between the steps of) a run, and
+     * runs on from the run's state mapped onto the changed instance, with its
+     * iterations, statistics and report starting again. Returns the best value
+     * found on the changed instance.
+     */
+    public final int reoptimize(InstanceDelta delta) {
+        checkStarted();
+        resume();
+        return reoptimize(delta.apply());
+    }
+
+    /**
+     * Runs on from the run's state for other capacities (one per constraint), which
+     * only apply to the current thread, as reoptimize(InstanceDelta) does for a
+     * change to the instance. Several runs can so move through different
+     * capacities at the same time, e.g. in a capacity sweep.
+     */
+    public final int reoptimize(int[] capacities) {
+        checkStarted();
+        resume();
+        return reoptimize(InstanceDelta.applyThreadCapacities(capacities));
+    }
+
+    private void checkStarted() {
+        if (randomGenerator == null) {
+            throw new IllegalStateException("Only a run that has been started can be re-optimized");
+        }
+    }
+
+    /** Runs on from the run's state mapped onto the instance as it is now */
+    private int reoptimize(UnaryOperator<int[]> mapping) {
+        finished = false;
+        numIterations = 0;
+        trace = null;
+        remap(mapping);
+        startCheckpointing();
+        while (step(Long.MAX_VALUE)) {
+        }
+        return finish();
+    }
+
+    /** Writes a checkpoint of the run after the last iteration */
+    public final void saveCheckpoint(Path path) throws IOException {
+        if (trace == null || !trace.isFor(path)) {
+            trace = new Checkpoint.Trace(path);
+        }
+        Checkpoint.write(path, configuration, out -> {
+            out.writeUTF(constraintHandler.getName());
+            out.writeInt(maximumIterations);
+            out.writeLong(numIterations);
+            writeState(out);
+            writeStatistics(out);
+            constraintHandler.writeState(out);
+            randomGenerator.writeState(out);
+        });
+        lastCheckpointIteration = numIterations;
+        lastCheckpointTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Runs iterations until the given time has passed or the run is over, and
+     * returns true if there are iterations left
+     *
+     * @param maxTime The time in ns after which to yield
+     */
+    public final boolean step(long maxTime) {
+        if (finished) {
+            return false;
+        }
+        resume();
+        long startTime = System.nanoTime();
+        do {
+            if (!iterate()) {
+                finished = true;
+                return false;
+            }
+            numIterations++;
+            if (isCheckpointDue()) {
+                try {
+                    saveCheckpoint(checkpointPath);
+                } catch (IOException e) {
+                    // Keep running, and try again at the next checkpoint
+                    System.out.println("Could not write the checkpoint: " + e);
+                    lastCheckpointIteration = numIterations;
+                    lastCheckpointTime = System.currentTimeMillis();
+                }
+            }
+        } while (System.nanoTime() - startTime < maxTime);
+        return true;
+    }
+
+    /** Ends the run, and returns the best value found */
+    public final int finish() {
+        resume();
+        finished = true;
+        return end();
+    }
+
+    /** Returns true if the run has no iterations left */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /** Returns the iterations taken so far in the current run */
+    public long getNumberOfIterations() {
+        return numIterations;
+    }
+
+    /**
+     * Writes the best weight, value and knapsack of the first length iterations to
+     * the checkpoint being written, for the report. Only the iterations since the
+     * last checkpoint are actually written, to the trace file next to it.
+     */
+    protected void writeTrace(DataOutputStream out, int[] weights, int[] values, String[] knapsacks, int length)
+            throws IOException {
+        trace.write(out, weights, values, knapsacks, length);
+    }
+
+    /** Reads the entries written by writeTrace() into the start of the arrays */
+    protected void readTrace(DataInputStream in, int[] weights, int[] values, String[] knapsacks)
+            throws IOException {
+        trace.read(in, weights, values, knapsacks);
+    }
+
+    private void startCheckpointing() {
+        lastCheckpointIteration = numIterations;
+        lastCheckpointTime = System.currentTimeMillis();
+    }
+
+    private boolean isCheckpointDue() {
+        if (checkpointPath == null) {
+            return false;
+        }
+        return (checkpointIterations > 0 && numIterations - lastCheckpointIteration >= checkpointIterations)
+                || (checkpointInterval > 0 && System.currentTimeMillis() - lastCheckpointTime >= checkpointInterval);
+    }
+
+    /** Installs the run's random number generator and constraint handler on this thread */
+    private void resume() {
+        ProblemConfiguration.instance.setRandomGenerator(randomGenerator);
+        ProblemConfiguration.instance.setConstraintHandler(constraintHandler);
+    }
+}
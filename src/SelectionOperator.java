@@ -0,0 +1,81 @@
+/**
+ * The selection of parents for the genetic algorithm. The built-in selections
+ * are registered in OperatorRegistry under their method names.
+ */
+public interface SelectionOperator {
+    /**
+     * Prepares to select from the population for a generation, e.g. by computing
+     * the roulette wheel
+     *
+     * @param population The population, in descending order of fitness
+     */
+    default void prepare(Chromosome[] population) {
+    }
+
+    /** Selects a parent from the population passed to prepare() */
+    Chromosome select(Chromosome[] population);
+
+    /**
+     * Roulette-Wheel Selection ("RWS"): picks a parent with a probability in
+     * proportion to its fitness
+     */
+    public static final class RouletteWheel implements SelectionOperator {
+        // The cut off points of the roulette wheel e.g. [0.3, 0.32, 0.39, ..., 0.95,
+        // 1.0] means that individual 0 has a 0.3 chance of being selected, individual
+        // 1 has a 0.02 chance etc.
+        private double[] rouletteWheel;
+
+        @Override
+        public void prepare(Chromosome[] population) {
+            int totalFitness = 0;
+            for (int i = 0; i < population.length; i++) {
+                totalFitness += population[i].getFitness();
+            }
+            rouletteWheel = new double[population.length];
+            double sumOfProbabilities = 0;
+            for (int i = 0; i < population.length; i++) {
+                double probability = (double) population[i].getFitness() / totalFitness;
+                sumOfProbabilities += probability;
+                rouletteWheel[i] = sumOfProbabilities;
+            }
+        }
+
+        /**
+         * Picks a parent according to the probabilities in the roulette wheel
+         * Note: the roulette wheel sections are disjoint
+         */
+        @Override
+        public Chromosome select(Chromosome[] population) {
+            double selectionPoint = ProblemConfiguration.instance.getRandomGenerator().nextFloat();
+            for (int i = 0; i < rouletteWheel.length; i++) {
+                if (selectionPoint < rouletteWheel[i]) {
+                    return population[i];
+                }
+            }
+            // if we get here, the selection point must be 1 - so pick the last member of
+            // the population
+            return population[population.length - 1];
+        }
+    }
+
+    /**
+     * Tournament Selection ("TS"): picks the fittest of four random members of the
+     * population
+     */
+    public static final class Tournament implements SelectionOperator {
+        @Override
+        public Chromosome select(Chromosome[] population) {
+            // Select the first contender for the tournament
+            int best = ProblemConfiguration.instance.getRandomGenerator().nextInt(population.length);
+            for (int j = 0; j < 3; j++) {
+                // Test three contenders against the current best contender
+                int contender = ProblemConfiguration.instance.getRandomGenerator().nextInt(population.length);
+                if (population[contender].getFitness() > population[best].getFitness()) {
+                    best = contender;
+                }
+            }
+            // The winner of the tournament
+            return population[best];
+        }
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The best knapsack found so far by any of the algorithms in a portfolio (see
+ * PortfolioSolver), shared between the threads they run on without locking.
+ *
+ * The knapsack, its value and the configuration that found it are held together
+ * in an immutable snapshot, which is replaced by compare-and-set only when a
+ * better knapsack is offered, so reading it costs a single volatile read.
+ */
+public class SharedIncumbent {
+    private final AtomicReference<Solution> best = new AtomicReference<Solution>(new Solution(Integer.MIN_VALUE,
+            null, null));
+
+    /** A knapsack, its value and the configuration that found it */
+    public static class Solution {
+        private final int value;
+        private final int[] gene;
+        private final String source;
+
+        private Solution(int value, int[] gene, String source) {
+            this.value = value;
+            this.gene = gene;
+            this.source = source;
+        }
+
+        public int getValue() {
+            return value;
+        }
+
+        /** Returns a copy of the knapsack, which the caller may change */
+        public int[] getGene() {
+            return gene.clone();
+        }
+
+        public String getSource() {
+            return source;
+        }
+    }
+
+    /**
+     * Offers a feasible knapsack, which becomes the incumbent if it is better, and
+     * returns true if it did
+     *
+     * @param value  The value of the knapsack
+     * @param gene   The knapsack, which is copied if it is kept
+     * @param source The configuration that found it, e.g. "ga_default_01"
+     */
+    public boolean offer(int value, int[] gene, String source) {
+        Solution current = best.get();
+        if (value <= current.value) {
+            return false;
+        }
+        Solution offered = new Solution(value, gene.clone(), source);
+        while (!best.compareAndSet(current, offered)) {
+            current = best.get();
+            if (value <= current.value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the best knapsack offered so far, or null if none has been */
+    public Solution get() {
+        Solution current = best.get();
+        return current.gene == null ? null : current;
+    }
+
+    /** Returns the value of the best knapsack offered so far */
+    public int getValue() {
+        return best.get().value;
+    }
+}
@@ -1,15 +1,39 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
 /**
  * Class used for running a simulated annealing solution to the knapsack
  * problem, given the specified parameters of initial temperature and cooling
  * rate.
  */
-public class SimulatedAnnealing {
-    private String configuration;
+public class SimulatedAnnealing extends ResumableSolver {
+    private final static int MAX_ITERATIONS = 1000000;
+    private final static int REHEAT_STEPS = 3; // The least temperature steps left after a change to the instance
+
     private int initialTemperature;
     private double coolingRate;
 
     private final double MIN_TEMP = 1;
 
+    // The state of the current run
+    private KnapsackInstance items; // Read once per run, as are the capacities
+    private int[] capacities;
+    private double temperature;
+    private int[] knapsack;
+    private int[] totals; // The weight in each dimension of the current knapsack
+    private int value; // The value of the current knapsack
+    private int energy; // The energy of the current knapsack, until a move is accepted
+    private int[] bestKnapsack; // The best knapsack found so far
+    private int[] bestTotals;
+    private int bestValue;
+    private int numIterations;
+    private int[] bweights;
+    private int[] bvalues;
+    private String[] knapsacks;
+
     /**
      * Parametrized constructor for a Simulated Annealing instance with parameters
      * specified in the JSON files
@@ -19,85 +43,196 @@ public class SimulatedAnnealing {
      * @param coolingRate        e.g. 0.5
      */
     public SimulatedAnnealing(String configuration, int initialTemperature, double coolingRate) {
-        this.configuration = configuration;
+        super(configuration);
+        // SA stops when the temperature reaches the minimum, so it is only limited by
+        // the space for its statistics by default
+        this.maximumIterations = MAX_ITERATIONS;
         this.initialTemperature = initialTemperature;
         this.coolingRate = coolingRate;
     }
 
+    /** Starts with a random knapsack at the initial temperature */
+    protected void initialize() {
+        readInstance();
+        // Initialize the temperature
+        temperature = initialTemperature;
+
+        // Start with an initial random solution, or one of the best knapsacks of
+        // previous runs if there are any
+        int[][] elites = getWarmStart(EliteArchive.SIZE);
+        knapsack = elites.length > 0
+                ? elites[ProblemConfiguration.instance.getRandomGenerator().nextInt(elites.length)]
+                : generateRandomKnapsack();
+        // System.out.println("Initial solution: " + getValue(knapsack));
+        setCurrent(knapsack);
+        energy = getEnergy(knapsack, totals, value);
+
+        // To store the best knapsack found so far
+        setBest(knapsack);
+        startIterations();
+    }
+
     /**
-     * Returns the highest value of the knapsack achieved using SA with the given
-     * parameters
+     * Maps the current and best knapsacks onto the changed instance, and anneals
+     * on from the current one - reheated, if it has cooled too far, so that a few
+     * temperature steps are left
      */
-    public int run() {
+    protected void remap(UnaryOperator<int[]> mapping) {
+        readInstance();
+        setCurrent(mapping.apply(knapsack));
+        energy = getEnergy(knapsack, totals, value);
+        int[] best = mapping.apply(bestKnapsack);
+        setBest(value > getValue(best) ? knapsack : best);
+        temperature = Math.max(temperature, MIN_TEMP / Math.pow(coolingRate, REHEAT_STEPS));
+        startIterations();
+    }
+
+    /** Starts the statistics of a run from the best knapsack */
+    private void startIterations() {
         // To be used for statistics for report
-        long startTime = System.currentTimeMillis();
-        int maxIterations = 1000000;
-        int[] bweights = new int[maxIterations];
-        int[] bvalues = new int[maxIterations];
-        String[] knapsacks = new String[maxIterations];
+        startRun();
+        bweights = new int[maximumIterations];
+        bvalues = new int[maximumIterations];
+        knapsacks = new String[maximumIterations];
 
-        // Initialize the temperature
-        double temperature = initialTemperature;
+        bweights[0] = bestTotals[0];
+        bvalues[0] = bestValue;
+        recordValue(bvalues[0]);
+        knapsacks[0] = displayKnapsack(bestKnapsack);
 
-        // Start with an initial random solution
-        int[] knapsack = generateRandomKnapsack();
-        // System.out.println("Initial solution: " + getValue(knapsack));
-        bweights[0] = getWeight(knapsack);
-        bvalues[0] = getValue(knapsack);
-        knapsacks[0] = displayKnapsack(knapsack);
+        numIterations = 1; // To keep track of the number of iterations
+    }
 
-        // To store the best knapsack found so far
-        int[] bestKnapsack = knapsack;
-
-        int numIterations = 1; // To keep track of the number of iterations
-
-        // Stop the loop if the temperature is below the specified minimum
-        while (temperature > MIN_TEMP) {
-            // Generate a random neighbor solution by flipping a random bit
-            int[] neighbor = generateNeighbor(knapsack);
-
-            // Decide whether to accept or reject the neighbor based on the respective
-            // energies, and the probability acceptance funtion
-            int currentEnergy = getEnergy(knapsack);
-            int neighborEnergy = getEnergy(neighbor);
-            if (ProblemConfiguration.instance.randomGenerator.nextDouble() < acceptanceProbability(currentEnergy,
-                    neighborEnergy, temperature)) {
-                knapsack = neighbor;
+    /**
+     * Moves to a random neighbour or not, unless the temperature is below the
+     * specified minimum, the iteration budget is used up, or a termination
+     * criterion is met
+     */
+    protected boolean iterate() {
+        if (temperature <= MIN_TEMP || numIterations >= maximumIterations || shouldStop()) {
+            return false;
+        }
+        // Generate a random neighbor solution by flipping a random bit, updating the
+        // running totals for the bit unless the constraint handler replaced it
+        int item = ProblemConfiguration.instance.getRandomGenerator().nextInt(knapsack.length);
+        int[] flipped = generateNeighbor(knapsack, item);
+        int[] neighbor = constraintHandler.apply(flipped);
+        int[] neighborTotals;
+        int neighborValue;
+        if (neighbor == flipped) {
+            int sign = neighbor[item] == 1 ? 1 : -1;
+            neighborTotals = totals.clone();
+            for (int d = 0; d < neighborTotals.length; d++) {
+                neighborTotals[d] += sign * items.getWeight(d, item);
             }
+            neighborValue = value + sign * items.getValue(item);
+        } else {
+            neighborTotals = getTotals(neighbor);
+            neighborValue = getValue(neighbor);
+        }
 
-            // Update the current best solution if necessary
-            if (getValue(knapsack) > getValue(bestKnapsack)) {
-                bestKnapsack = knapsack;
-                // System.out.println(String.format("Temperature %.2f: W=%d V=%d", temperature,
-                // getWeight(knapsack),
-                // getValue(knapsack)));
-            }
+        // Decide whether to accept or reject the neighbor based on the respective
+        // energies, and the probability acceptance funtion
+        int neighborEnergy = getEnergy(neighbor, neighborTotals, neighborValue);
+        if (ProblemConfiguration.instance.getRandomGenerator().nextDouble() < acceptanceProbability(energy,
+                neighborEnergy, temperature)) {
+            knapsack = neighbor;
+            totals = neighborTotals;
+            value = neighborValue;
+            energy = neighborEnergy;
+        }
 
-            // Have 10000 iterations at each temperature
-            if (numIterations % 10000 == 0) {
-                temperature *= coolingRate;
-            }
+        // Update the current best solution if necessary, with the feasible knapsack
+        // the current one stands for
+        int[] candidate = constraintHandler.decode(knapsack);
+        int[] candidateTotals = candidate == knapsack ? totals : getTotals(candidate);
+        int candidateValue = candidate == knapsack ? value : getValue(candidate);
+        if (candidateValue > bestValue && isValid(candidateTotals)) {
+            bestKnapsack = candidate;
+            bestTotals = candidateTotals;
+            bestValue = candidateValue;
+            // System.out.println(String.format("Temperature %.2f: W=%d V=%d", temperature,
+            // getWeight(knapsack),
+            // getValue(knapsack)));
+        }
 
-            bweights[numIterations] = getWeight(bestKnapsack);
-            bvalues[numIterations] = getValue(bestKnapsack);
-            knapsacks[numIterations] = displayKnapsack(bestKnapsack);
+        // In a portfolio, share the best knapsack, and restart from a better one
+        // found by another algorithm
+        SharedIncumbent.Solution shared = exchangeIncumbent(bestKnapsack, bestValue);
+        if (shared != null) {
+            setCurrent(shared.getGene());
+            energy = getEnergy(knapsack, totals, value);
+            setBest(knapsack);
+        }
 
-            numIterations += 1;
+        // Have 10000 iterations at each temperature
+        if (numIterations % 10000 == 0) {
+            temperature *= coolingRate;
         }
-        numIterations -= 1; // We stopped before conducting that last iteration
+
+        bweights[numIterations] = bestTotals[0];
+        bvalues[numIterations] = bestValue;
+        recordValue(bvalues[numIterations]);
+        knapsacks[numIterations] = displayKnapsack(bestKnapsack);
+
+        numIterations += 1;
+        return true;
+    }
+
+    /** Writes the temperature, the current and best knapsacks and the statistics so far */
+    protected void writeState(DataOutputStream out) throws IOException {
+        out.writeDouble(temperature);
+        out.writeInt(numIterations);
+        Checkpoint.writeGene(out, knapsack);
+        out.writeInt(energy);
+        Checkpoint.writeGene(out, bestKnapsack);
+        writeTrace(out, bweights, bvalues, knapsacks, numIterations);
+    }
+
+    /** Restores the temperature, the current and best knapsacks and the statistics so far */
+    protected void readState(DataInputStream in) throws IOException {
+        readInstance();
+        temperature = in.readDouble();
+        numIterations = in.readInt();
+        setCurrent(Checkpoint.readGene(in));
+        energy = in.readInt();
+        setBest(Checkpoint.readGene(in));
+        bweights = new int[maximumIterations];
+        bvalues = new int[maximumIterations];
+        knapsacks = new String[maximumIterations];
+        readTrace(in, bweights, bvalues, knapsacks);
+    }
+
+    /** Reports on the iterations that were run, and returns the best value */
+    protected int end() {
+        int numIterations = this.numIterations - 1; // We stopped before conducting that last iteration
 
         // To be used for statistics for report
-        long endTime = System.currentTimeMillis();
-        long runtime = endTime - startTime;
+        endRun();
+        long runtime = getRuntime();
         String params = String.format("SA | #%d | Initial Temperature = %d | Cooling Rate = %.1f", numIterations,
                 initialTemperature, coolingRate);
-
-        String report = ReportGenerator.generateReport(configuration, params, bweights, bvalues, knapsacks, runtime,
-                numIterations);
-        ReportGenerator.writeToFile(report, configuration);
+        if (getStopReason() != null) {
+            params += " | stopped: " + getStopReason();
+        }
+        if (numIterations + 1 < bweights.length) {
+            // Only report on the iterations that were run
+            bweights = Arrays.copyOf(bweights, numIterations + 1);
+            bvalues = Arrays.copyOf(bvalues, numIterations + 1);
+            knapsacks = Arrays.copyOf(knapsacks, numIterations + 1);
+        }
 
         int maxValue = getValue(bestKnapsack);
-        System.out.println(configuration + ": " + maxValue);
+        archiveBest(bestKnapsack);
+        if (reporting) {
+            // A run that starts at the upper bound, e.g. from the elite archive, stops
+            // before its first iteration, so report on its initial knapsack
+            String report = ReportGenerator.generateReport(configuration, params, bweights, bvalues, knapsacks,
+                    runtime, Math.max(1, numIterations), constraintHandler.getStatistics());
+            ReportGenerator.writeToFile(report, configuration);
+
+            System.out.println(configuration + ": " + maxValue);
+        }
 
         return maxValue;
     }
@@ -117,46 +252,68 @@ public class SimulatedAnnealing {
     }
 
     /**
-     * Returns the 'energy' of the knapsack for the algorithm - 0 if it is
-     * overweight, else return the value of the knapsack
+     * Returns the 'energy' of the knapsack for the algorithm - the value of the
+     * knapsack, or if it is overweight, as decided by the constraint handler (0
+     * by default) - from its running totals and value
      */
-    private int getEnergy(int[] knapsack) {
-        // Energy of the knapsack must be 0 if it is overweight
-        if (!isValid(knapsack)) {
-            return 0;
-        }
-        return getValue(knapsack);
+    private int getEnergy(int[] knapsack, int[] totals, int value) {
+        return constraintHandler.evaluate(knapsack, value, totals, capacities);
+    }
+
+    /** Reads the instance and capacities solved by the current thread for the run */
+    private void readInstance() {
+        items = ProblemConfiguration.instance.getKnapsackItems();
+        capacities = ProblemConfiguration.instance.getCapacities();
+    }
+
+    /** Makes the knapsack the current one, with its running totals */
+    private void setCurrent(int[] newKnapsack) {
+        knapsack = newKnapsack;
+        totals = getTotals(knapsack);
+        value = getValue(knapsack);
+    }
 
+    /** Makes the knapsack the best one, with its totals */
+    private void setBest(int[] newBest) {
+        bestKnapsack = newBest;
+        bestTotals = getTotals(bestKnapsack);
+        bestValue = getValue(bestKnapsack);
     }
 
-    /** Gets the weight of the knapsack */
-    private int getWeight(int[] knapsack) {
-        int sum = 0;
+    /** Gets the weight of the knapsack in each dimension */
+    private int[] getTotals(int[] knapsack) {
+        int[] sums = items.getFixedWeights();
         for (int i = 0; i < knapsack.length; i++) {
             // knapsack[i] is either 1 or 0 depending on whether the item is in the knapsack
-            // or
-            // not - hence, we only add its weight if knapsack[i] == 1
-            sum += knapsack[i] * ProblemConfiguration.instance.knapsackItems.getWeight(i);
+            // or not - hence, we only add its weights if knapsack[i] == 1
+            if (knapsack[i] == 1) {
+                items.addItem(sums, i);
+            }
         }
-        return sum;
+        return sums;
     }
 
     /**
-     * Returns true if the weight of the knapsack is less than or equal to the
-     * maximum capacity, else returns false
+     * Returns true if the weights of a knapsack are less than or equal to the
+     * maximum capacity in every dimension, else returns false
      */
-    private boolean isValid(int[] knapsack) {
-        return getWeight(knapsack) <= ProblemConfiguration.instance.maximumCapacity;
+    private boolean isValid(int[] totals) {
+        for (int d = 0; d < totals.length; d++) {
+            if (totals[d] > capacities[d]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /** Gets the value of the knapsack */
     private int getValue(int[] knapsack) {
-        int sum = 0;
+        int sum = items.getFixedValue();
         for (int i = 0; i < knapsack.length; i++) {
             // knapsack[i] is either 1 or 0 depending on whether the item is in the knapsack
             // or
             // not - hence, we only add its value if knapsack[i] == 1
-            sum += knapsack[i] * ProblemConfiguration.instance.knapsackItems.getValue(i);
+            sum += knapsack[i] * items.getValue(i);
         }
         return sum;
     }
@@ -166,33 +323,61 @@ public class SimulatedAnnealing {
      * stopping just before the knapsack becomes overweight
      */
     private int[] generateRandomKnapsack() {
-        int[] knapsack = new int[150];
-        int total_weight = 0;
+        int[] knapsack = new int[items.size()];
+        if (items.getNumConstraints() > 1) {
+            return generateRandomMultiDimensionalKnapsack(knapsack);
+        }
+        int capacity = capacities[0];
+        int total_weight = items.getFixedWeight();
+        int num_items = 0;
         // Keep adding items to the knapsack while the current weight is less than the
-        // maximum capacity
-        while (total_weight < ProblemConfiguration.instance.maximumCapacity) {
-            int random_item = ProblemConfiguration.instance.randomGenerator.nextInt(150);
+        // maximum capacity (and there are items left to add)
+        while (total_weight < capacity && num_items < knapsack.length) {
+            int random_item = ProblemConfiguration.instance.getRandomGenerator().nextInt(knapsack.length);
             if (knapsack[random_item] == 1) {
                 continue; // i.e. if the item is already in the knapsack, pick a different one.
             }
-            int weight = ProblemConfiguration.instance.knapsackItems.getWeight(random_item);
-            if (total_weight + weight > ProblemConfiguration.instance.maximumCapacity) {
+            int weight = items.getWeight(random_item);
+            if (total_weight + weight > capacity) {
                 // if adding this item will make the knapsack overweight, then end the loop and
                 // use the current knapsack configuration as the random chromosome
                 break;
             }
             knapsack[random_item] = 1;
             total_weight += weight;
+            num_items++;
+        }
+        return knapsack;
+    }
+
+    /**
+     * Randomly adds items to the (empty) knapsack on a multi-dimensional instance,
+     * keeping a running total per dimension and stopping just before any
+     * constraint is exceeded
+     */
+    private int[] generateRandomMultiDimensionalKnapsack(int[] knapsack) {
+        int[] totals = items.getFixedWeights();
+        int num_items = 0;
+        while (num_items < knapsack.length) {
+            int random_item = ProblemConfiguration.instance.getRandomGenerator().nextInt(knapsack.length);
+            if (knapsack[random_item] == 1) {
+                continue; // i.e. if the item is already in the knapsack, pick a different one.
+            }
+            if (!items.fits(totals, random_item, capacities)) {
+                break;
+            }
+            knapsack[random_item] = 1;
+            items.addItem(totals, random_item);
+            num_items++;
         }
         return knapsack;
     }
 
-    /** Generates a random neighbour knapsack based on flipping a random bit */
-    private int[] generateNeighbor(int[] knapsack) {
+    /** Generates a neighbour knapsack by flipping the bit of the given item */
+    private int[] generateNeighbor(int[] knapsack, int item) {
         int[] neighbor = new int[knapsack.length];
-        int randomItem = ProblemConfiguration.instance.randomGenerator.nextInt(150);
         System.arraycopy(knapsack, 0, neighbor, 0, knapsack.length);
-        neighbor[randomItem] = neighbor[randomItem] == 1 ? 0 : 1;
+        neighbor[item] = neighbor[item] == 1 ? 0 : 1;
         return neighbor;
     }
 
@@ -201,7 +386,7 @@ public class SimulatedAnnealing {
      */
     public String displayKnapsack(int[] knapsack) {
         String s = "[";
-        int limit = 26;
+        int limit = Math.min(26, knapsack.length);
         for (int i = 0; i < limit; i++) {
             s += knapsack[i];
         }
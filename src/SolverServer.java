@@ -0,0 +1,563 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps a JVM running and solves requests sent over a local socket, so that a
+ * request costs about the time of the run alone, without the start-up of a new
+ * JVM, reading the instance and warming up the JIT compiler every time.
+ *
+ * The server listens on a TCP port of the loopback address, or on a Unix domain
+ * socket, and reads one JSON object per line, e.g.
+ *
+ * {"id":"1","configuration":"ga_best","capacities":"822","seed":"42","time_limit":"2000"}
+ *
+ * and answers each with one line, in the order the requests finish, e.g.
+ *
+ * {"id":"1","configuration":"ga_best","value":1143,"weights":[822],"items":[8,10,11,...],"ms":41}
+ *
+ * or {"id":"1","error":"..."}. Every field of a request is optional except the
+ * configuration: the instance (a csv file, which is read once and kept until the
+ * file changes) and the capacities default to those the server was started with,
+ * and iterations, time_limit (ms), stall, target, constraint_handling and
+ * preprocess override those of the configuration. A request may also be a
+ * command: {"command":"ping"} or {"command":"shutdown"}.
+ *
+ * The requests are solved on a fixed pool of worker threads with a bounded queue,
+ * and a request that arrives when the queue is full is answered with an error
+ * straight away. Each worker solves its request's instance on its own (see
+ * ProblemConfiguration.setThreadInstance()), so requests for different instances
+ * and capacities run at the same time.
+ */
+public class SolverServer {
+    public final static int DEFAULT_PORT = 7070;
+    // The memetic GA of the README, for the check in main()
+    private final static String MEMETIC_CONFIGURATION = "{\"selection\":\"RWS\",\"configuration\":\"ga_memetic\","
+            + "\"mutation_ratio\":\"0.005\",\"crossover_ratio\":\"0.7\",\"crossover\":\"1PX\","
+            + "\"mutation\":\"BFM\",\"memetic_ratio\":\"0.25\"}\n";
+
+    private final String address; // A port number, or the path of a Unix domain socket
+    private final ThreadPoolExecutor workers;
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+    // The instances read so far, by their absolute paths
+    private final Map<Path, CachedInstance> instances = new ConcurrentHashMap<Path, CachedInstance>();
+    private final AtomicInteger numRequests = new AtomicInteger();
+    private final long seed = System.currentTimeMillis(); // For the requests without one
+    private volatile ServerSocketChannel server;
+
+    /** An instance read from a csv file, and when the file was last changed */
+    private static class CachedInstance {
+        final long modified;
+        final KnapsackInstance items;
+
+        CachedInstance(long modified, KnapsackInstance items) {
+            this.modified = modified;
+            this.items = items;
+        }
+    }
+
+    /**
+     * @param address    A port on the loopback address, e.g. "7070", or the path
+     *                   of a Unix domain socket, e.g. "/tmp/knapsack.sock"
+     * @param numThreads The number of requests solved at the same time
+     * @param queueSize  The most requests waiting for a worker
+     */
+    public SolverServer(String address, int numThreads, int queueSize) {
+        this.address = address;
+        this.workers = new ThreadPoolExecutor(numThreads, numThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize));
+    }
+
+    /**
+     * Accepts connections until a shutdown command is received, and then waits for
+     * the requests already taken to be answered before closing the connections
+     */
+    public void run() throws IOException {
+        Path socketPath = null;
+        if (address.matches("\\d+")) {
+            server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address)));
+        } else {
+            socketPath = Paths.get(address);
+            Files.deleteIfExists(socketPath); // Left behind by a server that was killed
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+        }
+        System.out.println("Listening on " + server.getLocalAddress() + " with " + workers.getCorePoolSize()
+                + " workers");
+        try {
+            while (true) {
+                SocketChannel channel;
+                try {
+                    channel = server.accept();
+                } catch (IOException e) {
+                    if (!server.isOpen()) {
+                        break; // Shut down
+                    }
+                    throw e;
+                }
+                connections.execute(() -> serve(channel));
+            }
+        } finally {
+            workers.shutdown();
+            try {
+                while (!workers.awaitTermination(1, TimeUnit.SECONDS)) {
+                    // Still solving
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // Every answer has been written: stop the connections still waiting for requests
+            connections.shutdownNow();
+            if (socketPath != null) {
+                Files.deleteIfExists(socketPath);
+            }
+        }
+    }
+
+    /** Reads the requests of a connection, and hands them to the workers */
+    private void serve(SocketChannel channel) {
+        // Read from the channel directly: the streams of Channels.newInputStream() and
+        // newOutputStream() share a lock, so a read waiting for the next request would
+        // hold up the answers to the previous ones
+        InputStream input = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int offset, int length) throws IOException {
+                return length == 0 ? 0 : channel.read(ByteBuffer.wrap(b, offset, length));
+            }
+        };
+        try (SocketChannel connection = channel;
+                BufferedReader in = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            AtomicInteger pending = new AtomicInteger(); // The requests not answered yet
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                Map<String, String> request;
+                try {
+                    request = parseRequest(line);
+                } catch (IllegalArgumentException e) {
+                    respond(connection, error(null, e.getMessage()));
+                    continue;
+                }
+                String command = request.get("command");
+                if ("ping".equals(command)) {
+                    respond(connection, "{" + field("id", request.get("id")) + "\"ok\":true}");
+                } else if ("shutdown".equals(command)) {
+                    respond(connection, "{" + field("id", request.get("id")) + "\"ok\":true}");
+                    server.close(); // Stops accepting, and run() then lets the workers finish
+                    break;
+                } else if (command != null) {
+                    respond(connection, error(request.get("id"), "Unknown command: " + command));
+                } else {
+                    pending.incrementAndGet();
+                    try {
+                        workers.execute(() -> {
+                            try {
+                                respond(connection, solve(request));
+                            } catch (Error e) {
+                                respond(connection, error(request.get("id"), e.toString()));
+                                throw e;
+                            } finally {
+                                pending.decrementAndGet();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        pending.decrementAndGet();
+                        respond(connection, error(request.get("id"), workers.isShutdown() ? "Shutting down"
+                                : "Busy: " + workers.getQueue().size() + " requests are already waiting"));
+                    }
+                }
+            }
+            // Wait for the connection's requests to be answered before closing it
+            while (pending.get() > 0) {
+                Thread.sleep(10);
+            }
+        } catch (IOException | InterruptedException e) {
+            // The client has gone, and its answers with it
+        }
+    }
+
+    /** Writes one line of an answer, whole, even if several workers answer at once */
+    private static void respond(SocketChannel out, String answer) {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(answer + "\n");
+        synchronized (out) {
+            try {
+                while (bytes.hasRemaining()) {
+                    out.write(bytes);
+                }
+            } catch (IOException e) {
+                // The client has gone
+            }
+        }
+    }
+
+    /** Solves a request on the current worker thread, and returns the answer */
+    private String solve(Map<String, String> request) {
+        String id = request.get("id");
+        String configuration = request.get("configuration");
+        if (configuration == null) {
+            return error(id, "The request has no configuration");
+        }
+        configuration = configuration.replace(".json", "");
+        ProblemConfiguration problem = ProblemConfiguration.instance;
+        try {
+            KnapsackInstance items = getInstance(request.get("instance"));
+            int[] capacities = request.containsKey("capacities") ? parseInts(request.get("capacities"))
+                    : problem.getCapacities();
+            boolean preprocess = Boolean.parseBoolean(
+                    request.getOrDefault("preprocess", String.valueOf(problem.isPreprocessed())));
+            problem.setThreadInstance(items, capacities, preprocess);
+            long requestSeed = request.containsKey("seed") ? Long.parseLong(request.get("seed")) : seed;
+            problem.setRandomGenerator(ProblemConfiguration.createRandomGenerator(requestSeed,
+                    request.containsKey("seed") ? 0 : numRequests.incrementAndGet()));
+
+            KnapsackSolver solver = Application.createSolver(configuration);
+            if (solver == null) {
+                return error(id, "Unknown configuration: " + configuration);
+            }
+            solver.setReporting(false);
+            if (request.containsKey("iterations")) {
+                solver.setMaximumIterations(Integer.parseInt(request.get("iterations")));
+            }
+            if (request.containsKey("constraint_handling")) {
+                solver.setConstraintHandling(request.get("constraint_handling").toUpperCase());
+            }
+            if (request.containsKey("time_limit") || request.containsKey("stall") || request.containsKey("target")) {
+                solver.setTerminationCriteria(new TerminationCriteria(true,
+                        Integer.parseInt(request.getOrDefault("stall", "0")),
+                        Long.parseLong(request.getOrDefault("time_limit", "0")),
+                        Integer.parseInt(request.getOrDefault("target", "0"))));
+            }
+            // The best knapsack of the run is read back from an incumbent of its own
+            SharedIncumbent incumbent = new SharedIncumbent();
+            solver.setIncumbent(incumbent);
+
+            int value = solver.run();
+            SharedIncumbent.Solution best = incumbent.get();
+            int[] gene = best != null ? problem.getKnapsackItems().expand(best.getGene()) : new int[items.size()];
+            return answer(id, configuration, value, items, gene, solver);
+        } catch (IllegalArgumentException | IOException e) {
+            return error(id, e.getMessage());
+        } catch (RuntimeException e) {
+            return error(id, e.toString());
+        } finally {
+            problem.setThreadInstance(null, null, false);
+        }
+    }
+
+    /**
+     * Returns the instance in a csv file, read only the first time it is asked
+     * for or after the file has changed, or the server's instance if path is null
+     */
+    private KnapsackInstance getInstance(String path) throws IOException {
+        if (path == null) {
+            return ProblemConfiguration.instance.getFullKnapsackItems();
+        }
+        Path file = Paths.get(path).toAbsolutePath().normalize();
+        if (!Files.isRegularFile(file)) {
+            throw new IOException("No instance at " + path);
+        }
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        CachedInstance cached = instances.get(file);
+        if (cached == null || cached.modified != modified) {
+            cached = new CachedInstance(modified, new KnapsackInstance(file.toString()));
+            instances.put(file, cached);
+        }
+        return cached.items;
+    }
+
+    private static String answer(String id, String configuration, int value, KnapsackInstance items, int[] gene,
+            KnapsackSolver solver) {
+        StringBuilder weights = new StringBuilder();
+        for (int d = 0; d < items.getNumConstraints(); d++) {
+            int weight = 0;
+            for (int i = 0; i < gene.length; i++) {
+                weight += gene[i] * items.getWeight(d, i);
+            }
+            weights.append(d > 0 ? "," : "").append(weight);
+        }
+        StringBuilder ids = new StringBuilder();
+        for (int i = 0; i < gene.length; i++) {
+            if (gene[i] == 1) {
+                ids.append(ids.length() > 0 ? "," : "").append(items.getId(i));
+            }
+        }
+        StringBuilder answer = new StringBuilder("{");
+        answer.append(field("id", id)).append(field("configuration", configuration));
+        answer.append("\"value\":").append(value);
+        answer.append(",\"weights\":[").append(weights).append("],\"items\":[").append(ids).append("]");
+        if (solver instanceof ResumableSolver) {
+            answer.append(",\"iterations\":").append(((ResumableSolver) solver).getNumberOfIterations());
+        }
+        answer.append(",\"ms\":").append(solver.getRuntime());
+        if (solver.getStopReason() != null) {
+            answer.append(",\"stop_reason\":").append(quote(solver.getStopReason()));
+        }
+        return answer.append("}").toString();
+    }
+
+    private static String error(String id, String message) {
+        return "{" + field("id", id) + "\"error\":" + quote(message) + "}";
+    }
+
+    /** Returns "key":"value", followed by a comma, or nothing if value is null */
+    private static String field(String key, String value) {
+        return value == null ? "" : quote(key) + ":" + quote(value) + ",";
+    }
+
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : String.valueOf(text).toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < ' ') {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static int[] parseInts(String text) {
+        String[] values = text.split(",");
+        int[] ints = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ints[i] = Integer.parseInt(values[i].trim());
+        }
+        return ints;
+    }
+
+    /**
+     * Parses a request: a JSON object whose values are strings, numbers, booleans
+     * or null, e.g. {"id":"1","seed":42}, into its keys and values as text
+     */
+    static Map<String, String> parseRequest(String line) {
+        Map<String, String> request = new LinkedHashMap<String, String>();
+        int[] position = { skipSpaces(line, 0) };
+        expect(line, position, '{');
+        if (peek(line, position) == '}') {
+            return request;
+        }
+        while (true) {
+            String key = parseString(line, position);
+            expect(line, position, ':');
+            String value;
+            if (peek(line, position) == '"') {
+                value = parseString(line, position);
+            } else {
+                int start = position[0];
+                while (position[0] < line.length() && ",} \t".indexOf(line.charAt(position[0])) < 0) {
+                    position[0]++;
+                }
+                value = line.substring(start, position[0]);
+                if (value.isEmpty() || value.equals("[") || value.startsWith("{")) {
+                    throw new IllegalArgumentException("Only strings, numbers and booleans are accepted for " + key);
+                }
+                position[0] = skipSpaces(line, position[0]);
+            }
+            if (!value.equals("null")) {
+                request.put(key, value);
+            }
+            if (peek(line, position) == ',') {
+                position[0]++;
+                continue;
+            }
+            expect(line, position, '}');
+            return request;
+        }
+    }
+
+    private static String parseString(String line, int[] position) {
+        expect(line, position, '"');
+        StringBuilder text = new StringBuilder();
+        while (true) {
+            if (position[0] >= line.length()) {
+                throw new IllegalArgumentException("Unterminated string in the request");
+            }
+            char c = line.charAt(position[0]++);
+            if (c == '"') {
+                break;
+            }
+            if (c == '\\' && position[0] < line.length()) {
+                char escaped = line.charAt(position[0]++);
+                if (escaped == 'u' && position[0] + 4 <= line.length()) {
+                    c = (char) Integer.parseInt(line.substring(position[0], position[0] + 4), 16);
+                    position[0] += 4;
+                } else {
+                    c = escaped == 'n' ? '\n' : escaped == 't' ? '\t' : escaped;
+                }
+            }
+            text.append(c);
+        }
+        position[0] = skipSpaces(line, position[0]);
+        return text.toString();
+    }
+
+    private static char peek(String line, int[] position) {
+        if (position[0] >= line.length()) {
+            throw new IllegalArgumentException("The request is not a complete JSON object");
+        }
+        return line.charAt(position[0]);
+    }
+
+    private static void expect(String line, int[] position, char c) {
+        if (peek(line, position) != c) {
+            throw new IllegalArgumentException("Expected '" + c + "' at " + position[0] + " of the request");
+        }
+        position[0] = skipSpaces(line, position[0] + 1);
+    }
+
+    private static int skipSpaces(String line, int position) {
+        while (position < line.length() && Character.isWhitespace(line.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Used for testing purposes: solves two different instances at the same time
+     * through a server on a free port - the default instance, and a random one of
+     * 60 items with a capacity of 300 - and checks that each answer is an optimal
+     * knapsack of its own instance, as both are small enough to be solved within
+     * the iterations. The configuration defaults to ga_memetic (the memetic GA of
+     * the README, written to the GA configurations for the check if it is not
+     * there), so that the local searches on the common pool are checked too.
+     * Exits with status 1 if an answer is not optimal.
+     */
+    public static void main(String[] args) throws Exception {
+        String configuration = args.length > 0 ? args[0] : "ga_memetic";
+        Path memeticPath = null;
+        if (args.length == 0) {
+            Path path = Paths.get(Application.getConfigurationPath("ga"), configuration + ".json");
+            if (!Files.exists(path)) {
+                Files.createDirectories(path.getParent());
+                Files.write(path, MEMETIC_CONFIGURATION.getBytes(StandardCharsets.UTF_8));
+                memeticPath = path;
+            }
+        }
+        Random random = new Random(42);
+        int[] weights = new int[60];
+        int[] values = new int[60];
+        List<String> lines = new ArrayList<String>();
+        lines.add("#;weight;value");
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = 5 + random.nextInt(30);
+            values[i] = 1 + random.nextInt(40);
+            lines.add((i + 1) + ";" + weights[i] + ";" + values[i]);
+        }
+        Path randomPath = Files.createTempFile("knapsack_random", ".csv");
+        Files.write(randomPath, lines);
+        String defaultPath = "data/knapsack_instance.csv";
+        KnapsackInstance defaultItems = new KnapsackInstance(defaultPath);
+        KnapsackInstance randomItems = new KnapsackInstance(randomPath.toString());
+
+        SolverServer solverServer = new SolverServer("0", 2, 4);
+        Thread serverThread = new Thread(() -> {
+            try {
+                solverServer.run();
+            } catch (IOException e) {
+                System.out.println(e);
+            }
+        });
+        serverThread.start();
+        while (solverServer.server == null || solverServer.server.getLocalAddress() == null) {
+            Thread.sleep(10);
+        }
+        InetSocketAddress address = (InetSocketAddress) solverServer.server.getLocalAddress();
+
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        Future<String> first = clients.submit(() -> request(address, "{\"id\":\"default\",\"configuration\":\""
+                + configuration + "\",\"instance\":\"" + defaultPath + "\",\"capacities\":\""
+                + ProblemConfiguration.instance.getMaximumCapacity() + "\",\"iterations\":\"200\"}"));
+        Future<String> second = clients.submit(() -> request(address, "{\"id\":\"random\",\"configuration\":\""
+                + configuration + "\",\"instance\":\"" + randomPath + "\",\"capacities\":\"300\","
+                + "\"iterations\":\"200\"}"));
+        boolean optimal = check(first.get(), defaultItems, ProblemConfiguration.instance.getMaximumCapacity())
+                & check(second.get(), randomItems, 300);
+        clients.shutdown();
+        request(address, "{\"command\":\"shutdown\"}");
+        serverThread.join();
+        Files.delete(randomPath);
+        if (memeticPath != null) {
+            Files.delete(memeticPath);
+        }
+        System.out.println(optimal ? "Both answers are optimal" : "An answer is not optimal");
+        if (!optimal) {
+            System.exit(1);
+        }
+    }
+
+    /** Sends one request on a connection of its own, and returns the answer */
+    private static String request(InetSocketAddress address, String request) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(address);
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8))) {
+            channel.write(StandardCharsets.UTF_8.encode(request + "\n"));
+            return in.readLine();
+        }
+    }
+
+    /**
+     * Prints an answer, and returns whether its items fit the capacity, add up to
+     * its weight and value in the given instance, and are optimal
+     */
+    private static boolean check(String answer, KnapsackInstance items, int capacity) {
+        System.out.println(answer);
+        Matcher matcher = Pattern.compile("\"value\":(\\d+),\"weights\":\\[(\\d+)\\],\"items\":\\[([\\d,]*)\\]")
+                .matcher(answer);
+        if (!matcher.find()) {
+            return false;
+        }
+        int weight = 0;
+        int value = 0;
+        for (String id : matcher.group(3).split(",")) {
+            for (int i = 0; !id.isEmpty() && i < items.size(); i++) {
+                if (items.getId(i) == Integer.parseInt(id)) {
+                    weight += items.getWeight(i);
+                    value += items.getValue(i);
+                }
+            }
+        }
+        return weight <= capacity && weight == Integer.parseInt(matcher.group(2))
+                && value == Integer.parseInt(matcher.group(1))
+                && value == DynamicProgramming.getOptimalValue(items, capacity);
+    }
+}
@@ -0,0 +1,396 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Class used for running a tabu search solution to the knapsack problem, given
+ * the specified parameters of tabu tenure and whether to use swap moves.
+ *
+ * Every iteration moves to the best neighbour of the current (always feasible)
+ * knapsack, even if it is worse, where a neighbour adds an item, drops an item
+ * or swaps an item in the knapsack for one outside it. The weight in each
+ * dimension and the value of the current knapsack are kept as running totals,
+ * so each move is evaluated in constant time per dimension.
+ *
+ * To stop the search from cycling, a move is tabu if it would undo a recent move
+ * - the item added (or dropped) cannot be dropped (or added) again until its
+ * expiry iteration, held in primitive arrays - or if it would return to a
+ * recently visited knapsack, looked up by its Zobrist hash in a fixed-size hash
+ * table. A tabu move is still allowed if it finds a new best knapsack
+ * (aspiration).
+ *
+ * For large instances the scan for the best neighbour is split over the items
+ * and run in parallel, with ties broken the same way as the sequential scan so
+ * that the search follows the same path.
+ */
+public class TabuSearch extends KnapsackSolver {
+    // The scan for the best neighbour is parallel from this many items
+    private final static int PARALLEL_THRESHOLD = 512;
+    private final static int NUM_CHUNKS = 64;
+
+    // The size of the table of hashes of recently visited knapsacks (a power of 2)
+    private final static int MEMORY_SIZE = 1 << 16;
+
+    private int tabuTenure;
+    private boolean swapMoves;
+
+    // The state of the current run
+    private KnapsackInstance items;
+    private int[] capacities;
+    private int[] knapsack;
+    private int[] totals; // The weight in each dimension of the current knapsack
+    private int value;
+    private int bestKnapsackValue; // The value of the best knapsack found so far
+    private int[] addTabuUntil; // The iteration until which adding each item is tabu
+    private int[] dropTabuUntil; // The iteration until which dropping each item is tabu
+    private long[] zobristKeys;
+    private long hash; // The Zobrist hash of the current knapsack
+    private long[] memory; // Hashes of recently visited knapsacks
+    private long numMoves; // The number of moves evaluated
+
+    /**
+     * Parametrized constructor for a Tabu Search instance with parameters
+     * specified in the JSON files
+     *
+     * @param configuration e.g. "ts_default_01"
+     * @param tabuTenure    The number of iterations a reversed move stays tabu,
+     *                      e.g. 10
+     * @param swapMoves     Whether to search swap moves as well as adding and
+     *                      dropping items
+     */
+    public TabuSearch(String configuration, int tabuTenure, boolean swapMoves) {
+        super(configuration);
+        this.tabuTenure = tabuTenure;
+        this.swapMoves = swapMoves;
+    }
+
+    /**
+     * Returns the highest value of the knapsack achieved using tabu search with the
+     * given parameters
+     */
+    public int run() {
+        // To be used for statistics for report
+        startConstraintHandling();
+        startRun();
+        int maxIterations = maximumIterations;
+        int[] bweights = new int[maxIterations];
+        int[] bvalues = new int[maxIterations];
+        String[] knapsacks = new String[maxIterations];
+
+        initialize();
+        int[] bestKnapsack = knapsack.clone();
+        bestKnapsackValue = value;
+        bweights[0] = getWeight(bestKnapsack);
+        bvalues[0] = bestKnapsackValue;
+        recordValue(bvalues[0]);
+        knapsacks[0] = displayKnapsack(bestKnapsack);
+
+        int numIterations = 1;
+        while (numIterations < maxIterations && !shouldStop()) {
+            Move move = findBestMove(numIterations);
+            if (move == null) {
+                break; // No items and no moves, e.g. every item was fixed by preprocessing
+            }
+            applyMove(move, numIterations);
+            if (value > bestKnapsackValue) {
+                bestKnapsackValue = value;
+                bestKnapsack = knapsack.clone();
+            }
+            // In a portfolio, share the best knapsack, and move to a better one found by
+            // another algorithm
+            SharedIncumbent.Solution shared = exchangeIncumbent(bestKnapsack, bestKnapsackValue);
+            if (shared != null) {
+                moveTo(shared.getGene());
+                bestKnapsackValue = value;
+                bestKnapsack = knapsack.clone();
+            }
+
+            bweights[numIterations] = getWeight(bestKnapsack);
+            bvalues[numIterations] = bestKnapsackValue;
+            recordValue(bvalues[numIterations]);
+            knapsacks[numIterations] = displayKnapsack(bestKnapsack);
+
+            numIterations += 1;
+        }
+        numIterations -= 1; // We stopped before conducting that last iteration
+
+        endRun();
+        long runtime = getRuntime();
+        String params = String.format("TS | #%d | Tabu Tenure = %d | Swap Moves = %b", numIterations, tabuTenure,
+                swapMoves);
+        if (numIterations + 1 < maxIterations) {
+            // Only report on the iterations that were run
+            if (getStopReason() != null) {
+                params += " | stopped: " + getStopReason();
+            }
+            bweights = Arrays.copyOf(bweights, numIterations + 1);
+            bvalues = Arrays.copyOf(bvalues, numIterations + 1);
+            knapsacks = Arrays.copyOf(knapsacks, numIterations + 1);
+        }
+
+        if (reporting) {
+            String moves = String.format("Moves evaluated: %d | %.0f k moves/s", numMoves,
+                    runtime == 0 ? 0 : numMoves / (double) runtime);
+            String report = ReportGenerator.generateReport(configuration, params, bweights, bvalues, knapsacks,
+                    runtime, numIterations, moves);
+            ReportGenerator.writeToFile(report, configuration);
+
+            System.out.println(configuration + ": " + bestKnapsackValue);
+        }
+
+        return bestKnapsackValue;
+    }
+
+    /**
+     * Starts from a random feasible knapsack, with nothing tabu and no knapsacks
+     * visited
+     */
+    private void initialize() {
+        items = ProblemConfiguration.instance.getKnapsackItems();
+        capacities = ProblemConfiguration.instance.getCapacities();
+        int n = items.size();
+        knapsack = new int[n];
+        totals = items.getFixedWeights();
+        value = items.getFixedValue();
+
+        // Add items in a random order while they fit
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = ProblemConfiguration.instance.getRandomGenerator().nextInt(i + 1);
+            int temp = order[i];
+            order[i] = order[j];
+            order[j] = temp;
+        }
+        for (int item : order) {
+            if (!items.fits(totals, item, capacities)) {
+                break;
+            }
+            knapsack[item] = 1;
+            items.addItem(totals, item);
+            value += items.getValue(item);
+        }
+
+        addTabuUntil = new int[n];
+        dropTabuUntil = new int[n];
+        zobristKeys = new long[n];
+        hash = 0;
+        for (int i = 0; i < n; i++) {
+            zobristKeys[i] = ProblemConfiguration.instance.getRandomGenerator().nextLong();
+            if (knapsack[i] == 1) {
+                hash ^= zobristKeys[i];
+            }
+        }
+        memory = new long[MEMORY_SIZE];
+        remember(hash);
+        numMoves = 0;
+    }
+
+    /** A move: the item dropped and the item added, either of which may be -1 */
+    private static class Move {
+        final int out;
+        final int in;
+        final int delta; // The change in value
+
+        Move(int out, int in, int delta) {
+            this.out = out;
+            this.in = in;
+            this.delta = delta;
+        }
+
+        /**
+         * Returns true if this move is better than the other, breaking ties by the
+         * order in which the moves are scanned
+         */
+        boolean isBetterThan(Move other) {
+            if (other == null || delta != other.delta) {
+                return other == null || delta > other.delta;
+            }
+            int first = out >= 0 ? out : in;
+            int otherFirst = other.out >= 0 ? other.out : other.in;
+            if (first != otherFirst) {
+                return first < otherFirst;
+            }
+            return in < other.in;
+        }
+    }
+
+    /**
+     * Returns the best admissible move from the current knapsack, or null if there
+     * are no moves at all. If every move is tabu, the best move is taken anyway.
+     */
+    private Move findBestMove(int iteration) {
+        int n = items.size();
+        Move best;
+        if (n >= PARALLEL_THRESHOLD) {
+            int chunkSize = (n + NUM_CHUNKS - 1) / NUM_CHUNKS;
+            best = IntStream.range(0, NUM_CHUNKS).parallel()
+                    .mapToObj(c -> scan(c * chunkSize, Math.min(n, (c + 1) * chunkSize), iteration, false))
+                    .reduce(null, (a, b) -> b != null && b.isBetterThan(a) ? b : a);
+        } else {
+            best = scan(0, n, iteration, false);
+        }
+        if (best == null) {
+            best = scan(0, n, iteration, true);
+        }
+        return best;
+    }
+
+    /**
+     * Returns the best admissible move that adds or drops one of the items from
+     * start to end - 1, or drops one of them for any item outside the knapsack
+     *
+     * @param ignoreTabu Whether to allow tabu moves
+     */
+    private Move scan(int start, int end, int iteration, boolean ignoreTabu) {
+        int m = totals.length;
+        Move best = null;
+        long count = 0;
+        for (int i = start; i < end; i++) {
+            int itemValue = items.getValue(i);
+            if (knapsack[i] == 0) {
+                // Add item i
+                count++;
+                if (items.fits(totals, i, capacities) && isAdmissible(-1, i, itemValue, iteration, ignoreTabu)) {
+                    Move move = new Move(-1, i, itemValue);
+                    if (move.isBetterThan(best)) {
+                        best = move;
+                    }
+                }
+                continue;
+            }
+            // Drop item i
+            count++;
+            if (isAdmissible(i, -1, -itemValue, iteration, ignoreTabu)) {
+                Move move = new Move(i, -1, -itemValue);
+                if (move.isBetterThan(best)) {
+                    best = move;
+                }
+            }
+            if (!swapMoves) {
+                continue;
+            }
+            // Swap item i for item j
+            for (int j = 0; j < knapsack.length; j++) {
+                if (knapsack[j] == 1) {
+                    continue;
+                }
+                count++;
+                int delta = items.getValue(j) - itemValue;
+                if (best != null && delta < best.delta) {
+                    continue;
+                }
+                boolean fits = true;
+                for (int d = 0; d < m && fits; d++) {
+                    fits = totals[d] - items.getWeight(d, i) + items.getWeight(d, j) <= capacities[d];
+                }
+                if (fits && isAdmissible(i, j, delta, iteration, ignoreTabu)) {
+                    Move move = new Move(i, j, delta);
+                    if (move.isBetterThan(best)) {
+                        best = move;
+                    }
+                }
+            }
+        }
+        synchronized (this) {
+            numMoves += count;
+        }
+        return best;
+    }
+
+    /**
+     * Returns true if the move is not tabu, or if it is but finds a new best
+     * knapsack (the aspiration criterion)
+     */
+    private boolean isAdmissible(int out, int in, int delta, int iteration, boolean ignoreTabu) {
+        if (ignoreTabu || value + delta > bestKnapsackValue) {
+            return true;
+        }
+        if (out >= 0 && dropTabuUntil[out] > iteration) {
+            return false;
+        }
+        if (in >= 0 && addTabuUntil[in] > iteration) {
+            return false;
+        }
+        long newHash = hash ^ (out >= 0 ? zobristKeys[out] : 0) ^ (in >= 0 ? zobristKeys[in] : 0);
+        return !isRemembered(newHash);
+    }
+
+    /** Makes the move, making its reverse tabu for the tabu tenure */
+    private void applyMove(Move move, int iteration) {
+        if (move.out >= 0) {
+            knapsack[move.out] = 0;
+            for (int d = 0; d < totals.length; d++) {
+                totals[d] -= items.getWeight(d, move.out);
+            }
+            hash ^= zobristKeys[move.out];
+            addTabuUntil[move.out] = iteration + tabuTenure;
+        }
+        if (move.in >= 0) {
+            knapsack[move.in] = 1;
+            items.addItem(totals, move.in);
+            hash ^= zobristKeys[move.in];
+            dropTabuUntil[move.in] = iteration + tabuTenure;
+        }
+        value += move.delta;
+        remember(hash);
+    }
+
+    /**
+     * Makes the given feasible knapsack the current one, keeping the tabu state
+     * and the memory of visited knapsacks
+     */
+    private void moveTo(int[] newKnapsack) {
+        knapsack = newKnapsack;
+        totals = items.getFixedWeights();
+        value = items.getFixedValue();
+        hash = 0;
+        for (int i = 0; i < knapsack.length; i++) {
+            if (knapsack[i] == 1) {
+                items.addItem(totals, i);
+                value += items.getValue(i);
+                hash ^= zobristKeys[i];
+            }
+        }
+        remember(hash);
+    }
+
+    /** Adds the hash of a knapsack to the memory, replacing any in its slot */
+    private void remember(long hash) {
+        memory[(int) (hash & (MEMORY_SIZE - 1))] = hash;
+    }
+
+    /** Returns true if the knapsack with the given hash was visited recently */
+    private boolean isRemembered(long hash) {
+        return memory[(int) (hash & (MEMORY_SIZE - 1))] == hash;
+    }
+
+    /** Gets the weight of the knapsack */
+    private int getWeight(int[] knapsack) {
+        int sum = items.getFixedWeight();
+        for (int i = 0; i < knapsack.length; i++) {
+            sum += knapsack[i] * items.getWeight(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Formats the knapsack as a string e.g. "[0101110...1110]" for display purposes
+     */
+    public String displayKnapsack(int[] knapsack) {
+        String s = "[";
+        int limit = Math.min(26, knapsack.length);
+        for (int i = 0; i < limit; i++) {
+            s += knapsack[i];
+        }
+        s += "...]";
+        return s;
+    }
+
+    /** Used for testing purposes */
+    public static void main(String[] args) {
+        TabuSearch ts = new TabuSearch("ts_default_01", 10, true);
+        ts.run();
+    }
+}
@@ -0,0 +1,144 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The conditions under which an algorithm stops before its iteration budget is
+ * used up:
+ *
+ * - the best value found equals an upper bound on the optimum of the instance,
+ * so no better knapsack exists (on by default)
+ * - the best value has not improved for a number of iterations (stall)
+ * - a wall-clock time limit has passed
+ * - a target value has been reached
+ *
+ * The upper bound is the exact optimum when it can be solved for (see
+ * ReportGenerator.getOptimum), and otherwise the LP relaxation. It is computed
+ * once per instance and capacities, and shared by every run. The algorithms
+ * look it up once at the start of a run, before their timer starts, and pass it
+ * in every iteration.
+ *
+ * The criteria themselves are immutable, so one object is shared by all of the
+ * algorithms; each algorithm keeps its own progress (see KnapsackSolver).
+ */
+public class TerminationCriteria {
+    // Upper bounds already computed, per instance and capacities (weakly keyed, so an
+    // instance that is no longer used, e.g. one reloaded by the server, is dropped)
+    private final static Map<KnapsackInstance, Map<String, Integer>> upperBoundCache = //
+            Collections.synchronizedMap(new WeakHashMap<KnapsackInstance, Map<String, Integer>>());
+
+    private final boolean stopAtUpperBound;
+    private final int stallIterations; // 0 for no limit
+    private final long timeLimit; // In ms, 0 for no limit
+    private final int targetValue; // 0 for no target
+
+    /** The default criteria, which only stop at the upper bound */
+    public TerminationCriteria() {
+        this(true, 0, 0, 0);
+    }
+
+    /**
+     * @param stopAtUpperBound Whether to stop when the best value equals the upper
+     *                         bound on the optimum
+     * @param stallIterations  The iterations without improvement after which to
+     *                         stop, or 0 for no limit
+     * @param timeLimit        The time in ms after which to stop, or 0 for no limit
+     * @param targetValue      The value at which to stop, or 0 for no target
+     */
+    public TerminationCriteria(boolean stopAtUpperBound, int stallIterations, long timeLimit, int targetValue) {
+        this.stopAtUpperBound = stopAtUpperBound;
+        this.stallIterations = stallIterations;
+        this.timeLimit = timeLimit;
+        this.targetValue = targetValue;
+    }
+
+    /**
+     * Returns the reason to stop, or null to carry on
+     *
+     * @param bestValue                 The best value found so far
+     * @param iterationsSinceImprovement The iterations since the best value last
+     *                                  improved
+     * @param elapsed                   The time in ms since the start of the run
+     */
+    public String getReasonToStop(int bestValue, int iterationsSinceImprovement, long elapsed) {
+        return getReasonToStop(bestValue, stopAtUpperBound ? getUpperBound() : Integer.MAX_VALUE,
+                iterationsSinceImprovement, elapsed);
+    }
+
+    /**
+     * Returns the reason to stop, or null to carry on, given the upper bound of
+     * the instance being solved (see getUpperBound())
+     */
+    public String getReasonToStop(int bestValue, int upperBound, int iterationsSinceImprovement, long elapsed) {
+        if (stopAtUpperBound && bestValue >= upperBound) {
+            return "upper bound reached";
+        }
+        if (targetValue > 0 && bestValue >= targetValue) {
+            return "target reached";
+        }
+        if (stallIterations > 0 && iterationsSinceImprovement >= stallIterations) {
+            return "stalled for " + stallIterations + " iterations";
+        }
+        if (timeLimit > 0 && elapsed >= timeLimit) {
+            return "time limit reached";
+        }
+        return null;
+    }
+
+    /** Returns true if the run stops when the best value equals the upper bound */
+    public boolean isStoppingAtUpperBound() {
+        return stopAtUpperBound;
+    }
+
+    /**
+     * Returns an upper bound on the optimum of the instance being solved, computed
+     * only the first time it is asked for
+     */
+    public static int getUpperBound() {
+        KnapsackInstance items = ProblemConfiguration.instance.getFullKnapsackItems();
+        int[] capacities = ProblemConfiguration.instance.getCapacities();
+        Map<String, Integer> bounds = upperBoundCache.computeIfAbsent(items,
+                k -> new ConcurrentHashMap<String, Integer>());
+        return bounds.computeIfAbsent(Arrays.toString(capacities), k -> {
+            int optimum = ReportGenerator.getOptimum();
+            return optimum > 0 ? optimum : computeLinearRelaxationBound(items, capacities);
+        });
+    }
+
+    /**
+     * Returns the Dantzig (LP relaxation) bound of the instance. With several
+     * constraints, each constraint on its own is a relaxation of the instance, so
+     * the smallest of their bounds is returned.
+     */
+    static int computeLinearRelaxationBound(KnapsackInstance items, int[] capacities) {
+        long bound = Long.MAX_VALUE;
+        for (int d = 0; d < capacities.length; d++) {
+            // Sort by density in this dimension alone
+            final int dimension = d;
+            Integer[] order = new Integer[items.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare((long) items.getValue(b) * items.getWeight(dimension, a),
+                    (long) items.getValue(a) * items.getWeight(dimension, b)));
+
+            long remaining = capacities[d] - items.getFixedWeights()[d];
+            long value = items.getFixedValue();
+            for (int item : order) {
+                long weight = items.getWeight(d, item);
+                if (weight <= remaining) {
+                    remaining -= weight;
+                    value += items.getValue(item);
+                } else {
+                    // Add the fraction of the break item that fits
+                    value += remaining * items.getValue(item) / weight;
+                    break;
+                }
+            }
+            bound = Math.min(bound, value);
+        }
+        return (int) Math.min(bound, Integer.MAX_VALUE);
+    }
+}
@@ -1,12 +1,12 @@
 /**
  * Class that encodes a vector with n dimensions. By default, the vector will
- * have 150 dimensions as per this knapsack problem.
+ * have one dimension per item in the knapsack instance being searched.
  */
 public class Vector {
     private double[] vector;
 
     public Vector() {
-        vector = new double[150];
+        vector = new double[ProblemConfiguration.instance.getKnapsackItems().size()];
     }
 
     public Vector(double[] vector) {
@@ -61,7 +61,7 @@ public class Vector {
      */
     public String toString() {
         String s = "[";
-        int limit = 26;
+        int limit = Math.min(26, vector.length);
         for (int i = 0; i < limit; i++) {
             // If the elements are whole numbers, display them as 0 and 1
             // rather than 0.0 and 1.0